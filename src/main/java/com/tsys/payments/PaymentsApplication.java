@@ -2,7 +2,6 @@ package com.tsys.payments;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.retry.annotation.EnableRetry;
 
 /**
  * Steps to make Payments microservice Retryable
@@ -22,9 +21,13 @@ import org.springframework.retry.annotation.EnableRetry;
  * go to step #4
  * <p>
  * 4. Adding @Recover annotation -
+ * <p>
+ * FraudCheckerClientWithRetryPattern has since moved its retries into code,
+ * to keep them within a retry budget, so neither spring-retry nor
+ * {@code @EnableRetry} are used any more, see its "Why not @Retryable
+ * anymore?".
  */
 @SpringBootApplication
-@EnableRetry
 public class PaymentsApplication {
 
     public static void main(String[] args) {
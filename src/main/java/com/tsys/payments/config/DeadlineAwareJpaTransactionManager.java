@@ -0,0 +1,29 @@
+package com.tsys.payments.config;
+
+import com.tsys.payments.utils.Deadline;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+/**
+ * Times out a JPA transaction begun for a request with a deadline, e.g.
+ * the save of a payment, with what is left of the deadline, so that its
+ * statements are cancelled by the database driver rather than left to
+ * wait on a lock or a slow disk for a caller that has gone.
+ * <p>
+ * Transaction timeouts are in whole seconds, so the remaining time is
+ * rounded up, to at least a second.  Whether the deadline has already
+ * passed is for the caller to check before the transaction is begun.
+ */
+public class DeadlineAwareJpaTransactionManager extends JpaTransactionManager {
+
+    @Override
+    protected int determineTimeout(TransactionDefinition definition) {
+        final var timeout = super.determineTimeout(definition);
+        return Deadline.current()
+                .map(deadline -> {
+                    final var remaining = (int) Math.max(1, (deadline.remaining().toMillis() + 999) / 1000);
+                    return timeout == TransactionDefinition.TIMEOUT_DEFAULT ? remaining : Math.min(timeout, remaining);
+                })
+                .orElse(timeout);
+    }
+}
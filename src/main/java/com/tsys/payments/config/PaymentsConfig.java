@@ -1,34 +1,476 @@
 package com.tsys.payments.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.service.local.PaymentPreScreen;
 import com.tsys.payments.service.local.PaymentsService;
+import com.tsys.payments.service.local.RuleBasedPaymentPreScreen;
+import com.tsys.payments.service.local.TransactionsService;
+import com.tsys.payments.service.local.VelocityCheck;
+import com.tsys.payments.service.remote.CachingFraudCheckerClient;
+import com.tsys.payments.service.remote.CoalescingFraudCheckerClient;
+import com.tsys.payments.service.remote.ConcurrencyLimitingFraudCheckerClient;
+import com.tsys.payments.service.remote.DefaultFraudCheckerClient;
+import com.tsys.payments.service.remote.FraudCheckFallbackPolicy;
 import com.tsys.payments.service.remote.FraudCheckerClient;
+import com.tsys.payments.service.remote.FraudCheckerClientDecorator;
+import com.tsys.payments.service.remote.FraudCheckerLoadBalancer;
+import com.tsys.payments.service.remote.HedgingFraudCheckerClient;
+import com.tsys.payments.service.remote.MicroBatchingFraudCheckerClient;
+import com.tsys.payments.utils.Deadline;
 import com.tsys.payments.utils.IdGenerator;
+import com.tsys.payments.utils.RetryBudget;
+import com.tsys.payments.utils.SlidingWindowCircuitBreaker;
+import com.tsys.payments.utils.TimeOrderedUUIDGenerator;
 import com.tsys.payments.utils.UUIDGenerator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Configuration
 @PropertySource("classpath:application-${spring.profiles.active:development}.properties")
 public class PaymentsConfig {
 
     @Bean
-    public PaymentsService create(FraudCheckerClient fraudCheckerClient, TransactionRepository transactionRepository, IdGenerator<UUID> uuidGenerator) {
-        return new PaymentsService(fraudCheckerClient, transactionRepository, uuidGenerator);
+    public PaymentsService create(PaymentPreScreen paymentPreScreen, FraudCheckerClient fraudCheckerClient, TransactionRepository transactionRepository, TransactionsService transactionsService, IdGenerator<UUID> uuidGenerator, TransactionOperations transactionOperations) {
+        return new PaymentsService(paymentPreScreen, fraudCheckerClient, transactionRepository, transactionsService, uuidGenerator, transactionOperations);
     }
 
+    // The PaymentPreScreen that payments go through before the
+    // FraudChecker: whichever pre-screen stages are switched on, asked in
+    // order until one decides.
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder) {
-        return restTemplateBuilder.build();
+    @Primary
+    public PaymentPreScreen paymentPreScreen(@Qualifier("stage") ObjectProvider<PaymentPreScreen> stages) {
+        return PaymentPreScreen.firstOf(stages.orderedStream().collect(Collectors.toList()));
     }
 
+    // First, so that every attempt on a card is counted, including the
+    // ones the rules would reject or pass.
+    @Bean
+    @Qualifier("stage")
+    @Order(100)
+    @ConditionalOnExpression("#{'${features.payments.velocity:}' == 'sliding_windows'}")
+    public PaymentPreScreen velocityCheck(@Value("${velocity.minute.maxCharges}") long minuteMaxCharges,
+                                          @Value("${velocity.minute.maxAmount}") String minuteMaxAmount,
+                                          @Value("${velocity.hour.maxCharges}") long hourMaxCharges,
+                                          @Value("${velocity.hour.maxAmount}") String hourMaxAmount,
+                                          @Value("${velocity.day.maxCharges}") long dayMaxCharges,
+                                          @Value("${velocity.day.maxAmount}") String dayMaxAmount,
+                                          @Value("${velocity.action}") String action,
+                                          @Value("${velocity.maxCards}") int maxCards,
+                                          @Value("${velocity.bucketsPerWindow}") int bucketsPerWindow,
+                                          MeterRegistry meterRegistry) {
+        if (!action.equals("reject") && !action.equals("flag"))
+            throw new IllegalArgumentException(String.format("velocity.action must be reject or flag, was '%s'", action));
+        return new VelocityCheck(List.of(
+                new VelocityCheck.Limit("1m", Duration.ofMinutes(1), minuteMaxCharges, minuteMaxAmount),
+                new VelocityCheck.Limit("1h", Duration.ofHours(1), hourMaxCharges, hourMaxAmount),
+                new VelocityCheck.Limit("24h", Duration.ofHours(24), dayMaxCharges, dayMaxAmount)),
+                action.equals("reject"), maxCards, bucketsPerWindow, meterRegistry);
+    }
+
+    // Decides trivially safe or bad payments locally, see there for the
+    // rules.  A rule left empty in the pre_screen properties is off.
+    @Bean
+    @Qualifier("stage")
+    @Order(200)
+    @ConditionalOnExpression("#{'${features.payments.pre_screen:}' == 'rules'}")
+    public PaymentPreScreen ruleBasedPaymentPreScreen(@Value("${pre_screen.rejectExpired}") boolean rejectExpired,
+                                                      @Value("${pre_screen.blockedBins}") String blockedBins,
+                                                      @Value("${pre_screen.allowedCurrencies}") String allowedCurrencies,
+                                                      @Value("${pre_screen.rejectAbove}") String rejectAbove,
+                                                      @Value("${pre_screen.passBelow}") String passBelow,
+                                                      MeterRegistry meterRegistry) {
+        return new RuleBasedPaymentPreScreen(rejectExpired, blockedBins, allowedCurrencies, rejectAbove, passBelow, meterRegistry);
+    }
+
+    // The FraudCheckerClient that payments are checked with: the remote
+    // one for the chosen latency control strategy, wrapped in whichever
+    // decorators are switched on.
+    @Bean
+    @Primary
+    public FraudCheckerClient fraudCheckerClient(@Qualifier("remote") FraudCheckerClient remoteFraudCheckerClient,
+                                                 ObjectProvider<FraudCheckerClientDecorator> decorators) {
+        var fraudCheckerClient = remoteFraudCheckerClient;
+        for (var decorator : decorators.orderedStream().collect(Collectors.toList()))
+            fraudCheckerClient = decorator.decorate(fraudCheckerClient);
+        return fraudCheckerClient;
+    }
+
+    // Outermost, so that a cached verdict saves every other decorator
+    // the work too.
+    @Bean
+    @Order(1000)
+    @ConditionalOnExpression("#{'${features.fraud_checker.cache:}' == 'pass_verdicts'}")
+    public FraudCheckerClientDecorator cachingFraudCheckerClient(@Value("${fraud_checker.cache.maxSize}") int maxSize,
+                                                                 @Value("${fraud_checker.cache.ttl}") long ttl,
+                                                                 @Value("${fraud_checker.cache.amountBand}") double amountBand,
+                                                                 MeterRegistry meterRegistry) {
+        return fraudCheckerClient -> new CachingFraudCheckerClient(fraudCheckerClient, maxSize, Duration.ofMillis(ttl), amountBand, meterRegistry);
+    }
+
+    // Inside the cache, so that only cache misses are coalesced.
+    @Bean
+    @Order(900)
+    @ConditionalOnExpression("#{'${features.fraud_checker.coalescing:}' == 'single_flight'}")
+    public FraudCheckerClientDecorator coalescingFraudCheckerClient(MeterRegistry meterRegistry) {
+        return fraudCheckerClient -> new CoalescingFraudCheckerClient(fraudCheckerClient, meterRegistry);
+    }
+
+    // Inside coalescing and the cache, so that only fraud checks that
+    // really go out are hedged.
+    @Bean
+    @Order(300)
+    @ConditionalOnExpression("#{'${features.fraud_checker.hedging:}' == 'percentile'}")
+    public FraudCheckerClientDecorator hedgingFraudCheckerClient(@Qualifier("fraudHedgingExecutor") ExecutorService fraudHedgingExecutor,
+                                                                 @Value("${fraud_checker.hedging.percentile}") double percentile,
+                                                                 @Value("${fraud_checker.hedging.minDelay}") long minDelay,
+                                                                 @Value("${fraud_checker.hedging.window}") int window,
+                                                                 @Value("${fraud_checker.hedging.budget}") double budget,
+                                                                 MeterRegistry meterRegistry) {
+        return fraudCheckerClient -> new HedgingFraudCheckerClient(fraudCheckerClient, fraudHedgingExecutor,
+                percentile, minDelay, window, budget, meterRegistry);
+    }
+
+    // Hedged fraud checks wait on the FraudChecker on their own thread, so
+    // that the caller can send the hedge.  Each gets a virtual thread, how
+    // many there are at once is bounded by the requests in flight.
+    @Bean(value = "fraudHedgingExecutor", destroyMethod = "shutdown")
+    @ConditionalOnExpression("#{'${features.fraud_checker.hedging:}' == 'percentile'}")
+    public ExecutorService fraudHedgingExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fraud-hedge-", 0).factory());
+    }
+
+    // Inside hedging, so that hedges count against the limit too.
+    @Bean
+    @Order(200)
+    @ConditionalOnExpression("#{'${features.fraud_checker.concurrency_limit:}' == 'aimd'}")
+    public FraudCheckerClientDecorator concurrencyLimitingFraudCheckerClient(@Value("${fraud_checker.concurrency.initialLimit}") int initialLimit,
+                                                                             @Value("${fraud_checker.concurrency.minLimit}") int minLimit,
+                                                                             @Value("${fraud_checker.concurrency.maxLimit}") int maxLimit,
+                                                                             @Value("${fraud_checker.concurrency.rttTolerance}") double rttTolerance,
+                                                                             @Value("${fraud_checker.concurrency.backoffRatio}") double backoffRatio,
+                                                                             @Value("${fraud_checker.concurrency.maxQueueSize}") int maxQueueSize,
+                                                                             @Value("${fraud_checker.concurrency.maxQueueTime}") long maxQueueTime,
+                                                                             MeterRegistry meterRegistry) {
+        return fraudCheckerClient -> new ConcurrencyLimitingFraudCheckerClient(fraudCheckerClient, initialLimit,
+                minLimit, maxLimit, rttTolerance, backoffRatio, maxQueueSize, Duration.ofMillis(maxQueueTime), meterRegistry);
+    }
+
+    // Innermost, it takes over sending fraud checks from the remote
+    // FraudCheckerClient, which then only makes the checks of failed
+    // batches, with its retries, circuit breaker and fallback.
+    @Bean
+    @Order(100)
+    @ConditionalOnExpression("#{'${features.fraud_checker.batching:}' == 'micro_batch'}")
+    public FraudCheckerClientDecorator microBatchingFraudCheckerClient(RestTemplate restTemplate,
+                                                                      @Value("${fraud-checker.service.host}") String hostname,
+                                                                      @Value("${fraud-checker.service.port}") int port,
+                                                                      @Value("${fraud_checker.batch.maxSize}") int maxBatchSize,
+                                                                      @Value("${fraud_checker.batch.window}") long window,
+                                                                      MeterRegistry meterRegistry) {
+        final var fraudCheckerBatchUri = URI.create(String.format("%s:%d/%s", hostname, port, "check/batch"));
+        return fraudCheckerClient -> new MicroBatchingFraudCheckerClient(fraudCheckerClient, restTemplate,
+                fraudCheckerBatchUri, maxBatchSize, Duration.ofMillis(window), meterRegistry);
+    }
+
+    // Spreads calls to fraud-checker.service.host:port over the endpoints,
+    // see there for how they are chosen and ejected.  Pings go out on
+    // their own plain RestTemplate, so that they reach the endpoint pinged.
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("#{'${features.fraud_checker.load_balancing:}' == 'least_outstanding' or '${features.fraud_checker.load_balancing:}' == 'p2c'}")
+    public FraudCheckerLoadBalancer fraudCheckerLoadBalancer(@Value("${features.fraud_checker.load_balancing}") String balancing,
+                                                             @Value("${fraud-checker.service.host}") String hostname,
+                                                             @Value("${fraud-checker.service.port}") int port,
+                                                             @Value("${fraud_checker.load_balancing.endpoints}") String endpoints,
+                                                             @Value("${fraud_checker.load_balancing.maxFailures}") int maxFailures,
+                                                             @Value("${fraud_checker.load_balancing.slowCallDuration}") long slowCallDuration,
+                                                             @Value("${fraud_checker.load_balancing.ejectionTime}") long ejectionTime,
+                                                             @Value("${fraud_checker.load_balancing.pingInterval}") long pingInterval,
+                                                             @Value("${latency_control.timeout.connect}") int connectTimeout,
+                                                             @Value("${latency_control.timeout.read}") int readTimeout,
+                                                             MeterRegistry meterRegistry) {
+        final var pingRestTemplate = new RestTemplateBuilder()
+                .setConnectTimeout(Duration.ofMillis(connectTimeout))
+                .setReadTimeout(Duration.ofMillis(readTimeout))
+                .build();
+        final var loadBalancer = new FraudCheckerLoadBalancer(
+                URI.create(String.format("%s:%d", hostname, port)),
+                Arrays.stream(endpoints.split(",")).map(String::trim).filter(endpoint -> !endpoint.isEmpty()).map(URI::create).collect(Collectors.toList()),
+                endpoint -> new DefaultFraudCheckerClient(endpoint.getScheme() + "://" + endpoint.getHost(), endpoint.getPort(), pingRestTemplate)::ping,
+                balancing.equals("p2c"), maxFailures, Duration.ofMillis(slowCallDuration), Duration.ofMillis(ejectionTime), meterRegistry);
+        loadBalancer.startPinging(Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("fraud-ping-")),
+                Duration.ofMillis(pingInterval));
+        return loadBalancer;
+    }
+
+    // Every RestTemplate built by the RestTemplateBuilder, so whichever
+    // the FraudCheckerClients use, goes through the load balancer.
+    @Bean
+    @ConditionalOnExpression("#{'${features.fraud_checker.load_balancing:}' == 'least_outstanding' or '${features.fraud_checker.load_balancing:}' == 'p2c'}")
+    public RestTemplateCustomizer fraudCheckerLoadBalancing(FraudCheckerLoadBalancer fraudCheckerLoadBalancer) {
+        return restTemplate -> restTemplate.getInterceptors().add(fraudCheckerLoadBalancer);
+    }
+
+    // Keeps the retries of FraudCheckerClientWithRetryPattern to a share
+    // of the fraud checks that succeed, plus minPerSecond, so that they
+    // do not pile onto a FraudChecker that is already struggling.
+    @Bean
+    @ConditionalOnExpression("#{'${features.resiliency.latency_control.strategy:}' == 'retry'}")
+    public RetryBudget fraudCheckerRetryBudget(@Value("${latency_control.retry.budget.ratio}") double ratio,
+                                               @Value("${latency_control.retry.budget.minPerSecond}") double minPerSecond,
+                                               @Value("${latency_control.retry.budget.maxTokens}") int maxTokens,
+                                               MeterRegistry meterRegistry) {
+        return new RetryBudget("payments.fraud_checker.retry_budget", ratio, minPerSecond, maxTokens, meterRegistry);
+    }
+
+    // Which payments the retry and circuit breaker FraudCheckerClients
+    // take unverified when they fall back, see FraudCheckFallbackPolicy.
+    @Bean
+    public FraudCheckFallbackPolicy fraudCheckFallbackPolicy(@Value("${fraud_checker.fallback.maxAmount}") String maxAmount,
+                                                             @Value("${fraud_checker.fallback.maxExposure}") String maxExposure,
+                                                             @Value("${fraud_checker.fallback.window}") long window,
+                                                             @Value("${fraud_checker.fallback.bucketsPerWindow}") int bucketsPerWindow,
+                                                             MeterRegistry meterRegistry) {
+        return new FraudCheckFallbackPolicy("payments.fraud_checker.fallback", maxAmount, maxExposure,
+                Duration.ofMillis(window), bucketsPerWindow, meterRegistry);
+    }
+
+    // Guards the FraudChecker for FraudCheckerClientWithCircuitBreakerPattern,
+    // see there for how the latency_control.circuit_breaker properties map
+    // onto it.
+    @Bean
+    @ConditionalOnExpression("#{'${features.resiliency.latency_control.strategy:}' == 'circuit_breaker'}")
+    public SlidingWindowCircuitBreaker fraudCheckerCircuitBreaker(@Value("${latency_control.circuit_breaker.maxAttempts}") int maxAttempts,
+                                                                  @Value("${latency_control.circuit_breaker.openTimeout}") long openTimeout,
+                                                                  @Value("${latency_control.circuit_breaker.resetTimeout}") long resetTimeout,
+                                                                  @Value("${latency_control.circuit_breaker.failureRateThreshold}") double failureRateThreshold,
+                                                                  @Value("${latency_control.circuit_breaker.slowCallRateThreshold}") double slowCallRateThreshold,
+                                                                  @Value("${latency_control.circuit_breaker.slowCallDuration}") long slowCallDuration,
+                                                                  @Value("${latency_control.circuit_breaker.halfOpenProbes}") int halfOpenProbes,
+                                                                  MeterRegistry meterRegistry) {
+        return new SlidingWindowCircuitBreaker("payments.fraud_checker.circuit_breaker",
+                Duration.ofMillis(openTimeout), maxAttempts, failureRateThreshold, slowCallRateThreshold,
+                Duration.ofMillis(slowCallDuration), Duration.ofMillis(resetTimeout), halfOpenProbes, meterRegistry);
+    }
+
+    // Keep-alive connections to the FraudChecker, pooled and shared by
+    // whichever FraudCheckerClient is active, so that a fraud check does
+    // not pay for a TCP handshake.  Connections are closed after
+    // connectionTtl however busy, so that FraudChecker instances added
+    // behind a load balancer get their share, and after idleTimeout unused.
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("#{'${features.fraud_checker.http.version:}' != 'http2'}")
+    public CloseableHttpClient fraudCheckerHttpClient(@Value("${fraud_checker.http.maxTotal}") int maxTotal,
+                                                      @Value("${fraud_checker.http.maxPerRoute}") int maxPerRoute,
+                                                      @Value("${fraud_checker.http.connectionTtl}") long connectionTtl,
+                                                      @Value("${fraud_checker.http.idleTimeout}") long idleTimeout,
+                                                      MeterRegistry meterRegistry) {
+        final var connectionManager = new PoolingHttpClientConnectionManager(connectionTtl, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        Gauge.builder("payments.fraud_checker.connections.leased", connectionManager, pool -> pool.getTotalStats().getLeased())
+                .register(meterRegistry);
+        Gauge.builder("payments.fraud_checker.connections.available", connectionManager, pool -> pool.getTotalStats().getAvailable())
+                .register(meterRegistry);
+        Gauge.builder("payments.fraud_checker.connections.pending", connectionManager, pool -> pool.getTotalStats().getPending())
+                .register(meterRegistry);
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnExpression("#{'${features.fraud_checker.http.version:}' != 'http2'}")
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder,
+                                     CloseableHttpClient fraudCheckerHttpClient,
+                                     @Value("${latency_control.timeout.connect}") int connectTimeout,
+                                     @Value("${latency_control.timeout.read}") int readTimeout) {
+        final var requestFactory = new HttpComponentsClientHttpRequestFactory(fraudCheckerHttpClient);
+        requestFactory.setConnectTimeout(connectTimeout);
+        // Waiting for a free connection in the pool counts as connecting.
+        requestFactory.setConnectionRequestTimeout(connectTimeout);
+        requestFactory.setReadTimeout(readTimeout);
+        // Under a request deadline, each of the timeouts is cut down to
+        // what is left of it, and no request is sent once it has passed.
+        requestFactory.setHttpContextFactory((method, uri) -> Deadline.current().isEmpty() ? null
+                : deadlineBoundContext(Duration.ofMillis(connectTimeout), Duration.ofMillis(readTimeout)));
+        return restTemplateBuilder.requestFactory(() -> requestFactory).build();
+    }
+
+    private static HttpClientContext deadlineBoundContext(Duration connectTimeout, Duration readTimeout) {
+        final var connect = (int) Deadline.timeoutFor("fraud check", connectTimeout).toMillis();
+        final var context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(connect)
+                .setConnectionRequestTimeout(connect)
+                .setSocketTimeout((int) Deadline.timeoutFor("fraud check", readTimeout).toMillis())
+                .build());
+        return context;
+    }
+
+    // Fraud checks multiplexed as HTTP/2 streams over one connection, when
+    // the FraudChecker speaks HTTP/2, and over pooled HTTP/1.1 keep-alive
+    // connections otherwise.
+    @Bean("restTemplate")
+    @ConditionalOnExpression("#{'${features.fraud_checker.http.version:}' == 'http2'}")
+    public RestTemplate http2RestTemplate(RestTemplateBuilder restTemplateBuilder,
+                                          @Value("${latency_control.timeout.connect}") int connectTimeout,
+                                          @Value("${latency_control.timeout.read}") int readTimeout) {
+        final var httpClient = java.net.http.HttpClient.newBuilder()
+                .version(java.net.http.HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .build();
+        final var requestFactory = new JdkClientHttpRequestFactory(httpClient, Duration.ofMillis(readTimeout));
+        return restTemplateBuilder.requestFactory(() -> requestFactory).build();
+    }
+
+    @Bean
+    @ConditionalOnExpression("#{'${features.web.pipeline:}' == 'reactive'}")
+    public WebClient webClient(WebClient.Builder webClientBuilder,
+                               @Value("${latency_control.timeout.connect}") int connectTimeout,
+                               @Value("${latency_control.timeout.read}") int readTimeout) {
+        final var httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .responseTimeout(Duration.ofMillis(readTimeout));
+        return webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    // JPA is blocking, so the reactive pipeline hands the save over to
+    // this scheduler.  Keep maxThreads in line with the connection pool
+    // size, more threads than connections only queue inside Hikari.
+    @Bean(value = "persistenceScheduler", destroyMethod = "dispose")
+    @ConditionalOnExpression("#{'${features.web.pipeline:}' == 'reactive'}")
+    public Scheduler persistenceScheduler(@Value("${reactive.persistence.scheduler.maxThreads}") int maxThreads,
+                                          @Value("${reactive.persistence.scheduler.maxQueuedTasks}") int maxQueuedTasks) {
+        return Schedulers.newBoundedElastic(maxThreads, maxQueuedTasks, "persistence");
+    }
+
+    // Shared by all batches, so its size caps the number of concurrent
+    // fraud checks that batch payments can put on the FraudChecker.
+    @Bean(value = "fraudCheckExecutor", destroyMethod = "shutdown")
+    @ConditionalOnExpression("#{'${features.execution.threads:}' != 'virtual'}")
+    public ExecutorService fraudCheckExecutor(@Value("${batch.fraud_check.maxConcurrency}") int maxConcurrency) {
+        return Executors.newFixedThreadPool(maxConcurrency, new CustomizableThreadFactory("fraud-check-"));
+    }
+
+    // Batch payments are saved here, off the fraudCheckExecutor, so that
+    // saves and fraud checks do not hold each other up.  Keep threads in
+    // line with the connection pool size, as for the persistenceScheduler.
+    @Bean(value = "batchSaveExecutor", destroyMethod = "shutdown")
+    public ExecutorService batchSaveExecutor(@Value("${batch.save.threads}") int threads) {
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("batch-save-"));
+    }
+
+    // Each check gets a fresh virtual thread that is parked, not held,
+    // while waiting on the FraudChecker.  Virtual threads are not pooled,
+    // the cap on concurrent fraud checks is kept by BatchPaymentsService.
+    @Bean(value = "fraudCheckExecutor", destroyMethod = "shutdown")
+    @ConditionalOnExpression("#{'${features.execution.threads:}' == 'virtual'}")
+    public ExecutorService virtualFraudCheckExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fraud-check-", 0).factory());
+    }
+
+    // Makes the payments submitted to /pay/async.  Once queueCapacity
+    // payments are waiting, further submissions are rejected (and answered
+    // with 503) rather than queued without bound.
+    @Bean(value = "asyncPaymentExecutor", destroyMethod = "shutdown")
+    public ExecutorService asyncPaymentExecutor(@Value("${async.pay.workers}") int workers,
+                                                @Value("${async.pay.queueCapacity}") int queueCapacity) {
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("async-pay-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Serve every request on its own virtual thread instead of one from
+    // Tomcat's bounded worker pool.  The blocking fraud check and save in
+    // /pay then park the virtual thread and free its carrier, so requests
+    // in flight are no longer capped by server.tomcat.threads.max.  They
+    // are still capped by server.tomcat.max-connections, and saves by the
+    // Hikari pool size.
+    @Bean
+    @ConditionalOnExpression("#{'${features.execution.threads:}' == 'virtual'}")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    // Transactions begun for a request, e.g. the save of a payment, time
+    // out with what is left of the request deadline.
+    @Bean
+    public PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers) {
+        final var transactionManager = new DeadlineAwareJpaTransactionManager();
+        transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+        return transactionManager;
+    }
+
+    // Runs before readiness is published, see PaymentsWarmUp.  Pings go
+    // through the same RestTemplate, and so connection pool, as fraud checks.
+    @Bean
+    @ConditionalOnExpression("#{'${features.payments.warm_up:}' == 'before_ready'}")
+    public PaymentsWarmUp paymentsWarmUp(ObjectMapper objectMapper,
+                                         TransactionRepository transactionRepository,
+                                         IdGenerator<UUID> uuidGenerator,
+                                         RestTemplate restTemplate,
+                                         @Value("${fraud-checker.service.host}") String hostname,
+                                         @Value("${fraud-checker.service.port}") int port,
+                                         @Value("${warm_up.payments}") int payments,
+                                         @Value("${warm_up.connections}") int connections,
+                                         @Value("${warm_up.maxDuration}") long maxDuration) {
+        return new PaymentsWarmUp(objectMapper, transactionRepository, uuidGenerator,
+                new DefaultFraudCheckerClient(hostname, port, restTemplate)::ping,
+                payments, connections, Duration.ofMillis(maxDuration));
+    }
+
+    // Time-ordered ids are inserted at the end of the transactions' primary
+    // key, rather than all over it, see TimeOrderedUUIDGenerator.
     @Bean("uuidGenerator")
-    public IdGenerator<UUID> uuidGenerator() {
-        return new UUIDGenerator();
+    public IdGenerator<UUID> uuidGenerator(@Value("${features.payments.ids:}") String ids) {
+        return ids.equals("time_ordered") ? new TimeOrderedUUIDGenerator() : new UUIDGenerator();
     }
 }
@@ -0,0 +1,260 @@
+package com.tsys.payments.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Item;
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.domain.Order;
+import com.tsys.payments.domain.Transaction;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.service.local.PaymentPreScreen;
+import com.tsys.payments.service.local.PaymentsService;
+import com.tsys.payments.service.local.TransactionsService;
+import com.tsys.payments.service.remote.FraudCheckerClient;
+import com.tsys.payments.utils.IdGenerator;
+import com.tsys.payments.web.PaymentPayload;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Warms the payment hot path up before the service reports ready, so that
+ * the first /pay requests after a deploy do not pay for a cold JIT, lazily
+ * built Jackson serializers, an empty connection pool to the FraudChecker
+ * and Hibernate working out its queries on first use.
+ * <p>
+ * Spring Boot runs every ApplicationRunner before it publishes readiness
+ * as ACCEPTING_TRAFFIC, so /actuator/health/readiness stays OUT_OF_SERVICE
+ * until this is done, and a load balancer sends no traffic meanwhile.
+ * <p>
+ * Payments are made through a PaymentsService of its own, with a stub
+ * FraudChecker that passes everything, and a repository that saves
+ * nothing, so that no fake payment is sent anywhere or kept.  It stops
+ * after the given number of payments or maxDuration, whichever is first.
+ * Nothing here fails the start up: a FraudChecker that can not be pinged
+ * is only logged, the fallbacks are there for that.
+ */
+public class PaymentsWarmUp implements ApplicationRunner {
+
+    private static final Logger LOG = Logger.getLogger(PaymentsWarmUp.class.getName());
+    private static final FraudStatus PASS = new FraudStatus("pass");
+
+    private final ObjectMapper objectMapper;
+    private final TransactionRepository transactionRepository;
+    private final IdGenerator<UUID> uuidGenerator;
+    private final Supplier<String> ping;
+    private final int payments;
+    private final int connections;
+    private final Duration maxDuration;
+
+    public PaymentsWarmUp(ObjectMapper objectMapper, TransactionRepository transactionRepository,
+                          IdGenerator<UUID> uuidGenerator, Supplier<String> ping,
+                          int payments, int connections, Duration maxDuration) {
+        this.objectMapper = objectMapper;
+        this.transactionRepository = transactionRepository;
+        this.uuidGenerator = uuidGenerator;
+        this.ping = ping;
+        this.payments = payments;
+        this.connections = connections;
+        this.maxDuration = maxDuration;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        final var startedAt = System.nanoTime();
+        final var read = readTransactions();
+        final var stopAt = startedAt + maxDuration.toNanos();
+        final var made = makePayments(stopAt);
+        final var opened = openConnections(stopAt);
+        LOG.info(() -> String.format("Warmed up with %d payments and %d of %d FraudChecker pings, transactions %s, in %d ms",
+                made, opened, connections, read ? "read" : "not read", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)));
+    }
+
+    // Hibernate parses and caches the query, and the database pool opens
+    // a connection, on the first real read.
+    boolean readTransactions() {
+        try {
+            transactionRepository.findById(uuidGenerator.generate());
+            return true;
+        } catch (RuntimeException e) {
+            LOG.warning(() -> String.format("Warm-up could not read transactions %s", e));
+            return false;
+        }
+    }
+
+    int makePayments(long stopAt) {
+        final var noOpRepository = new NoOpTransactionRepository();
+        final FraudCheckerClient stubFraudChecker = new FraudCheckerClient() {
+            @Override
+            public FraudStatus checkFraud(CreditCard creditCard, Money chargedAmount) {
+                return roundTrip(PASS, FraudStatus.class);
+            }
+
+            @Override
+            public FraudStatus checkFraudFallback(CreditCard creditCard, Money chargedAmount) {
+                return PASS;
+            }
+        };
+        final var paymentsService = new PaymentsService(PaymentPreScreen.NONE, stubFraudChecker, noOpRepository,
+                new TransactionsService(noOpRepository, 16, 1000, 1000), uuidGenerator);
+        final var creditCard = new CreditCard("4111111111111111", "Warm Up", "Bank of Warm Up",
+                Date.from(Instant.now().plus(Duration.ofDays(365))), 123);
+        var made = 0;
+        try {
+            while (made < payments && System.nanoTime() < stopAt) {
+                final var order = new Order("warm-up-" + made, List.of(
+                        new Item(1L, "Warm Up", new Money(Currency.getInstance("INR"), 10d + made % 100), 1)));
+                final var payload = roundTrip(new PaymentPayload(order, creditCard), PaymentPayload.class);
+                final var transactionReference = paymentsService.makePayment(payload.order, payload.creditCard);
+                transactionReference.ifPresent(reference -> roundTrip(reference, TransactionReference.class));
+                made++;
+            }
+        } catch (RuntimeException e) {
+            final var madeSoFar = made;
+            LOG.warning(() -> String.format("Warm-up payments stopped after %d by %s", madeSoFar, e));
+        }
+        return made;
+    }
+
+    // Pings from as many threads as connections are wanted, at once, so
+    // that each takes a connection of its own from the pool.  Only waits
+    // for them for what is left of maxDuration after the payments.
+    int openConnections(long stopAt) {
+        final var remaining = stopAt - System.nanoTime();
+        if (remaining <= 0) {
+            LOG.warning(() -> "Warm-up out of time before pinging the FraudChecker");
+            return 0;
+        }
+        final var executor = Executors.newFixedThreadPool(Math.max(1, connections));
+        final var pinged = new AtomicInteger();
+        try {
+            final var pings = IntStream.range(0, connections)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                        try {
+                            ping.get();
+                            pinged.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            LOG.warning(() -> String.format("Warm-up could not ping the FraudChecker %s", e));
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(pings).get(remaining, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.warning(() -> String.format("Warm-up gave up waiting on FraudChecker pings %s", e));
+        } finally {
+            executor.shutdownNow();
+        }
+        return pinged.get();
+    }
+
+    private <T> T roundTrip(Object value, Class<T> type) {
+        try {
+            return objectMapper.readValue(objectMapper.writeValueAsBytes(value), type);
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Could not round trip %s as JSON", value), e);
+        }
+    }
+
+    // Keeps nothing, so that warm-up payments leave no trace.
+    private static class NoOpTransactionRepository implements TransactionRepository {
+        @Override
+        public Optional<Transaction> findByOrderId(String orderId) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Transaction> findFirstByOrderIdOrderByDateDesc(String orderId) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Transaction> findByTransactionIdAndOrderId(UUID transactionId, String orderId) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<Transaction> findAllByOrderIds(Iterable<String> orderIds) {
+            return List.of();
+        }
+
+        @Override
+        public List<Transaction> findAllByIdRange(UUID from, UUID to, Pageable pageable) {
+            return List.of();
+        }
+
+        @Override
+        public <S extends Transaction> S save(S entity) {
+            return entity;
+        }
+
+        @Override
+        public <S extends Transaction> Iterable<S> saveAll(Iterable<S> entities) {
+            return entities;
+        }
+
+        @Override
+        public Optional<Transaction> findById(UUID id) {
+            return Optional.empty();
+        }
+
+        @Override
+        public boolean existsById(UUID id) {
+            return false;
+        }
+
+        @Override
+        public Iterable<Transaction> findAll() {
+            return List.of();
+        }
+
+        @Override
+        public Iterable<Transaction> findAllById(Iterable<UUID> ids) {
+            return List.of();
+        }
+
+        @Override
+        public long count() {
+            return 0;
+        }
+
+        @Override
+        public void deleteById(UUID id) {
+        }
+
+        @Override
+        public void delete(Transaction entity) {
+        }
+
+        @Override
+        public void deleteAllById(Iterable<? extends UUID> ids) {
+        }
+
+        @Override
+        public void deleteAll(Iterable<? extends Transaction> entities) {
+        }
+
+        @Override
+        public void deleteAll() {
+        }
+    }
+}
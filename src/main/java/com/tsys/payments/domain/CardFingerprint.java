@@ -0,0 +1,88 @@
+package com.tsys.payments.domain;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Stands in for a CreditCard wherever a card has to be recognised again,
+ * e.g. as a cache key, without keeping its number (PAN) around.
+ * <p>
+ * It is an HMAC-SHA256 of the card details, with a key that is made up
+ * afresh by every JVM and never leaves it.  A plain hash of a PAN could be
+ * reversed by hashing all numbers with the same BIN, the HMAC can not be
+ * without the key.  So fingerprints are only good within the JVM that made
+ * them, and must not be persisted.
+ * <p>
+ * All card details go in, not just the number, so the same number with a
+ * different CVV, expiry or holder has a different fingerprint.  Where a
+ * card must be recognised whatever else was typed in with it, e.g. to
+ * count the charges on it, use {@link #ofNumber(CreditCard)}.
+ */
+public class CardFingerprint {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final SecretKeySpec KEY = newKey();
+
+    public final String value;
+
+    private CardFingerprint(String value) {
+        this.value = value;
+    }
+
+    public static CardFingerprint of(CreditCard creditCard) {
+        return hmac(String.join("\u0000",
+                digitsOf(creditCard),
+                String.valueOf(creditCard.holderName),
+                String.valueOf(creditCard.issuingBank),
+                creditCard.validUntil == null ? "" : String.valueOf(creditCard.validUntil.getTime()),
+                String.valueOf(creditCard.cvv)));
+    }
+
+    // The fingerprint of the card number alone.  It is never equal to the
+    // one from of(), so the two can not be mixed up as keys.
+    public static CardFingerprint ofNumber(CreditCard creditCard) {
+        return hmac("number\u0000" + digitsOf(creditCard));
+    }
+
+    private static String digitsOf(CreditCard creditCard) {
+        return creditCard.number == null ? "" : creditCard.number.replaceAll("[^0-9]", "");
+    }
+
+    private static CardFingerprint hmac(String details) {
+        try {
+            final var mac = Mac.getInstance(ALGORITHM);
+            mac.init(KEY);
+            final var digest = mac.doFinal(details.getBytes(StandardCharsets.UTF_8));
+            return new CardFingerprint(Base64.getUrlEncoder().withoutPadding().encodeToString(digest));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static SecretKeySpec newKey() {
+        final var key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return new SecretKeySpec(key, ALGORITHM);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return value.equals(((CardFingerprint) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -78,6 +78,11 @@ public class FraudStatus {
         if (overall.equals("fail"))
             return Optional.of(new Transaction(id, date, "rejected", orderId, value));
 
+        // Taken by the fraud check fallback while the FraudChecker was down,
+        // saved as such so that these payments can be checked afterwards.
+        if (overall.equals("unverified"))
+            return Optional.of(new Transaction(id, date, "accepted_unverified", orderId, value));
+
         return Optional.empty();
     }
 }
@@ -0,0 +1,107 @@
+package com.tsys.payments.domain;
+
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PrePersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Remembers the response given to the first /pay request that carried an
+ * Idempotency-Key header, so that it can be replayed to any retry of it.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyKey implements Persistable<String> {
+
+    @Id
+    @Column(name = "idempotency_key")
+    public final String key;
+    public final String requestHash;
+    public final UUID transactionId;
+    public final Date transactionDate;
+    public final String transactionStatus;
+
+    // Same as Transaction, the key is ours, so tell Spring Data that it
+    // is new to avoid a SELECT before every INSERT.
+    @Transient
+    private boolean isNew = true;
+
+    @Deprecated
+    IdempotencyKey() {
+        this(null, null, null, null, null);
+    }
+
+    public IdempotencyKey(String key, String requestHash, TransactionReference transactionReference) {
+        this(key, requestHash, transactionReference.id, transactionReference.date, transactionReference.status);
+    }
+
+    private IdempotencyKey(String key, String requestHash, UUID transactionId, Date transactionDate, String transactionStatus) {
+        this.key = key;
+        this.requestHash = requestHash;
+        this.transactionId = transactionId;
+        this.transactionDate = transactionDate;
+        this.transactionStatus = transactionStatus;
+    }
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PrePersist
+    @PostLoad
+    void markNotNew() {
+        isNew = false;
+    }
+
+    // Keys saved before the request hash was kept have none, and are
+    // taken to be for the same request.
+    public boolean isFor(String requestHash) {
+        return this.requestHash == null || this.requestHash.equals(requestHash);
+    }
+
+    public TransactionReference reference() {
+        return new TransactionReference(transactionId, transactionDate, transactionStatus);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IdempotencyKey that = (IdempotencyKey) o;
+        return key.equals(that.key) &&
+                Objects.equals(requestHash, that.requestHash) &&
+                transactionId.equals(that.transactionId) &&
+                transactionDate.equals(that.transactionDate) &&
+                transactionStatus.equals(that.transactionStatus);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, requestHash, transactionId, transactionDate, transactionStatus);
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotencyKey{" +
+                "key='" + key + '\'' +
+                ", requestHash='" + requestHash + '\'' +
+                ", transactionId='" + transactionId + '\'' +
+                ", transactionDate=" + transactionDate +
+                ", transactionStatus='" + transactionStatus + '\'' +
+                '}';
+    }
+}
@@ -1,11 +1,11 @@
 package com.tsys.payments.domain;
 
-import javax.persistence.Embeddable;
 import java.util.Currency;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
-// Embeddable classes provides a convenient mapping for Value Objects.
-@Embeddable
+// Persisted as whole minor units and the currency code, see MoneyType.
 public class Money {
     public static final Money ZERO = new Money();
     public final Currency currency;
@@ -77,4 +77,50 @@ public class Money {
     public Money multiply(Double factor) {
         return new Money(currency, amount * factor);
     }
-}
\ No newline at end of file
+
+    // The amount in whole minor units of the currency, e.g. cents, for
+    // summing without the drift of adding up doubles.
+    public long minorUnits() {
+        return Math.round(amount * minorUnitsPerUnit(currency));
+    }
+
+    public static Money ofMinorUnits(Currency currency, long minorUnits) {
+        // Dividing, rather than multiplying by e.g. 0.01, gives back the
+        // very double the amount was written as.
+        return new Money(currency, minorUnits / minorUnitsPerUnit(currency));
+    }
+
+    private static double minorUnitsPerUnit(Currency currency) {
+        return Math.pow(10, Math.max(0, currency.getDefaultFractionDigits()));
+    }
+
+    // "INR:100,USD:2" => {INR=INR 100.00, USD=USD 2.00}, as limits are given
+    // in the properties.  Blank entries are skipped, so "" is no limits.
+    public static Map<Currency, Money> parseLimits(String limits) {
+        final var parsed = new HashMap<Currency, Money>();
+        if (limits == null)
+            return Map.of();
+        for (final var entry : limits.split(",")) {
+            if (entry.isBlank())
+                continue;
+            final var parts = entry.trim().split(":");
+            if (parts.length != 2)
+                throw new IllegalArgumentException(String.format("Expected CURRENCY:AMOUNT, got '%s'", entry.trim()));
+            final var currency = currency(parts[0]);
+            try {
+                parsed.put(currency, new Money(currency, Double.valueOf(parts[1].trim())));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Expected CURRENCY:AMOUNT, got '%s'", entry.trim()), e);
+            }
+        }
+        return Map.copyOf(parsed);
+    }
+
+    private static Currency currency(String code) {
+        try {
+            return Currency.getInstance(code.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Unknown currency '%s'", code.trim()), e);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.tsys.payments.domain;
+
+public class Payment {
+    public final Order order;
+    public final CreditCard creditCard;
+
+    public Payment(Order order, CreditCard creditCard) {
+        this.order = order;
+        this.creditCard = creditCard;
+    }
+
+    @Override
+    public String toString() {
+        return "Payment{" +
+                "order=" + order +
+                ", creditCard=" + creditCard +
+                '}';
+    }
+}
@@ -0,0 +1,52 @@
+package com.tsys.payments.domain;
+
+import java.util.Objects;
+
+/**
+ * Outcome of a single payment within a batch: either the reference of the
+ * transaction that was recorded or the reason why none was.
+ */
+public class PaymentResult {
+
+    public final TransactionReference transaction;
+    public final String error;
+
+    private PaymentResult(TransactionReference transaction, String error) {
+        this.transaction = transaction;
+        this.error = error;
+    }
+
+    public static PaymentResult completed(TransactionReference transaction) {
+        return new PaymentResult(transaction, null);
+    }
+
+    public static PaymentResult failed(String error) {
+        return new PaymentResult(null, error);
+    }
+
+    public boolean isCompleted() {
+        return transaction != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PaymentResult that = (PaymentResult) o;
+        return Objects.equals(transaction, that.transaction) &&
+                Objects.equals(error, that.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(transaction, error);
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentResult{" +
+                "transaction=" + transaction +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,40 @@
+package com.tsys.payments.domain;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.util.Map;
+
+/**
+ * Keeps the status of a transaction in a tinyint column, instead of the
+ * word, since there are only ever a handful of them.  The codes are
+ * written to the database, so a code once given must never change, new
+ * statuses get new codes.
+ */
+@Converter
+public class TransactionStatusConverter implements AttributeConverter<String, Byte> {
+
+    private static final Map<String, Byte> CODES = Map.of(
+            "accepted", (byte) 1,
+            "rejected", (byte) 2,
+            "accepted_unverified", (byte) 3);
+    private static final Map<Byte, String> STATUSES = Map.of(
+            (byte) 1, "accepted",
+            (byte) 2, "rejected",
+            (byte) 3, "accepted_unverified");
+
+    @Override
+    public Byte convertToDatabaseColumn(String status) {
+        final var code = status == null ? null : CODES.get(status);
+        if (code == null)
+            throw new IllegalArgumentException(String.format("No status code for transaction status '%s'", status));
+        return code;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Byte code) {
+        final var status = code == null ? null : STATUSES.get(code);
+        if (status == null)
+            throw new IllegalArgumentException(String.format("Unknown transaction status code %s", code));
+        return status;
+    }
+}
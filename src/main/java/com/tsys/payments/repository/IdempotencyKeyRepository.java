@@ -0,0 +1,7 @@
+package com.tsys.payments.repository;
+
+import com.tsys.payments.domain.IdempotencyKey;
+import org.springframework.data.repository.CrudRepository;
+
+public interface IdempotencyKeyRepository extends CrudRepository<IdempotencyKey, String> {
+}
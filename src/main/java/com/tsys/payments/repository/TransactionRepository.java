@@ -1,6 +1,7 @@
 package com.tsys.payments.repository;
 
 import com.tsys.payments.domain.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
@@ -35,6 +36,11 @@ public interface TransactionRepository extends CrudRepository<Transaction, UUID>
     // It is better to return Optional<User> instead of User
     Optional<Transaction> findByOrderId(String orderId);
 
+    // An order retried without an Idempotency-Key has a transaction per
+    // attempt, and findByOrderId then fails with more than one result.
+    // Polls for the order get the latest of them.
+    Optional<Transaction> findFirstByOrderIdOrderByDateDesc(String orderId);
+
     // What’s nice about this feature is that Spring Data also automatically checks
     // if the query is valid at startup. If we renamed the method to findByFoo() and
     // the User does not have a property foo, Spring Data will point that out to us
@@ -66,6 +72,12 @@ public interface TransactionRepository extends CrudRepository<Transaction, UUID>
                                                         @Param("orderId") String orderId);
 
 
+    // Ids from TimeOrderedUUIDGenerator start with the time they were made at,
+    // so the transactions made in a span of time are a range of the primary
+    // key, scanned in order, without an index on the date.
+    @Query("select t from Transaction t where t.id >= :from and t.id < :to order by t.id")
+    List<Transaction> findAllByIdRange(@Param("from") UUID from, @Param("to") UUID to, Pageable pageable);
+
     // Similar to inferred queries, we get a validity check for those JPQL queries for free.
     // Using Hibernate as our JPA provider, we’ll get a QuerySyntaxException on startup
     // if it found an invalid query:
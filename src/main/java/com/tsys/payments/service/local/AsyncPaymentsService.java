@@ -0,0 +1,105 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.Order;
+import com.tsys.payments.domain.Transaction;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.utils.ExpiringCache;
+import com.tsys.payments.utils.IdGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Takes payments now and makes them later.
+ * <p>
+ * A submitted payment gets its transaction id straight away and is queued
+ * on the asyncPaymentExecutor, whose bounded queue is the backlog we are
+ * willing to hold.  When the queue is full the submission is refused with
+ * a RejectedExecutionException instead of piling up more work.
+ * <p>
+ * Until a payment is made its status is "pending".  Accepted and rejected
+ * payments, and those taken by the fraud check fallback
+ * ("accepted_unverified"), are saved like any other, and are found through
+ * TransactionsService once forgotten here.  Payments that could not be
+ * verified and were not taken ("unverified") or whose fraud check failed
+ * ("failed") are not saved, so their status is only known until it
+ * expires from memory.
+ */
+@Service
+public class AsyncPaymentsService {
+
+    private static final Logger LOG = Logger.getLogger(AsyncPaymentsService.class.getName());
+
+    private final PaymentsService paymentsService;
+    private final TransactionsService transactionsService;
+    private final IdGenerator<UUID> uuidGenerator;
+    private final Executor asyncPaymentExecutor;
+    private final ExpiringCache<UUID, Submission> submissions;
+
+    @Autowired
+    public AsyncPaymentsService(PaymentsService paymentsService,
+                                TransactionsService transactionsService,
+                                IdGenerator<UUID> uuidGenerator,
+                                @Qualifier("asyncPaymentExecutor") Executor asyncPaymentExecutor,
+                                @Value("${async.pay.status.maxSize}") int maxSize,
+                                @Value("${async.pay.status.ttl}") long ttl) {
+        this.paymentsService = paymentsService;
+        this.transactionsService = transactionsService;
+        this.uuidGenerator = uuidGenerator;
+        this.asyncPaymentExecutor = asyncPaymentExecutor;
+        this.submissions = new ExpiringCache<>(maxSize, Duration.ofMillis(ttl));
+    }
+
+    /**
+     * @return the pending transaction for the payment.
+     * @throws RejectedExecutionException when no more payments can be queued.
+     */
+    public TransactionReference submit(Order order, CreditCard creditCard) {
+        final var pending = new TransactionReference(uuidGenerator.generate(), createSubmissionDate(), "pending");
+        final var payment = CompletableFuture
+                .supplyAsync(() -> paymentsService.makePayment(pending.id, order, creditCard), asyncPaymentExecutor)
+                .handle((transactionReference, t) -> {
+                    if (t != null) {
+                        LOG.info(() -> String.format("FAILED payment %s for order %s %s", pending.id, order.id, t));
+                        return new TransactionReference(pending.id, pending.date, "failed");
+                    }
+                    return transactionReference
+                            .orElseGet(() -> new TransactionReference(pending.id, pending.date, "unverified"));
+                });
+        submissions.put(pending.id, new Submission(pending, payment));
+        LOG.info(() -> String.format("Queued payment %s for order %s", pending.id, order.id));
+        return pending;
+    }
+
+    public Optional<TransactionReference> status(UUID transactionId) {
+        return submissions.get(transactionId)
+                .map(submission -> submission.payment.getNow(submission.pending))
+                .or(() -> transactionsService.findById(transactionId).map(Transaction::reference));
+    }
+
+    Date createSubmissionDate() {
+        return Date.from(Instant.now());
+    }
+
+    private static class Submission {
+        final TransactionReference pending;
+        final CompletableFuture<TransactionReference> payment;
+
+        Submission(TransactionReference pending, CompletableFuture<TransactionReference> payment) {
+            this.pending = pending;
+            this.payment = payment;
+        }
+    }
+}
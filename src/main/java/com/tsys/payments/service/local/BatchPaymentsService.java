@@ -0,0 +1,186 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.*;
+import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.service.remote.FraudCheckerClient;
+import com.tsys.payments.utils.IdGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Makes many payments in one go.
+ * <p>
+ * Each payment goes through the PaymentPreScreen first, as in
+ * PaymentsService, so that the velocity limits and the rules hold for
+ * batches and streams as well.  Only the payments it leaves undecided are
+ * sent to the FraudChecker.
+ * <p>
+ * Fraud checks are fanned out on the fraudCheckExecutor.  At most
+ * maxConcurrency of them call the FraudChecker MicroService at once, across
+ * all batches, held to that by a Semaphore rather than by the size of the
+ * executor, so that it can as well start a virtual thread per check.
+ * Once every check has answered, all accepted and rejected transactions
+ * are written with a single saveAll, so Hibernate can send them as JDBC
+ * batches instead of one INSERT round trip per payment.  Saves are made on
+ * the batchSaveExecutor, so that a slow database does not hold up the
+ * fraud checks of other batches, nor they the saves.
+ * <p>
+ * A payment whose fraud check failed is answered with the fixed error
+ * FRAUD_CHECK_FAILED, the cause is only logged, since it may tell more of
+ * the FraudChecker and its network than the client should know.
+ * <p>
+ * Streams of payments are processed as they arrive instead.  At most
+ * maxConcurrency payments are taken from the stream at a time and the next
+ * one is only pulled once a slot frees up, so memory stays flat however
+ * long the stream is, and a slow FraudChecker or database slows down the
+ * reading of the stream rather than piling up work.
+ */
+@Service
+public class BatchPaymentsService {
+
+    private static final Logger LOG = Logger.getLogger(BatchPaymentsService.class.getName());
+    public static final String FRAUD_CHECK_FAILED = "fraud_check_failed";
+
+    private final PaymentPreScreen paymentPreScreen;
+    private final FraudCheckerClient fraudCheckerClient;
+    private final TransactionRepository transactionRepository;
+    private final IdGenerator<UUID> uuidGenerator;
+    private final Executor fraudCheckExecutor;
+    private final Scheduler fraudCheckScheduler;
+    private final Executor batchSaveExecutor;
+    private final Scheduler batchSaveScheduler;
+    private final int maxConcurrency;
+    private final Semaphore fraudChecks;
+
+    public BatchPaymentsService(FraudCheckerClient fraudCheckerClient,
+                                TransactionRepository transactionRepository,
+                                IdGenerator<UUID> uuidGenerator,
+                                Executor fraudCheckExecutor,
+                                Executor batchSaveExecutor,
+                                int maxConcurrency) {
+        this(PaymentPreScreen.NONE, fraudCheckerClient, transactionRepository, uuidGenerator,
+                fraudCheckExecutor, batchSaveExecutor, maxConcurrency);
+    }
+
+    @Autowired
+    public BatchPaymentsService(PaymentPreScreen paymentPreScreen,
+                                FraudCheckerClient fraudCheckerClient,
+                                TransactionRepository transactionRepository,
+                                IdGenerator<UUID> uuidGenerator,
+                                @Qualifier("fraudCheckExecutor") Executor fraudCheckExecutor,
+                                @Qualifier("batchSaveExecutor") Executor batchSaveExecutor,
+                                @Value("${batch.fraud_check.maxConcurrency}") int maxConcurrency) {
+        this.paymentPreScreen = paymentPreScreen;
+        this.fraudCheckerClient = fraudCheckerClient;
+        this.transactionRepository = transactionRepository;
+        this.uuidGenerator = uuidGenerator;
+        this.fraudCheckExecutor = fraudCheckExecutor;
+        this.fraudCheckScheduler = Schedulers.fromExecutor(fraudCheckExecutor);
+        this.batchSaveExecutor = batchSaveExecutor;
+        this.batchSaveScheduler = Schedulers.fromExecutor(batchSaveExecutor);
+        this.maxConcurrency = maxConcurrency;
+        this.fraudChecks = new Semaphore(maxConcurrency);
+    }
+
+    public CompletableFuture<List<PaymentResult>> makePayments(List<Payment> payments) {
+        final List<CompletableFuture<Attempt>> attempts = payments.stream()
+                .map(payment -> CompletableFuture
+                        .supplyAsync(() -> attempt(payment), fraudCheckExecutor)
+                        .exceptionally(this::failedAttempt))
+                .collect(Collectors.toList());
+
+        return CompletableFuture.allOf(attempts.toArray(CompletableFuture[]::new))
+                .thenApplyAsync(done -> record(attempts.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList())), batchSaveExecutor);
+    }
+
+    public Flux<PaymentResult> makePayments(Flux<Payment> payments) {
+        return payments.flatMapSequential(payment -> Mono
+                .fromCallable(() -> attempt(payment))
+                .onErrorResume(t -> Mono.just(failedAttempt(t)))
+                .subscribeOn(fraudCheckScheduler)
+                .publishOn(batchSaveScheduler)
+                .map(attempt -> record(List.of(attempt)).get(0)), maxConcurrency);
+    }
+
+    private Attempt attempt(Payment payment) {
+        final var amount = payment.order.amount;
+        // Screened before taking a slot for the FraudChecker, which
+        // payments decided here do not need.
+        final var transaction = paymentPreScreen.screen(payment.order, payment.creditCard)
+                .orElseGet(() -> checkFraud(payment.creditCard, amount))
+                .makeTransaction(uuidGenerator.generate(), createTransactionDate(), payment.order.id, amount);
+        return transaction
+                .map(Attempt::new)
+                .orElseGet(() -> new Attempt(String.format("Could not verify payment for order %s", payment.order.id)));
+    }
+
+    private FraudStatus checkFraud(CreditCard creditCard, Money amount) {
+        fraudChecks.acquireUninterruptibly();
+        try {
+            return fraudCheckerClient.checkFraud(creditCard, amount);
+        } finally {
+            fraudChecks.release();
+        }
+    }
+
+    private Attempt failedAttempt(Throwable t) {
+        final var cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        LOG.warning(() -> String.format("FAILED Fraud Check <== FraudChecker MicroService %s", cause));
+        return new Attempt(FRAUD_CHECK_FAILED);
+    }
+
+    private List<PaymentResult> record(List<Attempt> attempts) {
+        final var transactions = attempts.stream()
+                .map(attempt -> attempt.transaction)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+        transactionRepository.saveAll(transactions);
+        LOG.info(() -> String.format("Saved %d of %d transactions in batch", transactions.size(), attempts.size()));
+
+        final var results = new ArrayList<PaymentResult>(attempts.size());
+        attempts.forEach(attempt -> results.add(attempt.transaction
+                .map(transaction -> PaymentResult.completed(transaction.reference()))
+                .orElseGet(() -> PaymentResult.failed(attempt.error))));
+        return results;
+    }
+
+    Date createTransactionDate() {
+        return Date.from(Instant.now());
+    }
+
+    private static class Attempt {
+        final Optional<Transaction> transaction;
+        final String error;
+
+        Attempt(Transaction transaction) {
+            this.transaction = Optional.of(transaction);
+            this.error = null;
+        }
+
+        Attempt(String error) {
+            this.transaction = Optional.empty();
+            this.error = error;
+        }
+    }
+}
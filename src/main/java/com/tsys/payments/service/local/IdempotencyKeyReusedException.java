@@ -0,0 +1,12 @@
+package com.tsys.payments.service.local;
+
+/**
+ * Thrown for a request carrying an Idempotency-Key that was first used
+ * for a different payment, which is refused rather than replayed.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String idempotencyKey) {
+        super(String.format("Idempotency-Key %s was used for a different payment", idempotencyKey));
+    }
+}
@@ -0,0 +1,151 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.IdempotencyKey;
+import com.tsys.payments.domain.Order;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.repository.IdempotencyKeyRepository;
+import com.tsys.payments.utils.ExpiringCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
+
+/**
+ * Makes a payment at most once per Idempotency-Key.
+ * <p>
+ * The first request with a key claims it by caching a future for its
+ * response, and only that request goes on to PaymentsService.  Duplicates
+ * that arrive while it is still in flight wait on the same future, and
+ * those arriving after it completed get the cached response straight away.
+ * Once the cache has forgotten a key, the idempotency_keys table still
+ * remembers it, so retries are replayed across evictions and restarts.
+ * The key is saved in the same database transaction as the payment, so
+ * that no payment is saved without the key that replays it.
+ * <p>
+ * A key is only ever replayed to the same request, i.e. order and credit
+ * card, as the one that claimed it.  A request reusing it for another is
+ * refused with an IdempotencyKeyReusedException.  To tell, the key is
+ * saved with an HMAC-SHA256 of the request, under
+ * idempotency.requestHash.secret.  A plain hash would let the card number
+ * be brute-forced back out of it, see CardFingerprint, and unlike a
+ * CardFingerprint it is persisted and compared by every instance, so the
+ * secret is configured, the same for all of them, rather than made up by
+ * each JVM.
+ * <p>
+ * Only completed payments are remembered.  If the FraudChecker could not
+ * verify the payment, or failed, the key is released after answering the
+ * requests waiting on it, so that a later retry gets another go.
+ */
+@Service
+public class IdempotentPaymentsService {
+
+    private static final Logger LOG = Logger.getLogger(IdempotentPaymentsService.class.getName());
+    private static final String REQUEST_HASH_ALGORITHM = "HmacSHA256";
+
+    private final PaymentsService paymentsService;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ExpiringCache<String, Claim> responses;
+    private final SecretKeySpec requestHashKey;
+
+    @Autowired
+    public IdempotentPaymentsService(PaymentsService paymentsService,
+                                     IdempotencyKeyRepository idempotencyKeyRepository,
+                                     @Value("${idempotency.cache.maxSize}") int maxSize,
+                                     @Value("${idempotency.cache.ttl}") long ttl,
+                                     @Value("${idempotency.requestHash.secret}") String requestHashSecret) {
+        if (requestHashSecret == null || requestHashSecret.isBlank())
+            throw new IllegalArgumentException("idempotency.requestHash.secret must be set");
+        this.paymentsService = paymentsService;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.responses = new ExpiringCache<>(maxSize, Duration.ofMillis(ttl));
+        this.requestHashKey = new SecretKeySpec(requestHashSecret.getBytes(StandardCharsets.UTF_8), REQUEST_HASH_ALGORITHM);
+    }
+
+    public Optional<TransactionReference> makePayment(String idempotencyKey, Order order, CreditCard creditCard) {
+        final var requestHash = requestHashOf(order, creditCard);
+        final var claim = new Claim(requestHash);
+        final var inFlightOrDone = responses.putIfAbsent(idempotencyKey, claim);
+        if (inFlightOrDone.isPresent()) {
+            checkSameRequest(idempotencyKey, inFlightOrDone.get().requestHash.equals(requestHash));
+            LOG.info(() -> String.format("Replaying response for Idempotency-Key %s", idempotencyKey));
+            return awaitResponse(inFlightOrDone.get().response);
+        }
+
+        try {
+            final var saved = idempotencyKeyRepository.findById(idempotencyKey);
+            saved.ifPresent(key -> checkSameRequest(idempotencyKey, key.isFor(requestHash)));
+            final var transactionReference = saved
+                    .map(IdempotencyKey::reference)
+                    .or(() -> makePayment(idempotencyKey, order, creditCard, claim));
+            claim.response.complete(transactionReference);
+            return transactionReference;
+        } catch (Throwable t) {
+            responses.remove(idempotencyKey, claim);
+            claim.response.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    private Optional<TransactionReference> makePayment(String idempotencyKey, Order order, CreditCard creditCard, Claim claim) {
+        final var transactionReference = paymentsService.makePayment(order, creditCard,
+                reference -> idempotencyKeyRepository.save(new IdempotencyKey(idempotencyKey, claim.requestHash, reference)));
+        if (transactionReference.isEmpty())
+            responses.remove(idempotencyKey, claim);
+        return transactionReference;
+    }
+
+    private void checkSameRequest(String idempotencyKey, boolean sameRequest) {
+        if (!sameRequest) {
+            LOG.warning(() -> String.format("Idempotency-Key %s reused for a different payment", idempotencyKey));
+            throw new IdempotencyKeyReusedException(idempotencyKey);
+        }
+    }
+
+    private Optional<TransactionReference> awaitResponse(CompletableFuture<Optional<TransactionReference>> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    // What of the request has to be the same for a retry of it: the order,
+    // what it amounts to, and the card it is paid with.
+    String requestHashOf(Order order, CreditCard creditCard) {
+        final var request = String.join("|", order.id, String.valueOf(order.amount.currency),
+                String.valueOf(order.amount.amount), creditCard.number,
+                String.valueOf(creditCard.validUntil == null ? null : creditCard.validUntil.getTime()));
+        try {
+            final var mac = Mac.getInstance(REQUEST_HASH_ALGORITHM);
+            mac.init(requestHashKey);
+            return HexFormat.of().formatHex(mac.doFinal(request.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(REQUEST_HASH_ALGORITHM + " is not available", e);
+        }
+    }
+
+    // The response to the request that claimed a key, and what it asked for.
+    private static class Claim {
+        final String requestHash;
+        final CompletableFuture<Optional<TransactionReference>> response = new CompletableFuture<>();
+
+        Claim(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+}
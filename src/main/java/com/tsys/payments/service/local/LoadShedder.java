@@ -0,0 +1,119 @@
+package com.tsys.payments.service.local;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Decides whether there is room for one more payment, before any work is
+ * done for it.
+ * <p>
+ * At most maxInFlight payments are made at once while payments take no
+ * longer than latencyTarget.  When the FraudChecker slows down, payments
+ * take longer and the limit shrinks in proportion, down to minInFlight,
+ * e.g. payments taking 3 times the target leave room for a third as many.
+ * Latency is a moving average over recent payments, which is almost all
+ * time spent on the fraud check.
+ * <p>
+ * A payment that finds no room is turned away straight away, so the
+ * caller can answer 503 with a Retry-After, instead of queueing the
+ * request behind others that are already slow and letting it time out.
+ */
+@Service
+public class LoadShedder {
+
+    private static final Logger LOG = Logger.getLogger(LoadShedder.class.getName());
+
+    private final int maxInFlight;
+    private final int minInFlight;
+    private final long latencyTargetNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong averageLatencyNanos = new AtomicLong();
+    private final Counter admitted;
+    private final Counter rejected;
+    private final LongSupplier nanoTime;
+
+    @Autowired
+    public LoadShedder(@Value("${load_shedding.maxInFlight}") int maxInFlight,
+                       @Value("${load_shedding.minInFlight}") int minInFlight,
+                       @Value("${load_shedding.latencyTarget}") long latencyTarget,
+                       MeterRegistry meterRegistry) {
+        this(maxInFlight, minInFlight, latencyTarget, meterRegistry, System::nanoTime);
+    }
+
+    LoadShedder(int maxInFlight, int minInFlight, long latencyTarget, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.maxInFlight = maxInFlight;
+        this.minInFlight = minInFlight;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTarget);
+        this.admitted = meterRegistry.counter("payments.load_shedding.admitted");
+        this.rejected = meterRegistry.counter("payments.load_shedding.rejected");
+        Gauge.builder("payments.load_shedding.in_flight", inFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("payments.load_shedding.limit", this, LoadShedder::limit).register(meterRegistry);
+        Gauge.builder("payments.load_shedding.latency", averageLatencyNanos, AtomicLong::get)
+                .baseUnit("nanoseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return a permit to close once the payment is made, or empty if
+     * there is no room for it.
+     */
+    public Optional<Permit> tryAdmit() {
+        final var limit = limit();
+        final var current = inFlight.incrementAndGet();
+        if (current > limit) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            LOG.info(() -> String.format("Shedding payment, %d in flight for a limit of %d", current - 1, limit));
+            return Optional.empty();
+        }
+        admitted.increment();
+        return Optional.of(new Permit(nanoTime.getAsLong()));
+    }
+
+    public Duration retryAfter() {
+        final var seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(averageLatencyNanos.get()));
+        return Duration.ofSeconds(seconds);
+    }
+
+    int limit() {
+        final var averageLatency = averageLatencyNanos.get();
+        if (averageLatency <= latencyTargetNanos)
+            return maxInFlight;
+
+        return (int) Math.max(minInFlight, maxInFlight * latencyTargetNanos / averageLatency);
+    }
+
+    private void recordLatency(long latencyNanos) {
+        // Exponentially weighted, each payment counts for a fifth.
+        averageLatencyNanos.updateAndGet(average -> average == 0
+                ? latencyNanos
+                : average + (latencyNanos - average) / 5);
+    }
+
+    public class Permit implements AutoCloseable {
+        private final long admittedAt;
+
+        private Permit(long admittedAt) {
+            this.admittedAt = admittedAt;
+        }
+
+        @Override
+        public void close() {
+            recordLatency(nanoTime.getAsLong() - admittedAt);
+            inFlight.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Order;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Decides locally on the payments that are trivially safe or trivially
+ * bad, before they are sent to the FraudChecker.
+ */
+@FunctionalInterface
+public interface PaymentPreScreen {
+
+    // Leaves every payment to the FraudChecker.
+    PaymentPreScreen NONE = (order, creditCard) -> Optional.empty();
+
+    /**
+     * @return the verdict on the payment, or empty if the FraudChecker has
+     * to decide.
+     */
+    Optional<FraudStatus> screen(Order order, CreditCard creditCard);
+
+    /**
+     * @return a pre-screen that asks each of the given ones in turn, and
+     * takes the verdict of the first that has one.
+     */
+    static PaymentPreScreen firstOf(List<PaymentPreScreen> preScreens) {
+        if (preScreens.isEmpty())
+            return NONE;
+        if (preScreens.size() == 1)
+            return preScreens.get(0);
+
+        final var stages = preScreens.toArray(new PaymentPreScreen[0]);
+        return (order, creditCard) -> {
+            for (final var stage : stages) {
+                final var fraudStatus = stage.screen(order, creditCard);
+                if (fraudStatus.isPresent())
+                    return fraudStatus;
+            }
+            return Optional.empty();
+        };
+    }
+}
@@ -6,14 +6,17 @@ import com.tsys.payments.domain.Transaction;
 import com.tsys.payments.domain.TransactionReference;
 import com.tsys.payments.repository.TransactionRepository;
 import com.tsys.payments.service.remote.FraudCheckerClient;
+import com.tsys.payments.utils.Deadline;
 import com.tsys.payments.utils.IdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.time.Instant;
 import java.util.Date;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 @Service
@@ -21,25 +24,68 @@ public class PaymentsService {
 
     private static final Logger LOG = Logger.getLogger(PaymentsService.class.getName());
 
+    private final PaymentPreScreen paymentPreScreen;
     private final FraudCheckerClient fraudCheckerClient;
     private final TransactionRepository transactionRepository;
+    private final TransactionsService transactionsService;
+    private final TransactionOperations transactionOperations;
     private IdGenerator<UUID> uuidGenerator;
 
+    public PaymentsService(FraudCheckerClient fraudCheckerClient, TransactionRepository transactionRepository, TransactionsService transactionsService, IdGenerator<UUID> uuidGenerator) {
+        this(PaymentPreScreen.NONE, fraudCheckerClient, transactionRepository, transactionsService, uuidGenerator);
+    }
+
+    public PaymentsService(PaymentPreScreen paymentPreScreen, FraudCheckerClient fraudCheckerClient, TransactionRepository transactionRepository, TransactionsService transactionsService, IdGenerator<UUID> uuidGenerator) {
+        this(paymentPreScreen, fraudCheckerClient, transactionRepository, transactionsService, uuidGenerator, TransactionOperations.withoutTransaction());
+    }
+
     @Autowired
-    public PaymentsService(FraudCheckerClient fraudCheckerClient, TransactionRepository transactionRepository, IdGenerator<UUID> uuidGenerator) {
+    public PaymentsService(PaymentPreScreen paymentPreScreen, FraudCheckerClient fraudCheckerClient, TransactionRepository transactionRepository, TransactionsService transactionsService, IdGenerator<UUID> uuidGenerator, TransactionOperations transactionOperations) {
+        this.paymentPreScreen = paymentPreScreen;
         this.fraudCheckerClient = fraudCheckerClient;
         this.transactionRepository = transactionRepository;
+        this.transactionsService = transactionsService;
+        this.transactionOperations = transactionOperations;
         this.uuidGenerator = uuidGenerator;
     }
 
     public Optional<TransactionReference> makePayment(Order order, CreditCard creditCard) {
+        return makePayment(uuidGenerator.generate(), order, creditCard);
+    }
+
+    // For callers that hand out the transaction id before the payment is made.
+    public Optional<TransactionReference> makePayment(UUID transactionId, Order order, CreditCard creditCard) {
+        return makePayment(transactionId, order, creditCard, reference -> {});
+    }
+
+    // For callers with rows of their own to save along with the transaction.
+    // Both are saved in one database transaction, begun only once the fraud
+    // check is done, so that neither is saved without the other.
+    public Optional<TransactionReference> makePayment(Order order, CreditCard creditCard, Consumer<TransactionReference> saveAlongside) {
+        return makePayment(uuidGenerator.generate(), order, creditCard, saveAlongside);
+    }
+
+    private Optional<TransactionReference> makePayment(UUID transactionId, Order order, CreditCard creditCard, Consumer<TransactionReference> saveAlongside) {
         final var amount = order.amount;
-        final var transaction = fraudCheckerClient
-                .checkFraud(creditCard, amount)
-                .makeTransaction(uuidGenerator.generate(), createTransactionDate(), order.id, amount);
+        // Payments that are trivially safe or bad are decided here,
+        // without a round trip to the FraudChecker.
+        final var transaction = paymentPreScreen.screen(order, creditCard)
+                .orElseGet(() -> {
+                    Deadline.checkCurrent("fraud check");
+                    return fraudCheckerClient.checkFraud(creditCard, amount);
+                })
+                .makeTransaction(transactionId, createTransactionDate(), order.id, amount);
 
         final var transactionReference = transaction.map(Transaction::reference);
-        transaction.ifPresent(t -> transactionRepository.save(t));
+        transaction.ifPresent(t -> {
+            // Nothing is saved for a payment its caller no longer waits on.
+            Deadline.checkCurrent("saving transaction");
+            transactionOperations.executeWithoutResult(status -> {
+                transactionRepository.save(t);
+                saveAlongside.accept(t.reference());
+            });
+            transactionsService.remember(t);
+        });
         LOG.info(() -> String.format("Total Items = %s", transactionRepository));
         return transactionReference;
     }
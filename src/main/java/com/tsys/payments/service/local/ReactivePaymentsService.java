@@ -0,0 +1,85 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.Order;
+import com.tsys.payments.domain.Transaction;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.service.remote.ReactiveFraudCheckerClient;
+import com.tsys.payments.utils.IdGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Reactive variant of {@link PaymentsService}.
+ * <p>
+ * The fraud check is a non-blocking call, but the JPA repository is not,
+ * so the save is shifted onto a bounded scheduler.  That keeps blocking
+ * JDBC work off the HTTP event loop and caps how many threads can be
+ * waiting on the database at any point in time.
+ * <p>
+ * As in PaymentsService, the PaymentPreScreen decides first, and only
+ * payments it leaves undecided are sent to the FraudChecker.  It is local
+ * and in memory, so it is asked on the calling thread.
+ */
+@Service
+@ConditionalOnExpression("#{'${features.web.pipeline:}' == 'reactive'}")
+public class ReactivePaymentsService {
+
+    private static final Logger LOG = Logger.getLogger(ReactivePaymentsService.class.getName());
+
+    private final PaymentPreScreen paymentPreScreen;
+    private final ReactiveFraudCheckerClient fraudCheckerClient;
+    private final TransactionRepository transactionRepository;
+    private final IdGenerator<UUID> uuidGenerator;
+    private final Scheduler persistenceScheduler;
+
+    public ReactivePaymentsService(ReactiveFraudCheckerClient fraudCheckerClient,
+                                   TransactionRepository transactionRepository,
+                                   IdGenerator<UUID> uuidGenerator,
+                                   Scheduler persistenceScheduler) {
+        this(PaymentPreScreen.NONE, fraudCheckerClient, transactionRepository, uuidGenerator, persistenceScheduler);
+    }
+
+    @Autowired
+    public ReactivePaymentsService(PaymentPreScreen paymentPreScreen,
+                                   ReactiveFraudCheckerClient fraudCheckerClient,
+                                   TransactionRepository transactionRepository,
+                                   IdGenerator<UUID> uuidGenerator,
+                                   @Qualifier("persistenceScheduler") Scheduler persistenceScheduler) {
+        this.paymentPreScreen = paymentPreScreen;
+        this.fraudCheckerClient = fraudCheckerClient;
+        this.transactionRepository = transactionRepository;
+        this.uuidGenerator = uuidGenerator;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    public Mono<TransactionReference> makePayment(Order order, CreditCard creditCard) {
+        final var amount = order.amount;
+        return Mono.defer(() -> Mono.justOrEmpty(paymentPreScreen.screen(order, creditCard)))
+                .switchIfEmpty(Mono.defer(() -> fraudCheckerClient.checkFraud(creditCard, amount)))
+                .flatMap(fraudStatus -> Mono.justOrEmpty(fraudStatus.makeTransaction(uuidGenerator.generate(), createTransactionDate(), order.id, amount)))
+                .flatMap(this::save)
+                .map(Transaction::reference);
+    }
+
+    private Mono<Transaction> save(Transaction transaction) {
+        return Mono.fromCallable(() -> transactionRepository.save(transaction))
+                .subscribeOn(persistenceScheduler)
+                .doOnNext(saved -> LOG.info(() -> String.format("Saved %s", saved)))
+                .thenReturn(transaction);
+    }
+
+    Date createTransactionDate() {
+        return Date.from(Instant.now());
+    }
+}
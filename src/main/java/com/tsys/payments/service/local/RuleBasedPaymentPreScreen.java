@@ -0,0 +1,253 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.domain.Order;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Screens payments against a fixed set of rules, each of which either
+ * rejects the payment, or for small amounts accepts it, without asking
+ * the FraudChecker.
+ * <p>
+ * The rules, in the order they are tried:
+ * <ol>
+ *     <li>non_positive_amount - rejects orders of nothing, or less.</li>
+ *     <li>expired - rejects cards past their validUntil.</li>
+ *     <li>currency - rejects currencies not in allowedCurrencies, when
+ *     that is given.</li>
+ *     <li>blocked_bin - rejects cards whose number starts within one of
+ *     blockedBins, e.g. "400000-400099,5123".</li>
+ *     <li>amount_above - rejects amounts above the rejectAbove limit for
+ *     their currency, e.g. "INR:500000,USD:5000".</li>
+ *     <li>amount_below - accepts amounts below the passBelow limit for
+ *     their currency, once none of the above rejected them.</li>
+ * </ol>
+ * Rules left unconfigured are left out altogether.  The configuration is
+ * parsed and compiled once, here: the blocked BINs into sorted, merged
+ * ranges of 8 digit prefixes that are binary searched, the currencies and
+ * limits into maps keyed by currency.  Screening a payment then only reads
+ * the first 8 digits of the card number and runs through the array of
+ * rules, with nothing left to parse or look up by name.
+ */
+public class RuleBasedPaymentPreScreen implements PaymentPreScreen {
+
+    private static final Logger LOG = Logger.getLogger(RuleBasedPaymentPreScreen.class.getName());
+    private static final int BIN_DIGITS = 8;
+    private static final Optional<FraudStatus> PASS = Optional.of(new FraudStatus("pass"));
+    private static final Optional<FraudStatus> FAIL = Optional.of(new FraudStatus("fail"));
+
+    private final Rule[] rules;
+    private final LongSupplier currentTimeMillis;
+    private final Counter screened;
+    private final LongAdder decided = new LongAdder();
+
+    public RuleBasedPaymentPreScreen(boolean rejectExpired, String blockedBins, String allowedCurrencies,
+                                     String rejectAbove, String passBelow, MeterRegistry meterRegistry) {
+        this(rejectExpired, blockedBins, allowedCurrencies, rejectAbove, passBelow, meterRegistry, System::currentTimeMillis);
+    }
+
+    RuleBasedPaymentPreScreen(boolean rejectExpired, String blockedBins, String allowedCurrencies,
+                              String rejectAbove, String passBelow, MeterRegistry meterRegistry,
+                              LongSupplier currentTimeMillis) {
+        this.currentTimeMillis = currentTimeMillis;
+        this.rules = compile(rejectExpired, blockedBins, allowedCurrencies, rejectAbove, passBelow, meterRegistry);
+        this.screened = meterRegistry.counter("payments.pre_screen.screened");
+        Gauge.builder("payments.pre_screen.skip_rate", this, RuleBasedPaymentPreScreen::skipRate)
+                .description("share of payments decided without the FraudChecker")
+                .register(meterRegistry);
+        LOG.info(() -> String.format("Pre-screening payments with rules %s",
+                Arrays.stream(rules).map(rule -> rule.name).collect(Collectors.toList())));
+    }
+
+    @Override
+    public Optional<FraudStatus> screen(Order order, CreditCard creditCard) {
+        screened.increment();
+        final var now = currentTimeMillis.getAsLong();
+        for (final var rule : rules) {
+            if (rule.condition.matches(order, creditCard, now)) {
+                rule.decided.increment();
+                decided.increment();
+                LOG.info(() -> String.format("Pre-screen rule %s decided %s for order %s", rule.name, rule.verdict.get(), order.id));
+                return rule.verdict;
+            }
+        }
+        return Optional.empty();
+    }
+
+    double skipRate() {
+        final var total = screened.count();
+        return total == 0 ? 0 : decided.sum() / total;
+    }
+
+    private static Rule[] compile(boolean rejectExpired, String blockedBins, String allowedCurrencies,
+                                  String rejectAbove, String passBelow, MeterRegistry meterRegistry) {
+        final var rules = new ArrayList<Rule>();
+        rules.add(new Rule("non_positive_amount", FAIL, meterRegistry,
+                (order, creditCard, now) -> order.amount.amount <= 0));
+
+        if (rejectExpired)
+            rules.add(new Rule("expired", FAIL, meterRegistry,
+                    (order, creditCard, now) -> creditCard.validUntil != null && creditCard.validUntil.getTime() < now));
+
+        final var currencies = parseCurrencies(allowedCurrencies);
+        if (!currencies.isEmpty())
+            rules.add(new Rule("currency", FAIL, meterRegistry,
+                    (order, creditCard, now) -> !currencies.contains(order.amount.currency)));
+
+        final var bins = BinRanges.parse(blockedBins);
+        if (!bins.isEmpty())
+            rules.add(new Rule("blocked_bin", FAIL, meterRegistry,
+                    (order, creditCard, now) -> bins.contains(creditCard.number)));
+
+        final var upperLimits = Money.parseLimits(rejectAbove);
+        if (!upperLimits.isEmpty())
+            rules.add(new Rule("amount_above", FAIL, meterRegistry, (order, creditCard, now) -> {
+                final var limit = upperLimits.get(order.amount.currency);
+                return limit != null && order.amount.amount > limit.amount;
+            }));
+
+        final var lowerLimits = Money.parseLimits(passBelow);
+        if (!lowerLimits.isEmpty())
+            rules.add(new Rule("amount_below", PASS, meterRegistry, (order, creditCard, now) -> {
+                final var limit = lowerLimits.get(order.amount.currency);
+                return limit != null && order.amount.amount < limit.amount;
+            }));
+
+        return rules.toArray(new Rule[0]);
+    }
+
+    private static Set<Currency> parseCurrencies(String currencies) {
+        return entries(currencies).stream()
+                .map(RuleBasedPaymentPreScreen::currency)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static Currency currency(String code) {
+        try {
+            return Currency.getInstance(code.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Unknown currency '%s'", code.trim()), e);
+        }
+    }
+
+    private static List<String> entries(String commaSeparated) {
+        if (commaSeparated == null)
+            return List.of();
+        return Arrays.stream(commaSeparated.split(","))
+                .map(String::trim)
+                .filter(entry -> !entry.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean matches(Order order, CreditCard creditCard, long now);
+    }
+
+    private static class Rule {
+        final String name;
+        final Optional<FraudStatus> verdict;
+        final Condition condition;
+        final Counter decided;
+
+        Rule(String name, Optional<FraudStatus> verdict, MeterRegistry meterRegistry, Condition condition) {
+            this.name = name;
+            this.verdict = verdict;
+            this.condition = condition;
+            this.decided = meterRegistry.counter("payments.pre_screen.decided",
+                    "rule", name, "verdict", verdict.get().overall);
+        }
+    }
+
+    // BIN prefixes of up to 8 digits, each widened to the range of 8 digit
+    // prefixes it covers, e.g. "4000-4001" => 40000000..40019999.
+    private static class BinRanges {
+        private final long[] starts;
+        private final long[] ends;
+
+        private BinRanges(long[] starts, long[] ends) {
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        static BinRanges parse(String bins) {
+            final var ranges = new ArrayList<long[]>();
+            for (final var entry : entries(bins)) {
+                final var bounds = entry.split("-");
+                if (bounds.length > 2)
+                    throw new IllegalArgumentException(String.format("Expected BIN or BIN-BIN, got '%s'", entry));
+                final var start = widen(bounds[0].trim(), '0');
+                final var end = widen(bounds[bounds.length - 1].trim(), '9');
+                if (start > end)
+                    throw new IllegalArgumentException(String.format("BIN range '%s' is empty", entry));
+                ranges.add(new long[]{start, end});
+            }
+
+            // Merged, so that no two ranges overlap and the starts alone
+            // can be searched.
+            ranges.sort(Comparator.comparingLong(range -> range[0]));
+            final var merged = new ArrayList<long[]>();
+            for (final var range : ranges) {
+                final var last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && range[0] <= last[1] + 1)
+                    last[1] = Math.max(last[1], range[1]);
+                else
+                    merged.add(range);
+            }
+            return new BinRanges(merged.stream().mapToLong(range -> range[0]).toArray(),
+                    merged.stream().mapToLong(range -> range[1]).toArray());
+        }
+
+        boolean isEmpty() {
+            return starts.length == 0;
+        }
+
+        boolean contains(String cardNumber) {
+            final var bin = bin(cardNumber);
+            if (bin < 0)
+                return false;
+            final var found = Arrays.binarySearch(starts, bin);
+            final var index = found >= 0 ? found : -found - 2;
+            return index >= 0 && bin <= ends[index];
+        }
+
+        // @return the first 8 digits of the card number, ignoring spaces
+        // and dashes, or -1 if it has fewer.
+        private static long bin(String cardNumber) {
+            if (cardNumber == null)
+                return -1;
+            long bin = 0;
+            int digits = 0;
+            for (int i = 0; i < cardNumber.length() && digits < BIN_DIGITS; i++) {
+                final var c = cardNumber.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    bin = bin * 10 + (c - '0');
+                    digits++;
+                }
+            }
+            return digits == BIN_DIGITS ? bin : -1;
+        }
+
+        private static long widen(String prefix, char padding) {
+            if (prefix.isEmpty() || prefix.length() > BIN_DIGITS || !prefix.chars().allMatch(Character::isDigit))
+                throw new IllegalArgumentException(String.format("BIN must be 1 to %d digits, got '%s'", BIN_DIGITS, prefix));
+            return Long.parseLong(prefix + String.valueOf(padding).repeat(BIN_DIGITS - prefix.length()));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.Transaction;
+import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.utils.ExpiringCache;
+import com.tsys.payments.utils.TimeOrderedUUIDGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Looks up transactions for merchants polling for the status of their
+ * payments.
+ * <p>
+ * Reads by id go through a bounded, expiring cache in front of the
+ * repository, which PaymentsService also fills as it saves each new
+ * transaction.  So the usual poll right after a payment never reaches the
+ * database.  Misses are not cached, a payment made later must show up on
+ * the next poll.  Transactions are never changed once saved, so a cached
+ * one can not go stale.
+ * <p>
+ * Reads by order id answer the latest transaction of the order, as an
+ * order retried without an Idempotency-Key gets a transaction per attempt.
+ * That changes whenever the order is retried, on any instance and through
+ * any of the ways to pay, so the latest one read is only cached for the
+ * short orderTtl, long enough for a merchant's polls in quick succession
+ * to be answered without a query, short enough that a retry made
+ * elsewhere shows up soon after.  A payment saved by PaymentsService here
+ * is the latest of its order straight away.
+ */
+@Service
+public class TransactionsService {
+
+    private static final Logger LOG = Logger.getLogger(TransactionsService.class.getName());
+    private static final int TIME_ORDERED = 7;
+
+    private final TransactionRepository transactionRepository;
+    private final ExpiringCache<UUID, Transaction> byId;
+    private final ExpiringCache<String, Transaction> latestByOrderId;
+
+    @Autowired
+    public TransactionsService(TransactionRepository transactionRepository,
+                               @Value("${transactions.cache.maxSize}") int maxSize,
+                               @Value("${transactions.cache.ttl}") long ttl,
+                               @Value("${transactions.cache.orderTtl}") long orderTtl) {
+        this(transactionRepository, maxSize, ttl, orderTtl, System::nanoTime);
+    }
+
+    TransactionsService(TransactionRepository transactionRepository, int maxSize, long ttl, long orderTtl, LongSupplier nanoTime) {
+        this.transactionRepository = transactionRepository;
+        this.byId = new ExpiringCache<>(maxSize, Duration.ofMillis(ttl), nanoTime);
+        this.latestByOrderId = new ExpiringCache<>(maxSize, Duration.ofMillis(orderTtl), nanoTime);
+    }
+
+    public Optional<Transaction> findById(UUID id) {
+        return byId.get(id).or(() -> {
+            LOG.info(() -> String.format("Transaction %s not cached, reading from repository", id));
+            final var transaction = transactionRepository.findById(id);
+            transaction.ifPresent(t -> byId.put(t.id, t));
+            return transaction;
+        });
+    }
+
+    public Optional<Transaction> findByOrderId(String orderId) {
+        return latestByOrderId.get(orderId).or(() -> {
+            LOG.info(() -> String.format("Reading latest transaction for order %s from repository", orderId));
+            final var transaction = transactionRepository.findFirstByOrderIdOrderByDateDesc(orderId);
+            transaction.ifPresent(t -> {
+                byId.put(t.id, t);
+                latestByOrderId.put(orderId, t);
+            });
+            return transaction;
+        });
+    }
+
+    /**
+     * @return up to limit transactions made from, inclusive, to, exclusive,
+     * oldest first, by a range scan of their ids.  Only transactions with
+     * ids from TimeOrderedUUIDGenerator are found, not read from the cache.
+     */
+    public List<Transaction> findMadeBetween(Instant from, Instant to, int limit) {
+        return transactionRepository.findAllByIdRange(TimeOrderedUUIDGenerator.lowestAt(from),
+                        TimeOrderedUUIDGenerator.lowestAt(to), PageRequest.of(0, limit))
+                .stream()
+                // Random ids fall anywhere, into the range too.
+                .filter(transaction -> transaction.id.version() == TIME_ORDERED)
+                .collect(Collectors.toList());
+    }
+
+    // For a transaction just saved, which is the latest of its order.
+    public void remember(Transaction transaction) {
+        byId.put(transaction.id, transaction);
+        latestByOrderId.put(transaction.orderId, transaction);
+    }
+}
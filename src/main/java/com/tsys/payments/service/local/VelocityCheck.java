@@ -0,0 +1,140 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.CardFingerprint;
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.domain.Order;
+import com.tsys.payments.utils.VelocityTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the charges, and sums the money charged, on each card over
+ * several sliding windows, e.g. the last minute, hour and day, and stops
+ * payments on cards that go over the limits for any of them.
+ * <p>
+ * Every payment screened is counted, whether it then goes through or not,
+ * since a burst of declined attempts is just what card testing looks
+ * like.  A payment over a limit is rejected ("fail"), or when flagging,
+ * held back as "suspicious" like the FraudChecker does, so that no
+ * transaction is made.  Either way the FraudChecker is not called.
+ * <p>
+ * Cards are told apart by {@link CardFingerprint#ofNumber}, so that a
+ * different CVV or holder name does not start a card afresh.  Charges are
+ * counted per card, whatever their currency, so that card testing spread
+ * over currencies is caught as well, while amounts are summed per card
+ * and currency, in its minor units.  At most maxCards cards, and as many
+ * cards in a currency, are tracked, see {@link VelocityTracker} for how
+ * they are evicted.
+ */
+public class VelocityCheck implements PaymentPreScreen {
+
+    private static final Logger LOG = Logger.getLogger(VelocityCheck.class.getName());
+
+    private final List<Limit> limits;
+    private final VelocityTracker<String> charges;
+    private final VelocityTracker<String> amounts;
+    private final Optional<FraudStatus> verdict;
+    private final Counter[] exceeded;
+
+    public VelocityCheck(List<Limit> limits, boolean reject, int maxCards, int bucketsPerWindow, MeterRegistry meterRegistry) {
+        this(limits, reject, maxCards, bucketsPerWindow, meterRegistry, System::nanoTime);
+    }
+
+    VelocityCheck(List<Limit> limits, boolean reject, int maxCards, int bucketsPerWindow, MeterRegistry meterRegistry,
+                  LongSupplier nanoTime) {
+        this.limits = List.copyOf(limits);
+        final var windows = limits.stream().map(limit -> limit.window).collect(Collectors.toList());
+        this.charges = new VelocityTracker<>(windows, bucketsPerWindow, maxCards, nanoTime);
+        this.amounts = new VelocityTracker<>(windows, bucketsPerWindow, maxCards, nanoTime);
+        this.verdict = Optional.of(new FraudStatus(reject ? "fail" : "suspicious"));
+        final var action = reject ? "reject" : "flag";
+        this.exceeded = limits.stream()
+                .map(limit -> meterRegistry.counter("payments.velocity.exceeded", "window", limit.name, "action", action))
+                .toArray(Counter[]::new);
+        Gauge.builder("payments.velocity.cards", charges, VelocityTracker::size)
+                .register(meterRegistry);
+        FunctionCounter.builder("payments.velocity.evicted", this, check -> check.charges.evicted() + check.amounts.evicted())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<FraudStatus> screen(Order order, CreditCard creditCard) {
+        final var amount = order.amount;
+        final var card = CardFingerprint.ofNumber(creditCard).value;
+        final var chargeTotals = charges.record(card, 0);
+        final var amountTotals = amounts.record(keyOf(card, amount.currency), amount.minorUnits());
+        for (int i = 0; i < limits.size(); i++) {
+            final var limit = limits.get(i);
+            final var count = chargeTotals[i].count;
+            final var sum = amountTotals[i].amount;
+            if (limit.isExceededBy(count, sum, amount.currency)) {
+                exceeded[i].increment();
+                LOG.info(() -> String.format("Card charged %d times, %d in minor units of %s, over the last %s - over the limit for order %s",
+                        count, sum, amount.currency, limit.name, order.id));
+                return verdict;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the charges on the card, in any currency, and the amount
+     * charged in the given one, per window name, without counting this as
+     * one.
+     */
+    public Map<String, VelocityTracker.Totals> velocity(CreditCard creditCard, Currency currency) {
+        final var card = CardFingerprint.ofNumber(creditCard).value;
+        final var chargeTotals = charges.totals(card);
+        final var amountTotals = amounts.totals(keyOf(card, currency));
+        final var velocity = new LinkedHashMap<String, VelocityTracker.Totals>();
+        for (int i = 0; i < limits.size(); i++)
+            velocity.put(limits.get(i).name, new VelocityTracker.Totals(chargeTotals[i].count, amountTotals[i].amount));
+        return velocity;
+    }
+
+    private static String keyOf(String card, Currency currency) {
+        return card + "/" + currency.getCurrencyCode();
+    }
+
+    /**
+     * The most charges, and the most money per currency, a card may take
+     * within a window.  A maxCharges of 0 or less means no limit on the
+     * charges, a currency left out means no limit on its amount.
+     */
+    public static class Limit {
+        final String name;
+        final Duration window;
+        final long maxCharges;
+        final Map<Currency, Long> maxAmounts;
+
+        // maxAmounts as in "INR:100000,USD:1500"
+        public Limit(String name, Duration window, long maxCharges, String maxAmounts) {
+            this.name = name;
+            this.window = window;
+            this.maxCharges = maxCharges;
+            this.maxAmounts = Money.parseLimits(maxAmounts).entrySet().stream()
+                    .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> entry.getValue().minorUnits()));
+        }
+
+        boolean isExceededBy(long charges, long amount, Currency currency) {
+            if (maxCharges > 0 && charges > maxCharges)
+                return true;
+            final var maxAmount = maxAmounts.get(currency);
+            return maxAmount != null && amount > maxAmount;
+        }
+    }
+}
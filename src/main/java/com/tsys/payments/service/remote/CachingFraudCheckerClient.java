@@ -0,0 +1,92 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CardFingerprint;
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.utils.ExpiringCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the FraudChecker's pass verdicts for a short while, so that a
+ * repeat charge of a similar amount on the same card is not checked again.
+ * <p>
+ * Charges are similar when they are in the same currency and fall into
+ * the same band of amountBand width, e.g. with a band of 50, charges of
+ * 10 and 49.99 share a verdict but 50 does not.  Cards are recognised by
+ * their {@link CardFingerprint}, so no card number is kept in memory.
+ * <p>
+ * Only pass verdicts are cached.  A failed or suspicious card is checked
+ * again on every charge, and so is anything the FraudChecker could not
+ * answer.
+ */
+public class CachingFraudCheckerClient implements FraudCheckerClient {
+
+    private static final Logger LOG = Logger.getLogger(CachingFraudCheckerClient.class.getName());
+    private static final String PASS = "pass";
+
+    private final FraudCheckerClient fraudCheckerClient;
+    private final double amountBand;
+    private final ExpiringCache<String, FraudStatus> verdicts;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CachingFraudCheckerClient(FraudCheckerClient fraudCheckerClient, int maxSize, Duration ttl,
+                                     double amountBand, MeterRegistry meterRegistry) {
+        this(fraudCheckerClient, maxSize, ttl, amountBand, meterRegistry, System::nanoTime);
+    }
+
+    CachingFraudCheckerClient(FraudCheckerClient fraudCheckerClient, int maxSize, Duration ttl,
+                              double amountBand, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        if (amountBand <= 0)
+            throw new IllegalArgumentException("amountBand must be positive, was " + amountBand);
+
+        this.fraudCheckerClient = fraudCheckerClient;
+        this.amountBand = amountBand;
+        this.verdicts = new ExpiringCache<>(maxSize, ttl, nanoTime);
+        this.hits = meterRegistry.counter("payments.fraud_checker.cache.hits");
+        this.misses = meterRegistry.counter("payments.fraud_checker.cache.misses");
+        Gauge.builder("payments.fraud_checker.cache.hit_ratio", this, CachingFraudCheckerClient::hitRatio)
+                .register(meterRegistry);
+        Gauge.builder("payments.fraud_checker.cache.size", verdicts, ExpiringCache::size)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public FraudStatus checkFraud(CreditCard creditCard, Money chargedAmount) {
+        final var key = keyFor(creditCard, chargedAmount);
+        final var cached = verdicts.get(key);
+        if (cached.isPresent()) {
+            hits.increment();
+            LOG.info(() -> String.format("Using cached %s for charge of %s", cached.get(), chargedAmount));
+            return cached.get();
+        }
+
+        misses.increment();
+        final var fraudStatus = fraudCheckerClient.checkFraud(creditCard, chargedAmount);
+        if (fraudStatus != null && PASS.equals(fraudStatus.overall))
+            verdicts.put(key, fraudStatus);
+        return fraudStatus;
+    }
+
+    @Override
+    public FraudStatus checkFraudFallback(CreditCard creditCard, Money chargedAmount) {
+        return fraudCheckerClient.checkFraudFallback(creditCard, chargedAmount);
+    }
+
+    private String keyFor(CreditCard creditCard, Money chargedAmount) {
+        final var band = (long) Math.floor(chargedAmount.amount / amountBand);
+        return String.format("%s/%s/%d", CardFingerprint.of(creditCard), chargedAmount.currency, band);
+    }
+
+    private double hitRatio() {
+        final var lookups = hits.count() + misses.count();
+        return lookups == 0 ? 0 : hits.count() / lookups;
+    }
+}
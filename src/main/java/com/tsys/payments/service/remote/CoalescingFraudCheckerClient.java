@@ -0,0 +1,104 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CardFingerprint;
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Lets identical fraud checks that are in flight at the same time share
+ * one call to the FraudChecker, e.g. when a client retries, or a customer
+ * double-clicks, before the first payment is answered.
+ * <p>
+ * Fraud checks are identical when they are for the same card, by its
+ * {@link CardFingerprint}, and the same amount.  The first one goes on to
+ * the FraudChecker and the others wait for its FraudStatus, or its
+ * exception.  Once it is answered, the next identical check goes to the
+ * FraudChecker again, nothing is remembered.
+ * <p>
+ * A FraudStatus taken "unverified" by the {@link FraudCheckFallbackPolicy}
+ * is not shared: it admitted only the payment that went to the
+ * FraudChecker, so each check that joined it goes to the fallback itself,
+ * adding its own amount to the exposure, or getting FraudStatus.EMPTY
+ * once that is used up.
+ * <p>
+ * payments.fraud_checker.coalescing.ratio is the share of fraud checks
+ * that did not need a call of their own.
+ */
+public class CoalescingFraudCheckerClient implements FraudCheckerClient {
+
+    private static final Logger LOG = Logger.getLogger(CoalescingFraudCheckerClient.class.getName());
+
+    private final FraudCheckerClient fraudCheckerClient;
+    private final ConcurrentHashMap<String, CompletableFuture<FraudStatus>> inFlight = new ConcurrentHashMap<>();
+    private final Counter checks;
+    private final Counter coalesced;
+
+    public CoalescingFraudCheckerClient(FraudCheckerClient fraudCheckerClient, MeterRegistry meterRegistry) {
+        this.fraudCheckerClient = fraudCheckerClient;
+        this.checks = meterRegistry.counter("payments.fraud_checker.coalescing.checks");
+        this.coalesced = meterRegistry.counter("payments.fraud_checker.coalescing.coalesced");
+        Gauge.builder("payments.fraud_checker.coalescing.ratio", this, CoalescingFraudCheckerClient::coalescingRatio)
+                .register(meterRegistry);
+        Gauge.builder("payments.fraud_checker.coalescing.in_flight", inFlight, ConcurrentHashMap::size)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public FraudStatus checkFraud(CreditCard creditCard, Money chargedAmount) {
+        checks.increment();
+        final var key = String.format("%s/%s/%s", CardFingerprint.of(creditCard), chargedAmount.currency, chargedAmount.amount);
+        final var response = new CompletableFuture<FraudStatus>();
+        final var inFlightResponse = inFlight.putIfAbsent(key, response);
+        if (inFlightResponse != null) {
+            coalesced.increment();
+            LOG.info(() -> String.format("Joining fraud check in flight for charge of %s", chargedAmount));
+            final var fraudStatus = awaitResponse(inFlightResponse);
+            if (FraudCheckFallbackPolicy.UNVERIFIED.equals(fraudStatus.overall))
+                return fraudCheckerClient.checkFraudFallback(creditCard, chargedAmount);
+            return fraudStatus;
+        }
+
+        try {
+            final var fraudStatus = fraudCheckerClient.checkFraud(creditCard, chargedAmount);
+            response.complete(fraudStatus);
+            return fraudStatus;
+        } catch (Throwable e) {
+            // Errors too, or the checks that joined wait forever.
+            response.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, response);
+        }
+    }
+
+    @Override
+    public FraudStatus checkFraudFallback(CreditCard creditCard, Money chargedAmount) {
+        return fraudCheckerClient.checkFraudFallback(creditCard, chargedAmount);
+    }
+
+    private FraudStatus awaitResponse(CompletableFuture<FraudStatus> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private double coalescingRatio() {
+        final var all = checks.count();
+        return all == 0 ? 0 : coalesced.count() / all;
+    }
+}
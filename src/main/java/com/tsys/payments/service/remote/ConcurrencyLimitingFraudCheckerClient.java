@@ -0,0 +1,198 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Caps the fraud checks in flight to the FraudChecker, and finds the cap
+ * from how fast the FraudChecker answers (AIMD).
+ * <p>
+ * Every answer is compared with a slowly moving average of recent round
+ * trips.  One that takes more than rttTolerance times as long, or a
+ * failure, means the FraudChecker is queueing, and cuts the limit by
+ * backoffRatio, at most once per average round trip, so that a burst of
+ * slow answers to checks sent together counts once.  A timely answer while at least half the limit is in use
+ * raises it by 1/limit, i.e. by about one per limit's worth of checks.
+ * The limit stays between minLimit and maxLimit.
+ * <p>
+ * A fraud check that finds the limit reached waits for at most
+ * maxQueueTime, behind at most maxQueueSize others, and is then answered
+ * with {@link FraudStatus#EMPTY}, i.e. 502 Bad Gateway, without calling
+ * the FraudChecker at all.  Not with the fallback of the FraudCheckerClient
+ * wrapped, which the default one does not have.
+ */
+public class ConcurrencyLimitingFraudCheckerClient implements FraudCheckerClient {
+
+    private static final Logger LOG = Logger.getLogger(ConcurrencyLimitingFraudCheckerClient.class.getName());
+
+    private final FraudCheckerClient fraudCheckerClient;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double backoffRatio;
+    private final int maxQueueSize;
+    private final long maxQueueTimeNanos;
+    private final LongSupplier nanoTime;
+    // The limit is fractional, so that it can grow by 1/limit, and is kept
+    // as the bits of a double.
+    private final AtomicLong limit;
+    private final AtomicLong averageRttNanos = new AtomicLong();
+    private final AtomicLong nextBackoffAt;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private final Counter rejected;
+
+    public ConcurrencyLimitingFraudCheckerClient(FraudCheckerClient fraudCheckerClient, int initialLimit,
+                                                 int minLimit, int maxLimit, double rttTolerance, double backoffRatio,
+                                                 int maxQueueSize, Duration maxQueueTime, MeterRegistry meterRegistry) {
+        this(fraudCheckerClient, initialLimit, minLimit, maxLimit, rttTolerance, backoffRatio,
+                maxQueueSize, maxQueueTime, meterRegistry, System::nanoTime);
+    }
+
+    ConcurrencyLimitingFraudCheckerClient(FraudCheckerClient fraudCheckerClient, int initialLimit,
+                                          int minLimit, int maxLimit, double rttTolerance, double backoffRatio,
+                                          int maxQueueSize, Duration maxQueueTime, MeterRegistry meterRegistry,
+                                          LongSupplier nanoTime) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException(String.format("Limits must be 0 < %d <= %d <= %d", minLimit, initialLimit, maxLimit));
+
+        this.fraudCheckerClient = fraudCheckerClient;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.backoffRatio = backoffRatio;
+        this.maxQueueSize = maxQueueSize;
+        this.maxQueueTimeNanos = maxQueueTime.toNanos();
+        this.nanoTime = nanoTime;
+        this.limit = new AtomicLong(Double.doubleToLongBits(initialLimit));
+        this.nextBackoffAt = new AtomicLong(nanoTime.getAsLong());
+        this.rejected = meterRegistry.counter("payments.fraud_checker.concurrency.rejected");
+        Gauge.builder("payments.fraud_checker.concurrency.limit", this, ConcurrencyLimitingFraudCheckerClient::limit)
+                .register(meterRegistry);
+        Gauge.builder("payments.fraud_checker.concurrency.in_flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("payments.fraud_checker.concurrency.queued", queued, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("payments.fraud_checker.concurrency.rtt", averageRttNanos, AtomicLong::get)
+                .baseUnit("nanoseconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public FraudStatus checkFraud(CreditCard creditCard, Money chargedAmount) {
+        final var inFlightBefore = acquire();
+        if (inFlightBefore < 0) {
+            rejected.increment();
+            LOG.info(() -> String.format("Rejecting charge of %s, %d fraud checks in flight for a limit of %d",
+                    chargedAmount, inFlight.get(), (int) limit()));
+            return FraudStatus.EMPTY;
+        }
+
+        final var startedAt = nanoTime.getAsLong();
+        var failed = true;
+        try {
+            final var fraudStatus = fraudCheckerClient.checkFraud(creditCard, chargedAmount);
+            failed = false;
+            return fraudStatus;
+        } finally {
+            release(inFlightBefore, nanoTime.getAsLong() - startedAt, failed);
+        }
+    }
+
+    @Override
+    public FraudStatus checkFraudFallback(CreditCard creditCard, Money chargedAmount) {
+        return fraudCheckerClient.checkFraudFallback(creditCard, chargedAmount);
+    }
+
+    double limit() {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    // Only the first of the congested answers within a round trip of the
+    // last back off backs off again.
+    private boolean mayBackOff(long rttNanos) {
+        final var now = nanoTime.getAsLong();
+        final var backoffAt = nextBackoffAt.get();
+        return now - backoffAt >= 0 && nextBackoffAt.compareAndSet(backoffAt, now + rttNanos);
+    }
+
+    // @return the fraud checks in flight before this one, or -1 if there
+    // was no room for it.
+    private int acquire() {
+        final var inFlightBefore = tryAcquire();
+        if (inFlightBefore >= 0 || maxQueueSize == 0)
+            return inFlightBefore;
+
+        if (queued.incrementAndGet() > maxQueueSize) {
+            queued.decrementAndGet();
+            return -1;
+        }
+        lock.lock();
+        try {
+            var remaining = maxQueueTimeNanos;
+            while (true) {
+                final var acquired = tryAcquire();
+                if (acquired >= 0 || remaining <= 0)
+                    return acquired;
+                remaining = slotFreed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } finally {
+            lock.unlock();
+            queued.decrementAndGet();
+        }
+    }
+
+    private int tryAcquire() {
+        while (true) {
+            final var current = inFlight.get();
+            if (current >= (int) limit())
+                return -1;
+            if (inFlight.compareAndSet(current, current + 1))
+                return current;
+        }
+    }
+
+    private void release(int inFlightBefore, long rttNanos, boolean failed) {
+        final var averageRtt = averageRttNanos.getAndUpdate(average -> average == 0
+                ? rttNanos
+                : average + (rttNanos - average) / 20);
+        final var congested = failed || (averageRtt > 0 && rttNanos > rttTolerance * averageRtt);
+        if (congested) {
+            if (mayBackOff(averageRtt == 0 ? rttNanos : averageRtt))
+                limit.getAndUpdate(bits -> Double.doubleToLongBits(Math.max(minLimit, Double.longBitsToDouble(bits) * backoffRatio)));
+        } else {
+            limit.getAndUpdate(bits -> {
+                final var current = Double.longBitsToDouble(bits);
+                if (inFlightBefore + 1 >= current / 2)
+                    return Double.doubleToLongBits(Math.min(maxLimit, current + 1 / current));
+                return bits;
+            });
+        }
+        inFlight.decrementAndGet();
+        if (queued.get() > 0) {
+            lock.lock();
+            try {
+                slotFreed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
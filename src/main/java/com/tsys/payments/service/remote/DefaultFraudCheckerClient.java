@@ -4,6 +4,7 @@ import com.tsys.payments.domain.CreditCard;
 import com.tsys.payments.domain.FraudStatus;
 import com.tsys.payments.domain.Money;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Service;
@@ -15,22 +16,23 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 @Service
+@Qualifier("remote")
 //@Qualifier("fraud_checker_retry")
 @ConditionalOnExpression("#{'${features.resiliency.latency_control.strategy}' == '' }")
 public class DefaultFraudCheckerClient implements FraudCheckerClient {
 
     private static final Logger LOG = Logger.getLogger(DefaultFraudCheckerClient.class.getName());
 
-    private final RestTemplate restTemplateWithoutTimeout;
+    private final RestTemplate restTemplate;
 
     private final String fraudCheckerServiceUrl;
 
     @Autowired
     public DefaultFraudCheckerClient(@Value("${fraud-checker.service.host}") String hostname,
                                      @Value("${fraud-checker.service.port}") int port,
-                                     RestTemplate restTemplateWithoutTimeout) {
+                                     RestTemplate restTemplate) {
         fraudCheckerServiceUrl = String.format("%s:%d", hostname, port);
-        this.restTemplateWithoutTimeout = restTemplateWithoutTimeout;
+        this.restTemplate = restTemplate;
     }
 
 
@@ -46,7 +48,7 @@ public class DefaultFraudCheckerClient implements FraudCheckerClient {
         }};
         final URI fraudCheckUri = createFraudCheckUri("/check");
         LOG.info(() -> String.format("Sending /check Request ==> FraudChecker MicroService on %s", fraudCheckUri));
-        FraudStatus fraudStatus = restTemplateWithoutTimeout.postForObject(fraudCheckUri, request, FraudStatus.class);
+        FraudStatus fraudStatus = restTemplate.postForObject(fraudCheckUri, request, FraudStatus.class);
         LOG.info(() -> String.format("Got Response from /check <== FraudChecker MicroService %s", fraudStatus));
         return fraudStatus;
     }
@@ -59,7 +61,7 @@ public class DefaultFraudCheckerClient implements FraudCheckerClient {
     public String ping() {
         final URI fraudCheckerPingUri = createFraudCheckUri("/ping");
         LOG.info(() -> String.format("Sending /ping Request ==> FraudChecker MicroService on %s", fraudCheckerPingUri));
-        final String result = restTemplateWithoutTimeout.getForObject(fraudCheckerPingUri, String.class);
+        final String result = restTemplate.getForObject(fraudCheckerPingUri, String.class);
         LOG.info(() -> String.format("Got Response from /ping <== FraudChecker MicroService %s", result));
         return result;
     }
@@ -0,0 +1,51 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+@Service
+@ConditionalOnExpression("#{'${features.web.pipeline:}' == 'reactive'}")
+public class DefaultReactiveFraudCheckerClient implements ReactiveFraudCheckerClient {
+
+    private static final Logger LOG = Logger.getLogger(DefaultReactiveFraudCheckerClient.class.getName());
+
+    private final WebClient webClient;
+
+    private final URI fraudCheckerServiceUri;
+
+    @Autowired
+    public DefaultReactiveFraudCheckerClient(@Value("${fraud-checker.service.host}") String hostname,
+                                             @Value("${fraud-checker.service.port}") int port,
+                                             WebClient webClient) {
+        fraudCheckerServiceUri = URI.create(String.format("%s:%d/%s", hostname, port, "check"));
+        this.webClient = webClient;
+    }
+
+    public Mono<FraudStatus> checkFraud(CreditCard creditCard, Money chargedAmount) {
+        Map<String, Object> request = new HashMap<>() {{
+            put("creditCard", creditCard);
+            put("charge", chargedAmount);
+        }};
+        return webClient.post()
+                .uri(fraudCheckerServiceUri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(FraudStatus.class)
+                .doOnSubscribe(subscription -> LOG.info(() -> String.format("Sending /check Request ==> FraudChecker MicroService on %s", fraudCheckerServiceUri)))
+                .doOnNext(fraudStatus -> LOG.info(() -> String.format("Got Response from /check <== FraudChecker MicroService %s", fraudStatus)));
+    }
+}
@@ -0,0 +1,168 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Decides which payments are taken without a fraud check while the
+ * FraudChecker can not be reached, so that an outage lets small payments
+ * through, at a risk we have put a number on, instead of failing them all.
+ * <p>
+ * A payment is taken "unverified" only when its amount is below the
+ * maxAmount for its currency, and the amounts taken unverified in that
+ * currency over the last window, this one included, stay within its
+ * maxExposure.  A currency with no maxAmount is never taken unverified,
+ * one with no maxExposure has no cap on the sum.  Anything else gets
+ * {@link FraudStatus#EMPTY}, and fails as it did without a fallback.
+ * <p>
+ * The exposure of each currency is summed, in its minor units, over a
+ * ring of buckets covering the window.  The ring is an immutable object,
+ * swapped by compare-and-set, so that checking the cap and adding to it
+ * is one step: fallbacks racing each other during an outage can neither
+ * overshoot the cap together nor queue on a lock.
+ */
+public class FraudCheckFallbackPolicy {
+
+    public static final String UNVERIFIED = "unverified";
+    private static final Logger LOG = Logger.getLogger(FraudCheckFallbackPolicy.class.getName());
+
+    private final Map<Currency, Money> maxAmounts;
+    private final Map<Currency, Exposure> exposures;
+    private final long bucketNanos;
+    private final LongSupplier nanoTime;
+    private final Counter taken;
+    private final Counter overAmount;
+    private final Counter overExposure;
+
+    public FraudCheckFallbackPolicy(String name, String maxAmounts, String maxExposures, Duration window,
+                                    int bucketsPerWindow, MeterRegistry meterRegistry) {
+        this(name, maxAmounts, maxExposures, window, bucketsPerWindow, meterRegistry, System::nanoTime);
+    }
+
+    FraudCheckFallbackPolicy(String name, String maxAmounts, String maxExposures, Duration window,
+                             int bucketsPerWindow, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        if (window.isNegative() || window.isZero() || bucketsPerWindow < 1)
+            throw new IllegalArgumentException(String.format("window and bucketsPerWindow must be positive, were %s and %d",
+                    window, bucketsPerWindow));
+
+        final var amounts = Money.parseLimits(maxAmounts);
+        final var caps = Money.parseLimits(maxExposures);
+        final var ringed = new HashMap<Currency, Exposure>();
+        amounts.keySet().forEach(currency -> ringed.put(currency, new Exposure(
+                caps.containsKey(currency) ? caps.get(currency).minorUnits() : Long.MAX_VALUE,
+                bucketsPerWindow)));
+        this.maxAmounts = amounts;
+        this.exposures = Map.copyOf(ringed);
+        this.bucketNanos = Math.max(1, window.toNanos() / bucketsPerWindow);
+        this.nanoTime = nanoTime;
+        this.taken = meterRegistry.counter(name + ".decisions", "outcome", "taken");
+        this.overAmount = meterRegistry.counter(name + ".decisions", "outcome", "over_amount");
+        this.overExposure = meterRegistry.counter(name + ".decisions", "outcome", "over_exposure");
+        exposures.keySet().forEach(currency -> Gauge.builder(name + ".exposure", this, policy -> policy.exposure(currency))
+                .tag("currency", currency.getCurrencyCode())
+                .register(meterRegistry));
+    }
+
+    public FraudStatus decide(CreditCard creditCard, Money chargedAmount) {
+        final var maxAmount = maxAmounts.get(chargedAmount.currency);
+        if (maxAmount == null || !chargedAmount.lessThan(maxAmount)) {
+            overAmount.increment();
+            LOG.info(() -> String.format("Not taking %s unverified, it is not below the fallback limit for %s",
+                    chargedAmount, chargedAmount.currency));
+            return FraudStatus.EMPTY;
+        }
+        if (!exposures.get(chargedAmount.currency).tryAdd(chargedAmount.minorUnits(), bucket())) {
+            overExposure.increment();
+            LOG.info(() -> String.format("Not taking %s unverified, it would go over the fallback exposure for %s",
+                    chargedAmount, chargedAmount.currency));
+            return FraudStatus.EMPTY;
+        }
+        taken.increment();
+        LOG.info(() -> String.format("Allowing Small Amount %s to be Charged to Credit Card %s", chargedAmount, creditCard));
+        return new FraudStatus(UNVERIFIED);
+    }
+
+    // @return the sum taken unverified in the currency over the last window,
+    // in its minor units.
+    public long exposure(Currency currency) {
+        final var exposure = exposures.get(currency);
+        return exposure == null ? 0 : exposure.total(bucket());
+    }
+
+    private long bucket() {
+        return Math.floorDiv(nanoTime.getAsLong(), bucketNanos);
+    }
+
+    private static class Exposure {
+        final long cap;
+        final AtomicReference<Ring> ring;
+
+        Exposure(long cap, int buckets) {
+            this.cap = cap;
+            this.ring = new AtomicReference<>(new Ring(new long[buckets], Long.MIN_VALUE, 0));
+        }
+
+        boolean tryAdd(long amount, long bucket) {
+            while (true) {
+                final var current = ring.get();
+                final var advanced = current.advancedTo(bucket);
+                if (advanced.total + amount > cap)
+                    return false;
+                if (ring.compareAndSet(current, advanced.plus(amount)))
+                    return true;
+            }
+        }
+
+        long total(long bucket) {
+            return ring.get().advancedTo(bucket).total;
+        }
+    }
+
+    // The sums of the last buckets.length buckets, up to and including
+    // latest, each at latest modulo its length.
+    private static class Ring {
+        final long[] sums;
+        final long latest;
+        final long total;
+
+        Ring(long[] sums, long latest, long total) {
+            this.sums = sums;
+            this.latest = latest;
+            this.total = total;
+        }
+
+        Ring advancedTo(long bucket) {
+            if (bucket <= latest)
+                return this;
+            final var length = sums.length;
+            if (latest == Long.MIN_VALUE || bucket - latest >= length)
+                return new Ring(new long[length], bucket, 0);
+            final var advanced = sums.clone();
+            var total = this.total;
+            for (long b = latest + 1; b <= bucket; b++) {
+                final var slot = (int) Math.floorMod(b, (long) length);
+                total -= advanced[slot];
+                advanced[slot] = 0;
+            }
+            return new Ring(advanced, bucket, total);
+        }
+
+        Ring plus(long amount) {
+            final var added = sums.clone();
+            added[(int) Math.floorMod(latest, (long) sums.length)] += amount;
+            return new Ring(added, latest, total + amount);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.tsys.payments.service.remote;
+
+/**
+ * Wraps a FraudCheckerClient in another that adds to what it does, e.g.
+ * caching verdicts, without the wrapped one knowing.
+ * <p>
+ * Decorators are beans, each behind its own feature flag, and are applied
+ * in their @Order around the remote FraudCheckerClient: the lowest order
+ * wraps it directly and is the last to see a fraud check.
+ */
+@FunctionalInterface
+public interface FraudCheckerClientDecorator {
+    FraudCheckerClient decorate(FraudCheckerClient fraudCheckerClient);
+}
@@ -3,15 +3,18 @@ package com.tsys.payments.service.remote;
 import com.tsys.payments.domain.CreditCard;
 import com.tsys.payments.domain.FraudStatus;
 import com.tsys.payments.domain.Money;
+import com.tsys.payments.utils.Deadline;
+import com.tsys.payments.utils.DeadlineExceededException;
+import com.tsys.payments.utils.SlidingWindowCircuitBreaker;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
-import org.springframework.retry.annotation.CircuitBreaker;
-import org.springframework.retry.annotation.Recover;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
-import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
@@ -21,18 +24,27 @@ import java.util.logging.Logger;
  * Circuit Breaker builds on top of Retry Pattern and Timeout Pattern.
  */
 @Service
+@Qualifier("remote")
 //@Qualifier("fraud_checker_cb")
 @ConditionalOnExpression("#{'${features.resiliency.latency_control.strategy}' == 'circuit_breaker'}")
 public class FraudCheckerClientWithCircuitBreakerPattern implements FraudCheckerClient {
 
     private static final Logger LOG = Logger.getLogger(FraudCheckerClientWithCircuitBreakerPattern.class.getName());
     private final URI fraudCheckerServiceUri;
-    @Autowired
-    private RestTemplate restTemplate;
+    private final RestTemplate restTemplate;
+    private final SlidingWindowCircuitBreaker circuitBreaker;
+    private final FraudCheckFallbackPolicy fallbackPolicy;
 
+    @Autowired
     public FraudCheckerClientWithCircuitBreakerPattern(@Value("${fraud-checker.service.host}") String hostname,
-                                                       @Value("${fraud-checker.service.port}") int port) {
+                                                       @Value("${fraud-checker.service.port}") int port,
+                                                       RestTemplate restTemplate,
+                                                       SlidingWindowCircuitBreaker fraudCheckerCircuitBreaker,
+                                                       FraudCheckFallbackPolicy fraudCheckFallbackPolicy) {
         fraudCheckerServiceUri = URI.create(String.format("%s:%d/%s", hostname, port, "check"));
+        this.restTemplate = restTemplate;
+        this.circuitBreaker = fraudCheckerCircuitBreaker;
+        this.fallbackPolicy = fraudCheckFallbackPolicy;
     }
 
     //  Using Circuit Breaker with Spring Retry
@@ -59,17 +71,65 @@ public class FraudCheckerClientWithCircuitBreakerPattern implements FraudChecker
     // This is very useful when calling 3rd party services esp. when it fails
     // to service requests. The time of resetTimeout is the time that
     // the system has for recovery (from too many request, IO lock etc...).
-    @CircuitBreaker(include = {SocketTimeoutException.class},
-            maxAttempts = 2,
-            openTimeout = 15000, // millis
-            resetTimeout = 30000) // millis
+    //
+    //  Why not @CircuitBreaker anymore?
+    //  ================================
+    //  The annotation takes constants, so the latency_control.circuit_breaker
+    //  properties could not reach it, and it only tripped on the exceptions
+    //  it was told to include, which RestTemplate never throws as such (it
+    //  wraps them in ResourceAccessException).  It also counts failures in a
+    //  row, not the share of calls failing, and knows nothing of slow calls.
+    //
+    //  So the breaker is now a SlidingWindowCircuitBreaker, called in code:
+    //  1. maxAttempts  - calls needed in the window before it can open.
+    //  2. openTimeout  - the sliding window the share of failed and slow
+    //                    calls is taken over.
+    //  3. resetTimeout - time the circuit stays open, before probing
+    //                    the FraudChecker with a few calls again.
+    //  While open, a fraud check goes straight to the fallback, without
+    //  the cost of a proxy, an exception or a network call.
+    //
+    //  A call cut short by the request deadline, rather than failed by the
+    //  FraudChecker, is not held against it, and the payment is given up.
     public FraudStatus checkFraud(CreditCard creditCard, Money chargedAmount) {
+        Deadline.checkCurrent("fraud check");
+        final var call = circuitBreaker.tryCall();
+        if (call.isEmpty()) {
+            LOG.info(() -> "Circuit OPEN ==> FraudChecker MicroService not called");
+            return checkFraudFallback(creditCard, chargedAmount);
+        }
+
         Map<String, Object> request = new HashMap<>() {{
             put("creditCard", creditCard);
             put("charge", chargedAmount);
         }};
         LOG.info(() -> String.format("Sending Request ==> FraudChecker MicroService on %s", fraudCheckerServiceUri));
-        FraudStatus fraudStatus = restTemplate.postForObject(fraudCheckerServiceUri, request, FraudStatus.class);
+        final var admitted = call.get();
+        // Reported once, in finally, whichever way the call ends, and as
+        // failed unless found otherwise, e.g. for an Error or an exception
+        // not from the RestTemplate, so that a half-open probe is never lost.
+        Runnable outcome = admitted::failed;
+        final FraudStatus fraudStatus;
+        try {
+            fraudStatus = restTemplate.postForObject(fraudCheckerServiceUri, request, FraudStatus.class);
+            outcome = admitted::succeeded;
+        } catch (HttpClientErrorException e) {
+            // The FraudChecker is well, it is the request that is not.
+            outcome = admitted::succeeded;
+            throw e;
+        } catch (DeadlineExceededException e) {
+            outcome = admitted::ignored;
+            throw e;
+        } catch (RestClientException e) {
+            if (Deadline.current().filter(Deadline::hasExpired).isPresent()) {
+                outcome = admitted::ignored;
+                throw new DeadlineExceededException("fraud check", e);
+            }
+            LOG.info(() -> String.format("FAILED Request to FraudChecker MicroService %s", e));
+            return checkFraudFallback(creditCard, chargedAmount);
+        } finally {
+            outcome.run();
+        }
         LOG.info(() -> String.format("Got Response <== FraudChecker MicroService %s", fraudStatus));
         return fraudStatus;
     }
@@ -110,6 +170,9 @@ public class FraudCheckerClientWithCircuitBreakerPattern implements FraudChecker
     //  A good compromise might be to fallback to a simple business rule,
     //  e.g. simply letting transactions with a reasonably small amount
     //  through to have a good balance between risk and not losing customers.
+    //  The FraudCheckFallbackPolicy does that, with a limit per currency and
+    //  a cap on the sum let through unverified over a window, and the
+    //  payments it lets through are saved as "accepted_unverified".
     //
     //  The question then is - How to pass original request arguments to the
     //  recovery method?
@@ -121,21 +184,11 @@ public class FraudCheckerClientWithCircuitBreakerPattern implements FraudChecker
     //  method.
     //
     @Override
-    @Recover
     public FraudStatus checkFraudFallback(CreditCard creditCard, Money chargedAmount) {
         LOG.info(() -> "FAILED Response <== FraudChecker MicroService");
-        var fraudStatus = allowChargingForSmallAmounts(creditCard, chargedAmount);
+        var fraudStatus = fallbackPolicy.decide(creditCard, chargedAmount);
 
         LOG.info(() -> String.format("RECOVERY from FAILED response with %s", fraudStatus));
         return fraudStatus;
     }
-
-    private FraudStatus allowChargingForSmallAmounts(CreditCard creditCard, Money chargedAmount) {
-        Money allowableAmount = new Money(chargedAmount.currency, 1000d);
-        if (chargedAmount.lessThan(allowableAmount)) {
-            LOG.info(() -> String.format("Allowing Small Amount %s to be Charged to Credit Card %s", chargedAmount, creditCard));
-            return new FraudStatus("unverified");
-        }
-        return FraudStatus.EMPTY;
-    }
 }
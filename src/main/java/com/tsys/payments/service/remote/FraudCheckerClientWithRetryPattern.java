@@ -3,25 +3,30 @@ package com.tsys.payments.service.remote;
 import com.tsys.payments.domain.CreditCard;
 import com.tsys.payments.domain.FraudStatus;
 import com.tsys.payments.domain.Money;
+import com.tsys.payments.utils.Deadline;
+import com.tsys.payments.utils.RetryBudget;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Recover;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.net.http.HttpTimeoutException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
 
 /**
  * Retry Pattern builds on top of Timeout Pattern.
  */
 @Service
+@Qualifier("remote")
 //@Qualifier("fraud_checker_retry")
 @ConditionalOnExpression("#{'${features.resiliency.latency_control.strategy}' == 'retry'}")
 
@@ -31,12 +36,29 @@ public class FraudCheckerClientWithRetryPattern implements FraudCheckerClient {
 
     private static final Logger LOG = Logger.getLogger(FraudCheckerClientWithRetryPattern.class.getName());
     private final URI fraudCheckerServiceUri;
-    @Autowired
-    private RestTemplate restTemplate;
+    private final RestTemplate restTemplate;
+    private final RetryBudget retryBudget;
+    private final FraudCheckFallbackPolicy fallbackPolicy;
+    private final int maxAttempts;
+    private final long backOffDelay;
+    private final long backOffMaxDelay;
 
+    @Autowired
     public FraudCheckerClientWithRetryPattern(@Value("${fraud-checker.service.host}") String hostname,
-                                              @Value("${fraud-checker.service.port}") int port) {
+                                              @Value("${fraud-checker.service.port}") int port,
+                                              RestTemplate restTemplate,
+                                              RetryBudget fraudCheckerRetryBudget,
+                                              FraudCheckFallbackPolicy fraudCheckFallbackPolicy,
+                                              @Value("${latency_control.retry.maxAttempts}") int maxAttempts,
+                                              @Value("${latency_control.retry.backoff.delay}") long backOffDelay,
+                                              @Value("${latency_control.retry.backoff.maxDelay}") long backOffMaxDelay) {
         fraudCheckerServiceUri = URI.create(String.format("%s:%d/%s", hostname, port, "check"));
+        this.restTemplate = restTemplate;
+        this.retryBudget = fraudCheckerRetryBudget;
+        this.fallbackPolicy = fraudCheckFallbackPolicy;
+        this.maxAttempts = maxAttempts;
+        this.backOffDelay = backOffDelay;
+        this.backOffMaxDelay = Math.max(backOffDelay, backOffMaxDelay);
     }
 
     // SIMPLE RETRYABLE
@@ -111,16 +133,6 @@ public class FraudCheckerClientWithRetryPattern implements FraudCheckerClient {
 //            backoff = @Backoff(random = true, delay = 100, maxDelay = 500)
 //    )
 
-    // Alternatively, these values can come from application.properties file
-    // and one can tune these.
-    @Retryable(
-            include = {SocketTimeoutException.class},
-            maxAttemptsExpression = "#{${latency_control.retry.maxAttempts}}",
-            backoff = @Backoff(random = true,
-                    delayExpression = "#{${latency_control.retry.backoff.delay}}",
-                    maxDelayExpression = "#{${latency_control.retry.backoff.maxDelay}}")
-    )
-
     // Using the above policy, you can maximise the number of concurrent
     // transactions that could hit a database at the same time.
     // You can get DB deadlock issues due to the nature of the
@@ -129,12 +141,48 @@ public class FraudCheckerClientWithRetryPattern implements FraudCheckerClient {
     // for problematic transaction. In particular, the uniform random
     // backoff policy allows to have a random wait interval between
     // a set range to reduce DB collisions.
-    /**
-     *  NOTE: Comment out the below @Recover fallback method when you just
-     *  want to play with @Retryable without recovery.
-     *  @see FraudCheckerClientWithRetryPattern#checkFraudFallback(CreditCard, Money)
-     */
+
+    //  Why not @Retryable anymore?
+    //  ===========================
+    //  Each call is retried up to maxAttempts whatever else is going on,
+    //  so when the FraudChecker browns out and calls start timing out,
+    //  it is sent up to maxAttempts times the calls, just when it can
+    //  least take them.  The annotation has no say over that, and its
+    //  backoff knows nothing of the request deadline.  It also never
+    //  retried at all, as RestTemplate wraps a SocketTimeoutException
+    //  in a ResourceAccessException, which it was not told to include.
+    //
+    //  So the retries are now made in code, with the same properties:
+    //  1. maxAttempts      - attempts at most, the first one included.
+    //  2. backoff.delay    - least time to wait before a retry.
+    //  3. backoff.maxDelay - most time to wait, picked uniformly at
+    //                        random in between.
+    //  But a retry is only made when the RetryBudget, shared by all
+    //  fraud checks, has a token for it, i.e. retries are kept to a share
+    //  of the fraud checks that succeed.  Nor is it made when waiting out
+    //  the backoff would leave nothing of the request deadline.  Either
+    //  way, the fraud check falls back as it would with all attempts
+    //  failed, and the budget being spent shows in
+    //  payments.fraud_checker.retry_budget.exhausted.
+    //
+    // Each attempt gets no more than what is left of the request deadline,
+    // as its read timeout, and none is made once it has passed.
     public FraudStatus checkFraud(CreditCard creditCard, Money chargedAmount) {
+        for (int attempt = 1; ; attempt++) {
+            Deadline.checkCurrent("fraud check");
+            try {
+                final var fraudStatus = callFraudChecker(creditCard, chargedAmount);
+                retryBudget.succeeded();
+                return fraudStatus;
+            } catch (RestClientException e) {
+                LOG.info(() -> String.format("FAILED Request to FraudChecker MicroService %s", e));
+                if (!isTimeout(e) || attempt >= maxAttempts || !backOff())
+                    return checkFraudFallback(creditCard, chargedAmount);
+            }
+        }
+    }
+
+    private FraudStatus callFraudChecker(CreditCard creditCard, Money chargedAmount) {
         Map<String, Object> request = new HashMap<>() {{
             put("creditCard", creditCard);
             put("charge", chargedAmount);
@@ -145,6 +193,35 @@ public class FraudCheckerClientWithRetryPattern implements FraudCheckerClient {
         return fraudStatus;
     }
 
+    private static boolean isTimeout(RestClientException e) {
+        return e instanceof ResourceAccessException
+                && (e.getCause() instanceof SocketTimeoutException || e.getCause() instanceof HttpTimeoutException);
+    }
+
+    // @return whether to retry, having waited a uniformly random backoff.
+    private boolean backOff() {
+        final var delay = backOffDelay == backOffMaxDelay ? backOffDelay
+                : ThreadLocalRandom.current().nextLong(backOffDelay, backOffMaxDelay + 1);
+        final var outOfTime = Deadline.current()
+                .filter(deadline -> deadline.remaining().toMillis() <= delay)
+                .isPresent();
+        if (outOfTime) {
+            LOG.info(() -> String.format("Not retrying fraud check, backoff of %d ms would leave nothing of the request deadline", delay));
+            return false;
+        }
+        if (!retryBudget.tryRetry()) {
+            LOG.info(() -> "Not retrying fraud check, retry budget spent");
+            return false;
+        }
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     //  FALLBACK
     //  ========
     //  We send the request to the FraudChecker service and it may be
@@ -181,6 +258,9 @@ public class FraudCheckerClientWithRetryPattern implements FraudCheckerClient {
     //  A good compromise might be to fallback to a simple business rule,
     //  e.g. simply letting transactions with a reasonably small amount
     //  through to have a good balance between risk and not losing customers.
+    //  The FraudCheckFallbackPolicy does that, with a limit per currency and
+    //  a cap on the sum let through unverified over a window, and the
+    //  payments it lets through are saved as "accepted_unverified".
     //
     //  The question then is - How to pass original request arguments to the
     //  recovery method?
@@ -191,21 +271,14 @@ public class FraudCheckerClientWithRetryPattern implements FraudCheckerClient {
     //  the first parameter, instead using the same arguments as in checkFraud()
     //  method.
     //
-    @Recover
+    @Override
     public FraudStatus checkFraudFallback(CreditCard creditCard, Money chargedAmount) {
+        // Past the deadline, the payment is given up rather than let through.
+        Deadline.checkCurrent("fraud check fallback");
         LOG.info(() -> "FAILED Response <== FraudChecker MicroService");
-        FraudStatus fraudStatus = allowChargingForSmallAmounts(creditCard, chargedAmount);
+        FraudStatus fraudStatus = fallbackPolicy.decide(creditCard, chargedAmount);
 
         LOG.info(() -> String.format("RECOVERY from FAILED response with %s", fraudStatus));
         return fraudStatus;
     }
-
-    private FraudStatus allowChargingForSmallAmounts(CreditCard creditCard, Money chargedAmount) {
-        Money allowableAmount = new Money(chargedAmount.currency, 1000d);
-        if (chargedAmount.lessThan(allowableAmount)) {
-            LOG.info(() -> String.format("Allowing Small Amount %s to be Charged to Credit Card %s", chargedAmount, creditCard));
-            return new FraudStatus("unverified");
-        }
-        return FraudStatus.EMPTY;
-    }
 }
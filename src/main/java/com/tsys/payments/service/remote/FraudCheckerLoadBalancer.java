@@ -0,0 +1,246 @@
+package com.tsys.payments.service.remote;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Spreads the calls to the FraudChecker over several instances of it,
+ * without a load balancer in between.
+ * <p>
+ * The FraudCheckerClients still call fraud-checker.service.host and port,
+ * which now names the FraudChecker as a whole.  As an interceptor on the
+ * RestTemplate, this rewrites each such call to one of the endpoints,
+ * chosen either as the one with the fewest calls outstanding, or as the
+ * one with fewer of two picked at random (power of two choices), which
+ * is nearly as good without looking at every endpoint.
+ * <p>
+ * An endpoint is taken out of rotation for ejectionTime, passively, once
+ * maxFailures calls in a row fail (I/O error or 5xx), or once its average
+ * answer takes longer than slowCallDuration.  It is also taken out,
+ * actively, while {@link DefaultFraudCheckerClient#ping} to it fails, and
+ * put back once a ping succeeds.  Should that leave no endpoint, calls
+ * are spread over all of them rather than refused.
+ */
+public class FraudCheckerLoadBalancer implements ClientHttpRequestInterceptor, AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(FraudCheckerLoadBalancer.class.getName());
+
+    private final URI serviceUri;
+    private final Endpoint[] endpoints;
+    private final boolean powerOfTwoChoices;
+    private final int maxFailures;
+    private final long slowCallNanos;
+    private final long ejectionNanos;
+    private final LongSupplier nanoTime;
+    private ScheduledExecutorService pingScheduler;
+
+    public FraudCheckerLoadBalancer(URI serviceUri, List<URI> endpoints, Function<URI, Supplier<String>> pings,
+                                    boolean powerOfTwoChoices, int maxFailures, Duration slowCallDuration,
+                                    Duration ejectionTime, MeterRegistry meterRegistry) {
+        this(serviceUri, endpoints, pings, powerOfTwoChoices, maxFailures, slowCallDuration, ejectionTime,
+                meterRegistry, System::nanoTime);
+    }
+
+    FraudCheckerLoadBalancer(URI serviceUri, List<URI> endpoints, Function<URI, Supplier<String>> pings,
+                             boolean powerOfTwoChoices, int maxFailures, Duration slowCallDuration,
+                             Duration ejectionTime, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        if (endpoints.isEmpty())
+            throw new IllegalArgumentException("Need at least one FraudChecker endpoint");
+
+        this.serviceUri = serviceUri;
+        this.endpoints = endpoints.stream()
+                .map(uri -> new Endpoint(uri, pings.apply(uri), meterRegistry))
+                .toArray(Endpoint[]::new);
+        this.powerOfTwoChoices = powerOfTwoChoices;
+        this.maxFailures = maxFailures;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.ejectionNanos = ejectionTime.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    // Pings every endpoint every pingInterval, on the given scheduler.
+    public void startPinging(ScheduledExecutorService pingScheduler, Duration pingInterval) {
+        this.pingScheduler = pingScheduler;
+        pingScheduler.scheduleWithFixedDelay(this::pingAll, 0, pingInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (pingScheduler != null)
+            pingScheduler.shutdownNow();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        final var uri = request.getURI();
+        if (!isServiceUri(uri))
+            return execution.execute(request, body);
+
+        final var endpoint = choose();
+        final var endpointUri = UriComponentsBuilder.fromUri(uri)
+                .scheme(endpoint.uri.getScheme())
+                .host(endpoint.uri.getHost())
+                .port(endpoint.uri.getPort())
+                .build(true)
+                .toUri();
+        endpoint.outstanding.incrementAndGet();
+        endpoint.requests.increment();
+        final var startedAt = nanoTime.getAsLong();
+        var failed = true;
+        try {
+            final var response = execution.execute(new HttpRequestWrapper(request) {
+                @Override
+                public URI getURI() {
+                    return endpointUri;
+                }
+            }, body);
+            failed = response.getStatusCode().is5xxServerError();
+            return response;
+        } finally {
+            endpoint.outstanding.decrementAndGet();
+            completed(endpoint, nanoTime.getAsLong() - startedAt, failed);
+        }
+    }
+
+    void pingAll() {
+        for (final var endpoint : endpoints) {
+            boolean healthy;
+            try {
+                healthy = endpoint.ping.get() != null;
+            } catch (RuntimeException e) {
+                healthy = false;
+            }
+            if (healthy != endpoint.healthy) {
+                endpoint.healthy = healthy;
+                final var state = healthy ? "back in" : "out of";
+                LOG.info(() -> String.format("FraudChecker on %s is %s rotation after /ping", endpoint.uri, state));
+            }
+        }
+    }
+
+    Endpoint choose() {
+        final var now = nanoTime.getAsLong();
+        final var available = new ArrayList<Endpoint>(endpoints.length);
+        for (final var endpoint : endpoints)
+            if (endpoint.isAvailable(now))
+                available.add(endpoint);
+        final var candidates = available.isEmpty() ? List.of(endpoints) : available;
+        final var random = ThreadLocalRandom.current();
+        if (candidates.size() == 1)
+            return candidates.get(0);
+
+        if (powerOfTwoChoices) {
+            final var first = random.nextInt(candidates.size());
+            final var second = (first + 1 + random.nextInt(candidates.size() - 1)) % candidates.size();
+            return lessLoaded(candidates.get(first), candidates.get(second));
+        }
+
+        // Least outstanding, starting at a random endpoint so that ties
+        // do not all go to the first.
+        final var start = random.nextInt(candidates.size());
+        var least = candidates.get(start);
+        for (int i = 1; i < candidates.size(); i++)
+            least = lessLoaded(least, candidates.get((start + i) % candidates.size()));
+        return least;
+    }
+
+    // On a tie, the one picked first, at random, so that light load is
+    // spread too.
+    private static Endpoint lessLoaded(Endpoint one, Endpoint other) {
+        return other.outstanding.get() < one.outstanding.get() ? other : one;
+    }
+
+    private void completed(Endpoint endpoint, long durationNanos, boolean failed) {
+        final var average = endpoint.averageNanos.updateAndGet(current -> current == 0
+                ? durationNanos
+                : current + (durationNanos - current) / 10);
+        final var failures = failed ? endpoint.consecutiveFailures.incrementAndGet() : 0;
+        if (!failed)
+            endpoint.consecutiveFailures.set(0);
+
+        if (failures >= maxFailures || average > slowCallNanos)
+            eject(endpoint, failures >= maxFailures ? "failing" : "slow");
+    }
+
+    private void eject(Endpoint endpoint, String reason) {
+        final var now = nanoTime.getAsLong();
+        final var ejectedUntil = endpoint.ejectedUntil.get();
+        if (endpoint.isEjected(now, ejectedUntil) || !endpoint.ejectedUntil.compareAndSet(ejectedUntil, now + ejectionNanos))
+            return;
+        // Starts afresh once back, rather than ejected again straight away.
+        endpoint.consecutiveFailures.set(0);
+        endpoint.averageNanos.set(0);
+        endpoint.ejections.increment();
+        LOG.info(() -> String.format("Ejected %s FraudChecker on %s for %d ms", reason, endpoint.uri,
+                TimeUnit.NANOSECONDS.toMillis(ejectionNanos)));
+    }
+
+    private boolean isServiceUri(URI uri) {
+        return Objects.equals(uri.getScheme(), serviceUri.getScheme())
+                && Objects.equals(uri.getHost(), serviceUri.getHost())
+                && uri.getPort() == serviceUri.getPort();
+    }
+
+    class Endpoint {
+        final URI uri;
+        final Supplier<String> ping;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        final AtomicLong averageNanos = new AtomicLong();
+        // Ejected while nanoTime is before this, never ejected while 0.
+        final AtomicLong ejectedUntil = new AtomicLong();
+        final Counter requests;
+        final Counter ejections;
+        volatile boolean healthy = true;
+
+        Endpoint(URI uri, Supplier<String> ping, MeterRegistry meterRegistry) {
+            this.uri = uri;
+            this.ping = ping;
+            final var tag = uri.toString();
+            this.requests = meterRegistry.counter("payments.fraud_checker.endpoints.requests", "endpoint", tag);
+            this.ejections = meterRegistry.counter("payments.fraud_checker.endpoints.ejections", "endpoint", tag);
+            Gauge.builder("payments.fraud_checker.endpoints.outstanding", outstanding, AtomicInteger::get)
+                    .tag("endpoint", tag)
+                    .register(meterRegistry);
+            Gauge.builder("payments.fraud_checker.endpoints.available", this, endpoint -> endpoint.isAvailable(nanoTime.getAsLong()) ? 1 : 0)
+                    .tag("endpoint", tag)
+                    .register(meterRegistry);
+        }
+
+        boolean isAvailable(long now) {
+            return healthy && !isEjected(now, ejectedUntil.get());
+        }
+
+        boolean isEjected(long now, long until) {
+            return until != 0 && now - until < 0;
+        }
+
+        @Override
+        public String toString() {
+            return uri.toString();
+        }
+    }
+}
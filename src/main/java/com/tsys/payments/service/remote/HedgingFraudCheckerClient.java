@@ -0,0 +1,191 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.utils.Deadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * Sends a second, identical fraud check when the first one is slower than
+ * most, and takes whichever answer comes back first.  A fraud check only
+ * reads, so asking twice is harmless.
+ * <p>
+ * The hedge is sent once the first check has taken longer than the given
+ * percentile of the latencies of the last window fraud checks, but never
+ * sooner than minDelay.  Until window fraud checks have been answered, no
+ * hedges are sent.
+ * <p>
+ * Hedges are paid for out of a budget that grows by budget for every
+ * fraud check, e.g. 0.05 lets at most 1 in 20 checks be hedged, so that a
+ * FraudChecker that slows down for everyone does not get twice the load.
+ * Once the budget is spent, checks wait for their first answer.
+ */
+public class HedgingFraudCheckerClient implements FraudCheckerClient {
+
+    private static final Logger LOG = Logger.getLogger(HedgingFraudCheckerClient.class.getName());
+    // Budget is kept in thousandths of a hedge, and never saved up for
+    // more than this many hedges at once.
+    private static final long ONE_HEDGE = 1000;
+    private static final long MAX_SAVED_HEDGES = 10;
+
+    private final FraudCheckerClient fraudCheckerClient;
+    private final Executor executor;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long budgetPerCheck;
+    private final AtomicLongArray latencies;
+    private final AtomicLong latencyCount = new AtomicLong();
+    private final AtomicLong budget = new AtomicLong();
+    private volatile long hedgeDelayNanos;
+    private final Counter checks;
+    private final Counter hedges;
+    private final Counter wins;
+    private final Counter budgetExhausted;
+
+    public HedgingFraudCheckerClient(FraudCheckerClient fraudCheckerClient, Executor executor, double percentile,
+                                     long minDelay, int window, double budget, MeterRegistry meterRegistry) {
+        if (percentile <= 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be in (0, 100], was " + percentile);
+        if (window <= 0)
+            throw new IllegalArgumentException("window must be positive, was " + window);
+
+        this.fraudCheckerClient = fraudCheckerClient;
+        this.executor = executor;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelay);
+        this.budgetPerCheck = Math.round(budget * ONE_HEDGE);
+        this.latencies = new AtomicLongArray(window);
+        this.checks = meterRegistry.counter("payments.fraud_checker.hedging.checks");
+        this.hedges = meterRegistry.counter("payments.fraud_checker.hedging.hedges");
+        this.wins = meterRegistry.counter("payments.fraud_checker.hedging.wins");
+        this.budgetExhausted = meterRegistry.counter("payments.fraud_checker.hedging.budget_exhausted");
+        Gauge.builder("payments.fraud_checker.hedging.hedge_rate", this, client -> ratio(client.hedges, client.checks))
+                .register(meterRegistry);
+        Gauge.builder("payments.fraud_checker.hedging.win_rate", this, client -> ratio(client.wins, client.hedges))
+                .register(meterRegistry);
+        Gauge.builder("payments.fraud_checker.hedging.delay", this, client -> client.hedgeDelayNanos)
+                .baseUnit("nanoseconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public FraudStatus checkFraud(CreditCard creditCard, Money chargedAmount) {
+        checks.increment();
+        budget.updateAndGet(saved -> Math.min(MAX_SAVED_HEDGES * ONE_HEDGE, saved + budgetPerCheck));
+        final var first = call(creditCard, chargedAmount);
+        final var hedgeDelay = hedgeDelayNanos;
+        if (hedgeDelay == 0 || isDoneWithin(first, hedgeDelay))
+            return await(first);
+
+        if (!spendBudget()) {
+            budgetExhausted.increment();
+            return await(first);
+        }
+
+        hedges.increment();
+        LOG.info(() -> String.format("Hedging fraud check for charge of %s after %d ms", chargedAmount, TimeUnit.NANOSECONDS.toMillis(hedgeDelay)));
+        final var hedge = call(creditCard, chargedAmount);
+        final var winner = await(firstAnswerOf(first, hedge));
+        if (winner == hedge)
+            wins.increment();
+        return await(winner);
+    }
+
+    @Override
+    public FraudStatus checkFraudFallback(CreditCard creditCard, Money chargedAmount) {
+        return fraudCheckerClient.checkFraudFallback(creditCard, chargedAmount);
+    }
+
+    private CompletableFuture<FraudStatus> call(CreditCard creditCard, Money chargedAmount) {
+        // On the executor, under the deadline of the request, if any.
+        return CompletableFuture.supplyAsync(Deadline.carried(() -> {
+            final var startedAt = System.nanoTime();
+            final var fraudStatus = fraudCheckerClient.checkFraud(creditCard, chargedAmount);
+            recordLatency(System.nanoTime() - startedAt);
+            return fraudStatus;
+        }), executor);
+    }
+
+    // The first call to be answered, or if both fail, the last to fail.
+    private CompletableFuture<CompletableFuture<FraudStatus>> firstAnswerOf(CompletableFuture<FraudStatus> first,
+                                                                            CompletableFuture<FraudStatus> hedge) {
+        final var winner = new CompletableFuture<CompletableFuture<FraudStatus>>();
+        for (var call : Arrays.asList(first, hedge))
+            call.whenComplete((fraudStatus, e) -> {
+                if (e == null || (first.isCompletedExceptionally() && hedge.isCompletedExceptionally()))
+                    winner.complete(call);
+            });
+        return winner;
+    }
+
+    private boolean spendBudget() {
+        while (true) {
+            final var saved = budget.get();
+            if (saved < ONE_HEDGE)
+                return false;
+            if (budget.compareAndSet(saved, saved - ONE_HEDGE))
+                return true;
+        }
+    }
+
+    private void recordLatency(long latencyNanos) {
+        final var count = latencyCount.getAndIncrement();
+        final var window = latencies.length();
+        latencies.set((int) (count % window), latencyNanos);
+        // Sorting the window on every call would cost more than it is
+        // worth, the percentile is worked out again every tenth of it.
+        if (count + 1 >= window && (count + 1) % Math.max(1, window / 10) == 0)
+            hedgeDelayNanos = Math.max(minDelayNanos, latencyPercentile());
+    }
+
+    private long latencyPercentile() {
+        final var sorted = new long[latencies.length()];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = latencies.get(i);
+        Arrays.sort(sorted);
+        final var index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static boolean isDoneWithin(CompletableFuture<FraudStatus> call, long nanos) {
+        try {
+            call.get(nanos, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static double ratio(Counter part, Counter whole) {
+        return whole.count() == 0 ? 0 : part.count() / whole.count();
+    }
+}
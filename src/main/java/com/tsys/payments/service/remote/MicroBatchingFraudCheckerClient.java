@@ -0,0 +1,180 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Sends the fraud checks that arrive close together to the FraudChecker
+ * as one /check/batch request, instead of a /check request each.
+ * <p>
+ * The first fraud check opens a batch and waits for at most window for
+ * others to join it, or until maxBatchSize have, whichever is sooner.  It
+ * then sends the batch, on its own thread, and hands each waiting check
+ * its FraudStatus.  /check/batch takes the payloads of /check in an array
+ * and answers with their FraudStatuses in the same order.
+ * <p>
+ * If the batch request fails, each check in it is made again on its own
+ * through the remote FraudCheckerClient, on the thread waiting for it, so
+ * that it goes through the retries, circuit breaker and fallback set up
+ * there, as it would have without batching.
+ * <p>
+ * A lone fraud check is held back by up to window, so keep it to a few
+ * millis, well under the FraudChecker's own latency.
+ */
+public class MicroBatchingFraudCheckerClient implements FraudCheckerClient {
+
+    private static final Logger LOG = Logger.getLogger(MicroBatchingFraudCheckerClient.class.getName());
+
+    private final FraudCheckerClient fraudCheckerClient;
+    private final RestTemplate restTemplate;
+    private final URI fraudCheckerBatchUri;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Counter batches;
+    private final DistributionSummary batchSizes;
+    private Batch openBatch;
+
+    public MicroBatchingFraudCheckerClient(FraudCheckerClient fraudCheckerClient, RestTemplate restTemplate,
+                                           URI fraudCheckerBatchUri, int maxBatchSize, Duration window,
+                                           MeterRegistry meterRegistry) {
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("maxBatchSize must be positive, was " + maxBatchSize);
+
+        this.fraudCheckerClient = fraudCheckerClient;
+        this.restTemplate = restTemplate;
+        this.fraudCheckerBatchUri = fraudCheckerBatchUri;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = window.toNanos();
+        this.batches = meterRegistry.counter("payments.fraud_checker.batch.requests");
+        this.batchSizes = DistributionSummary.builder("payments.fraud_checker.batch.size")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public FraudStatus checkFraud(CreditCard creditCard, Money chargedAmount) {
+        final var check = new Check(creditCard, chargedAmount);
+        final Batch batch;
+        final boolean opened;
+        lock.lock();
+        try {
+            opened = openBatch == null;
+            if (opened)
+                openBatch = new Batch();
+            batch = openBatch;
+            batch.checks.add(check);
+            if (batch.checks.size() >= maxBatchSize) {
+                openBatch = null;
+                batch.full.countDown();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (opened)
+            send(awaitFullOrWindowOver(batch));
+        return awaitResponse(check);
+    }
+
+    @Override
+    public FraudStatus checkFraudFallback(CreditCard creditCard, Money chargedAmount) {
+        return fraudCheckerClient.checkFraudFallback(creditCard, chargedAmount);
+    }
+
+    private Batch awaitFullOrWindowOver(Batch batch) {
+        try {
+            batch.full.await(windowNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (openBatch == batch)
+                openBatch = null;
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void send(Batch batch) {
+        final var checks = batch.checks;
+        batches.increment();
+        batchSizes.record(checks.size());
+        try {
+            final var request = new ArrayList<Map<String, Object>>(checks.size());
+            for (var check : checks)
+                request.add(check.payload());
+            LOG.info(() -> String.format("Sending batch of %d Requests ==> FraudChecker MicroService on %s", checks.size(), fraudCheckerBatchUri));
+            final var fraudStatuses = restTemplate.postForObject(fraudCheckerBatchUri, request, FraudStatus[].class);
+            if (fraudStatuses == null || fraudStatuses.length != checks.size())
+                throw new IllegalStateException(String.format("FraudChecker answered a batch of %d with %d statuses",
+                        checks.size(), fraudStatuses == null ? 0 : fraudStatuses.length));
+
+            for (int i = 0; i < checks.size(); i++)
+                checks.get(i).response.complete(fraudStatuses[i]);
+        } catch (Throwable e) {
+            // Every check must be completed, or its thread waits forever.
+            LOG.info(() -> String.format("FAILED batch of %d Requests <== FraudChecker MicroService %s", checks.size(), e));
+            checks.forEach(check -> check.response.completeExceptionally(e));
+            if (e instanceof Error)
+                throw (Error) e;
+        }
+    }
+
+    private FraudStatus awaitResponse(Check check) {
+        try {
+            return check.response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                LOG.info(() -> String.format("Checking fraud on its own, after its batch failed with %s", e.getCause()));
+                return fraudCheckerClient.checkFraud(check.creditCard, check.chargedAmount);
+            }
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private static class Batch {
+        final List<Check> checks = new ArrayList<>();
+        final CountDownLatch full = new CountDownLatch(1);
+    }
+
+    private static class Check {
+        final CreditCard creditCard;
+        final Money chargedAmount;
+        final CompletableFuture<FraudStatus> response = new CompletableFuture<>();
+
+        Check(CreditCard creditCard, Money chargedAmount) {
+            this.creditCard = creditCard;
+            this.chargedAmount = chargedAmount;
+        }
+
+        Map<String, Object> payload() {
+            final var payload = new HashMap<String, Object>();
+            payload.put("creditCard", creditCard);
+            payload.put("charge", chargedAmount);
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link FraudCheckerClient}. The returned
+ * {@link Mono} completes on the HTTP client's event loop, so no request
+ * thread is parked while the FraudChecker MicroService is thinking.
+ */
+public interface ReactiveFraudCheckerClient {
+    Mono<FraudStatus> checkFraud(CreditCard creditCard, Money chargedAmount);
+}
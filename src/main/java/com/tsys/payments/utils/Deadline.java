@@ -0,0 +1,108 @@
+package com.tsys.payments.utils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The time by which a request must be answered, so that the stages it
+ * goes through spend no more than what is left of it, and the work is
+ * given up once it has passed, rather than finished for a caller that
+ * stopped waiting.
+ * <p>
+ * A request is made on one thread from start to end, so its deadline is
+ * bound to that thread for the duration of {@link #run}, and found by each
+ * stage through {@link #current()}, without being passed down every call.
+ * Work handed to another thread takes it along with {@link #carried}.
+ */
+public final class Deadline {
+
+    // Timeouts of 0 mean none at all, to sockets and HTTP clients alike.
+    private static final Duration LEAST_TIMEOUT = Duration.ofMillis(1);
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAt;
+    private final LongSupplier nanoTime;
+
+    private Deadline(long expiresAt, LongSupplier nanoTime) {
+        this.expiresAt = expiresAt;
+        this.nanoTime = nanoTime;
+    }
+
+    public static Deadline after(Duration budget) {
+        return after(budget, System::nanoTime);
+    }
+
+    static Deadline after(Duration budget, LongSupplier nanoTime) {
+        return new Deadline(nanoTime.getAsLong() + budget.toNanos(), nanoTime);
+    }
+
+    // @return the deadline bound to this thread, if any.
+    public static Optional<Deadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    // Gives up the stage, if the deadline bound to this thread has passed.
+    public static void checkCurrent(String stage) {
+        final var deadline = CURRENT.get();
+        if (deadline != null)
+            deadline.check(stage);
+    }
+
+    /**
+     * @return the timeout for a stage, cut down to what is left of the
+     * deadline bound to this thread, if any.
+     * @throws DeadlineExceededException when there is nothing left.
+     */
+    public static Duration timeoutFor(String stage, Duration timeout) {
+        final var deadline = CURRENT.get();
+        if (deadline == null)
+            return timeout;
+        deadline.check(stage);
+        final var remaining = deadline.remaining();
+        return remaining.compareTo(timeout) < 0 ? max(remaining, LEAST_TIMEOUT) : timeout;
+    }
+
+    // @return the work, to run under the deadline bound to this thread now.
+    public static <T> Supplier<T> carried(Supplier<T> work) {
+        final var deadline = CURRENT.get();
+        return deadline == null ? work : () -> deadline.run(work);
+    }
+
+    public Duration remaining() {
+        return max(Duration.ofNanos(expiresAt - nanoTime.getAsLong()), Duration.ZERO);
+    }
+
+    public boolean hasExpired() {
+        return expiresAt - nanoTime.getAsLong() <= 0;
+    }
+
+    public void check(String stage) {
+        if (hasExpired())
+            throw new DeadlineExceededException(stage);
+    }
+
+    // Runs the work with this deadline bound to the thread.
+    public <T> T run(Supplier<T> work) {
+        final var previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(previous);
+        }
+    }
+
+    private static Duration max(Duration one, Duration other) {
+        return one.compareTo(other) >= 0 ? one : other;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Deadline in %d ms", remaining().toMillis());
+    }
+}
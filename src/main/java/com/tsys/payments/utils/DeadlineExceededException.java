@@ -0,0 +1,16 @@
+package com.tsys.payments.utils;
+
+/**
+ * Thrown by a stage of a request that was given up, because the deadline
+ * of the request had passed by the time it was reached.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String stage) {
+        super(String.format("Deadline passed before %s", stage));
+    }
+
+    public DeadlineExceededException(String stage, Throwable cause) {
+        super(String.format("Deadline passed during %s", stage), cause);
+    }
+}
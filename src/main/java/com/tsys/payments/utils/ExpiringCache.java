@@ -0,0 +1,123 @@
+package com.tsys.payments.utils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * A thread-safe in-memory cache that holds at most maxSize entries, each
+ * for at most ttl after it was put.
+ * <p>
+ * Entries are never updated in place, so insertion order is also expiry
+ * order.  That lets one FIFO queue serve both limits: whenever the cache
+ * grows past maxSize, or its oldest entry has expired, the oldest entry is
+ * dropped.  Reads also check the expiry, so a stale value is never served
+ * even if nothing was put in a while.
+ */
+public class ExpiringCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry<K, V>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoTime;
+
+    public ExpiringCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    public ExpiringCache(int maxSize, Duration ttl, LongSupplier nanoTime) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be positive, was " + maxSize);
+
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    public Optional<V> get(K key) {
+        final var entry = entries.get(key);
+        if (entry == null)
+            return Optional.empty();
+
+        if (entry.hasExpired(nanoTime.getAsLong())) {
+            entries.remove(key, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry.value);
+    }
+
+    public void put(K key, V value) {
+        final var entry = new Entry<>(key, value, nanoTime.getAsLong() + ttlNanos);
+        entries.put(key, entry);
+        insertionOrder.add(entry);
+        evict();
+    }
+
+    /**
+     * Puts the value only if there is no live value for the key yet.
+     *
+     * @return the live value already cached, or empty if this value was put.
+     */
+    public Optional<V> putIfAbsent(K key, V value) {
+        final var entry = new Entry<>(key, value, nanoTime.getAsLong() + ttlNanos);
+        while (true) {
+            final var existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                insertionOrder.add(entry);
+                evict();
+                return Optional.empty();
+            }
+            if (!existing.hasExpired(nanoTime.getAsLong()))
+                return Optional.of(existing.value);
+
+            entries.remove(key, existing);
+        }
+    }
+
+    /**
+     * Removes the key only while it still maps to the given value, so a
+     * value put by someone else in the meantime survives.
+     */
+    public void remove(K key, V value) {
+        final var entry = entries.get(key);
+        if (entry != null && entry.value.equals(value))
+            entries.remove(key, entry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        final var now = nanoTime.getAsLong();
+        Entry<K, V> oldest;
+        while ((oldest = insertionOrder.peek()) != null
+                && (entries.size() > maxSize || oldest.hasExpired(now) || entries.get(oldest.key) != oldest)) {
+            // Entries that were removed or replaced are dropped from the
+            // queue here too.  Another thread may be evicting at the same
+            // time, only the one that unlinks the entry removes it.
+            if (insertionOrder.remove(oldest))
+                entries.remove(oldest.key, oldest);
+        }
+    }
+
+    private static class Entry<K, V> {
+        final K key;
+        final V value;
+        final long expiresAt;
+
+        Entry(K key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean hasExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.tsys.payments.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket that lets retries through only as a share of the calls
+ * that succeed, so that a callee that is struggling is not sent more
+ * calls, in retries, just when it can least take them.
+ * <p>
+ * Each call that succeeds puts retryRatio of a token in the bucket, and
+ * minRetriesPerSecond tokens trickle in whatever happens, so that a few
+ * retries are still made while next to nothing succeeds.  A retry takes
+ * a whole token, and is refused once there is none.  At most maxTokens
+ * are saved up, so a long quiet spell does not buy a burst of retries.
+ * <p>
+ * With every instance keeping to its own budget, retries across them all
+ * stay within the same share of the calls made, instead of multiplying
+ * them by the number of attempts.  The balance is an immutable object,
+ * swapped by compare-and-set, so the budget is safe to share without
+ * locks.
+ */
+public class RetryBudget {
+
+    // Tokens are counted in thousandths, so that a ratio like 0.1 adds up.
+    private static final long SCALE = 1000;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long depositPerSuccess;
+    private final long depositPerSecond;
+    private final long maxBalance;
+    // Time the minimum rate takes to fill the bucket from empty.
+    private final long refillNanos;
+    private final LongSupplier nanoTime;
+    private final AtomicReference<Balance> balance;
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public RetryBudget(String name, double retryRatio, double minRetriesPerSecond, int maxTokens,
+                       MeterRegistry meterRegistry) {
+        this(name, retryRatio, minRetriesPerSecond, maxTokens, meterRegistry, System::nanoTime);
+    }
+
+    RetryBudget(String name, double retryRatio, double minRetriesPerSecond, int maxTokens,
+                MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        if (retryRatio < 0 || minRetriesPerSecond < 0 || maxTokens < 1)
+            throw new IllegalArgumentException(String.format("retryRatio and minRetriesPerSecond can not be negative, were %s and %s, and maxTokens must be positive, was %d",
+                    retryRatio, minRetriesPerSecond, maxTokens));
+
+        this.depositPerSuccess = Math.round(retryRatio * SCALE);
+        this.depositPerSecond = Math.round(minRetriesPerSecond * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.refillNanos = depositPerSecond == 0 ? 0 : (long) Math.ceil((double) maxBalance * NANOS_PER_SECOND / depositPerSecond);
+        this.nanoTime = nanoTime;
+        this.balance = new AtomicReference<>(new Balance(maxBalance, nanoTime.getAsLong()));
+        this.retries = meterRegistry.counter(name + ".retries");
+        this.exhausted = meterRegistry.counter(name + ".exhausted");
+        Gauge.builder(name + ".tokens", this, RetryBudget::tokens)
+                .register(meterRegistry);
+    }
+
+    public void succeeded() {
+        if (depositPerSuccess == 0)
+            return;
+        while (true) {
+            final var current = balance.get();
+            if (current.tokens >= maxBalance
+                    || balance.compareAndSet(current, new Balance(Math.min(maxBalance, current.tokens + depositPerSuccess), current.refilledAt)))
+                return;
+        }
+    }
+
+    // @return whether a retry may be made, having taken a token for it.
+    public boolean tryRetry() {
+        while (true) {
+            final var current = balance.get();
+            final var refilled = current.refilled(nanoTime.getAsLong());
+            if (refilled.tokens < SCALE) {
+                exhausted.increment();
+                return false;
+            }
+            if (balance.compareAndSet(current, new Balance(refilled.tokens - SCALE, refilled.refilledAt))) {
+                retries.increment();
+                return true;
+            }
+        }
+    }
+
+    public double tokens() {
+        return (double) balance.get().refilled(nanoTime.getAsLong()).tokens / SCALE;
+    }
+
+    private class Balance {
+        final long tokens;
+        final long refilledAt;
+
+        Balance(long tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+
+        // The minimum rate is added lazily, for the time since last added.
+        // Time spent full buys nothing.
+        Balance refilled(long now) {
+            if (tokens >= maxBalance)
+                return new Balance(tokens, now);
+            final var elapsed = Math.min(now - refilledAt, refillNanos);
+            final var deposit = elapsed * depositPerSecond / NANOS_PER_SECOND;
+            return deposit == 0 ? this : new Balance(Math.min(maxBalance, tokens + deposit), now);
+        }
+    }
+}
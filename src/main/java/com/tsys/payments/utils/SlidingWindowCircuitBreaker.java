@@ -0,0 +1,266 @@
+package com.tsys.payments.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * A circuit breaker that opens on the share of calls failing, or being
+ * slow, over a sliding window of time, and is safe to use without locks.
+ * <p>
+ * While CLOSED, the outcome of each call is counted in the bucket for the
+ * tenth of the window it ended in.  Once the window holds at least
+ * minimumCalls, and failureRateThreshold percent of them failed or
+ * slowCallRateThreshold percent took slowCallDuration or longer, the
+ * breaker opens.
+ * <p>
+ * While OPEN, calls are refused straight away, with no more than a read of
+ * the clock.  After openDuration, the breaker is HALF_OPEN and lets
+ * halfOpenProbes calls through.  Once they are all done, it closes with an
+ * empty window if they were within the thresholds, and opens again if not.
+ * <p>
+ * Each state is an immutable object, or one with atomic counters, that
+ * replaces the previous one by compare-and-set, so only one caller makes
+ * any one transition.  Calls report their outcome to the state that let
+ * them in, so a late answer from before a transition can not undo it.
+ */
+public class SlidingWindowCircuitBreaker {
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private static final Logger LOG = Logger.getLogger(SlidingWindowCircuitBreaker.class.getName());
+    private static final int BUCKETS = 10;
+
+    private final String name;
+    private final long bucketNanos;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoTime;
+    private final AtomicReference<Phase> phase = new AtomicReference<>(new Closed());
+    private final Counter rejected;
+
+    public SlidingWindowCircuitBreaker(String name, Duration window, int minimumCalls,
+                                       double failureRateThreshold, double slowCallRateThreshold,
+                                       Duration slowCallDuration, Duration openDuration, int halfOpenProbes,
+                                       MeterRegistry meterRegistry) {
+        this(name, window, minimumCalls, failureRateThreshold, slowCallRateThreshold, slowCallDuration,
+                openDuration, halfOpenProbes, meterRegistry, System::nanoTime);
+    }
+
+    public SlidingWindowCircuitBreaker(String name, Duration window, int minimumCalls,
+                                       double failureRateThreshold, double slowCallRateThreshold,
+                                       Duration slowCallDuration, Duration openDuration, int halfOpenProbes,
+                                       MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        if (window.toNanos() < BUCKETS)
+            throw new IllegalArgumentException("window is too short, was " + window);
+        if (minimumCalls <= 0 || halfOpenProbes <= 0)
+            throw new IllegalArgumentException(String.format("minimumCalls and halfOpenProbes must be positive, were %d and %d", minimumCalls, halfOpenProbes));
+
+        this.name = name;
+        this.bucketNanos = window.toNanos() / BUCKETS;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = halfOpenProbes;
+        this.meterRegistry = meterRegistry;
+        this.nanoTime = nanoTime;
+        this.rejected = meterRegistry.counter(name + ".rejected");
+        Gauge.builder(name + ".state", this, breaker -> breaker.state().ordinal())
+                .description("0 closed, 1 open, 2 half open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return a call to report the outcome to, or empty if the breaker is
+     * open and the call must not be made.
+     */
+    public Optional<Call> tryCall() {
+        while (true) {
+            final var current = phase.get();
+            final var now = nanoTime.getAsLong();
+            if (current instanceof Closed)
+                return Optional.of(new Call(current, now));
+
+            if (current instanceof Open) {
+                if (now - ((Open) current).openedAt < openNanos) {
+                    rejected.increment();
+                    return Optional.empty();
+                }
+                transition(current, new HalfOpen());
+                continue;
+            }
+
+            // Not below 0, so that a permit handed back can be taken again.
+            if (((HalfOpen) current).permits.getAndUpdate(permits -> Math.max(0, permits - 1)) > 0)
+                return Optional.of(new Call(current, now));
+            rejected.increment();
+            return Optional.empty();
+        }
+    }
+
+    public State state() {
+        return phase.get().state();
+    }
+
+    private void record(Phase admittedBy, boolean failed, long durationNanos) {
+        final var slow = durationNanos >= slowCallNanos;
+        if (admittedBy instanceof Closed) {
+            final var closed = (Closed) admittedBy;
+            final var window = closed.record(nanoTime.getAsLong(), failed, slow);
+            if (window.calls >= minimumCalls && window.exceedsThresholds())
+                transition(closed, new Open(nanoTime.getAsLong()));
+        } else if (admittedBy instanceof HalfOpen) {
+            final var halfOpen = (HalfOpen) admittedBy;
+            if (failed)
+                halfOpen.failures.incrementAndGet();
+            if (slow)
+                halfOpen.slowCalls.incrementAndGet();
+            if (halfOpen.completed.incrementAndGet() == halfOpenProbes) {
+                final var probes = new Counts(halfOpenProbes, halfOpen.failures.get(), halfOpen.slowCalls.get());
+                transition(halfOpen, probes.exceedsThresholds() ? new Open(nanoTime.getAsLong()) : new Closed());
+            }
+        }
+    }
+
+    private void transition(Phase from, Phase to) {
+        if (phase.compareAndSet(from, to)) {
+            meterRegistry.counter(name + ".transitions", "from", from.state().name(), "to", to.state().name()).increment();
+            LOG.info(() -> String.format("%s went from %s to %s", name, from.state(), to.state()));
+        }
+    }
+
+    public class Call {
+        private final Phase admittedBy;
+        private final long startedAt;
+
+        private Call(Phase admittedBy, long startedAt) {
+            this.admittedBy = admittedBy;
+            this.startedAt = startedAt;
+        }
+
+        public void succeeded() {
+            record(admittedBy, false, nanoTime.getAsLong() - startedAt);
+        }
+
+        public void failed() {
+            record(admittedBy, true, nanoTime.getAsLong() - startedAt);
+        }
+
+        // For a call given up on by the caller, e.g. past its deadline,
+        // which tells nothing of the callee.  A probe hands its permit back.
+        public void ignored() {
+            if (admittedBy instanceof HalfOpen)
+                ((HalfOpen) admittedBy).permits.incrementAndGet();
+        }
+    }
+
+    private interface Phase {
+        State state();
+    }
+
+    private class Closed implements Phase {
+        private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKETS);
+
+        @Override
+        public State state() {
+            return State.CLOSED;
+        }
+
+        // @return the counts over the window, including this call.
+        Counts record(long now, boolean failed, boolean slow) {
+            final var epoch = Math.floorDiv(now, bucketNanos);
+            final var index = (int) Math.floorMod(epoch, (long) BUCKETS);
+            while (true) {
+                final var bucket = buckets.get(index);
+                final var counts = bucket == null || bucket.epoch != epoch
+                        ? new Counts(1, failed ? 1 : 0, slow ? 1 : 0)
+                        : bucket.counts.plus(failed, slow);
+                if (buckets.compareAndSet(index, bucket, new Bucket(epoch, counts)))
+                    break;
+            }
+
+            var window = new Counts(0, 0, 0);
+            for (int i = 0; i < BUCKETS; i++) {
+                final var bucket = buckets.get(i);
+                if (bucket != null && epoch - bucket.epoch < BUCKETS)
+                    window = window.plus(bucket.counts);
+            }
+            return window;
+        }
+    }
+
+    private static class Open implements Phase {
+        final long openedAt;
+
+        Open(long openedAt) {
+            this.openedAt = openedAt;
+        }
+
+        @Override
+        public State state() {
+            return State.OPEN;
+        }
+    }
+
+    private class HalfOpen implements Phase {
+        final AtomicInteger permits = new AtomicInteger(halfOpenProbes);
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger slowCalls = new AtomicInteger();
+
+        @Override
+        public State state() {
+            return State.HALF_OPEN;
+        }
+    }
+
+    private static class Bucket {
+        final long epoch;
+        final Counts counts;
+
+        Bucket(long epoch, Counts counts) {
+            this.epoch = epoch;
+            this.counts = counts;
+        }
+    }
+
+    private class Counts {
+        final int calls;
+        final int failures;
+        final int slowCalls;
+
+        Counts(int calls, int failures, int slowCalls) {
+            this.calls = calls;
+            this.failures = failures;
+            this.slowCalls = slowCalls;
+        }
+
+        Counts plus(boolean failed, boolean slow) {
+            return new Counts(calls + 1, failures + (failed ? 1 : 0), slowCalls + (slow ? 1 : 0));
+        }
+
+        Counts plus(Counts other) {
+            return new Counts(calls + other.calls, failures + other.failures, slowCalls + other.slowCalls);
+        }
+
+        boolean exceedsThresholds() {
+            return 100.0 * failures / calls >= failureRateThreshold
+                    || 100.0 * slowCalls / calls >= slowCallRateThreshold;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.tsys.payments.utils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts the events per key, and sums an amount that comes with each,
+ * over several sliding windows of time at once, e.g. the charges on a
+ * card over the last minute, hour and day.
+ * <p>
+ * Each window is kept as a ring of bucketsPerWindow buckets, each
+ * covering a slice of the window, and is totalled over the buckets still
+ * inside it.  So a window slides a slice at a time, and totals cover
+ * between window - slice and window of time.  A bucket is an immutable
+ * object replaced by compare-and-set, as in {@link SlidingWindowCircuitBreaker},
+ * so recording never blocks, and only buckets that were used take memory.
+ * <p>
+ * The keys are spread over stripes, each holding at most maxKeys /
+ * stripes of them.  A stripe that grows past that is swept by whichever
+ * thread noticed, while others carry on: keys idle for longer than the
+ * longest window are dropped first, since all their windows are empty,
+ * and then the least recently seen, until a tenth of the room is free.
+ * A key dropped while still in use starts counting afresh, so memory stays
+ * bounded at the cost of undercounting the least active keys.
+ */
+public class VelocityTracker<K> {
+
+    private static final int STRIPES = 16;
+
+    private final long[] bucketNanos;
+    private final int bucketsPerWindow;
+    private final long longestWindowNanos;
+    private final int maxKeysPerStripe;
+    private final LongSupplier nanoTime;
+    private final Stripe<K>[] stripes;
+    private final LongAdder evicted = new LongAdder();
+
+    public VelocityTracker(List<Duration> windows, int bucketsPerWindow, int maxKeys) {
+        this(windows, bucketsPerWindow, maxKeys, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    public VelocityTracker(List<Duration> windows, int bucketsPerWindow, int maxKeys, LongSupplier nanoTime) {
+        if (windows.isEmpty() || bucketsPerWindow <= 0)
+            throw new IllegalArgumentException(String.format("Need at least one window and bucket, got %s and %d", windows, bucketsPerWindow));
+        if (maxKeys < STRIPES)
+            throw new IllegalArgumentException(String.format("maxKeys must be at least %d, was %d", STRIPES, maxKeys));
+
+        this.bucketNanos = windows.stream().mapToLong(window -> Math.max(1, window.toNanos() / bucketsPerWindow)).toArray();
+        this.bucketsPerWindow = bucketsPerWindow;
+        this.longestWindowNanos = windows.stream().mapToLong(Duration::toNanos).max().getAsLong();
+        this.maxKeysPerStripe = maxKeys / STRIPES;
+        this.nanoTime = nanoTime;
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe<>();
+    }
+
+    /**
+     * Records an event with the given amount for the key.
+     *
+     * @return the totals per window, in the order the windows were given,
+     * including this event.
+     */
+    public Totals[] record(K key, long amount) {
+        final var stripe = stripeOf(key);
+        final var now = nanoTime.getAsLong();
+        var windows = stripe.keys.get(key);
+        if (windows == null) {
+            windows = stripe.keys.computeIfAbsent(key, k -> new Windows(bucketNanos.length * bucketsPerWindow, now));
+            if (stripe.keys.size() > maxKeysPerStripe)
+                sweep(stripe, key, now);
+        }
+        windows.lastSeen = now;
+        final var totals = new Totals[bucketNanos.length];
+        for (int w = 0; w < bucketNanos.length; w++)
+            totals[w] = record(windows, w, now, amount);
+        return totals;
+    }
+
+    /**
+     * @return the totals per window for the key, in the order the windows
+     * were given, without recording anything.
+     */
+    public Totals[] totals(K key) {
+        final var windows = stripeOf(key).keys.get(key);
+        final var now = nanoTime.getAsLong();
+        final var totals = new Totals[bucketNanos.length];
+        for (int w = 0; w < bucketNanos.length; w++)
+            totals[w] = windows == null ? Totals.NONE : total(windows, w, Math.floorDiv(now, bucketNanos[w]));
+        return totals;
+    }
+
+    public int size() {
+        return Arrays.stream(stripes).mapToInt(stripe -> stripe.keys.size()).sum();
+    }
+
+    public long evicted() {
+        return evicted.sum();
+    }
+
+    private Totals record(Windows windows, int window, long now, long amount) {
+        final var epoch = Math.floorDiv(now, bucketNanos[window]);
+        final var index = window * bucketsPerWindow + (int) Math.floorMod(epoch, (long) bucketsPerWindow);
+        while (true) {
+            final var bucket = windows.buckets.get(index);
+            // A bucket from a later slice, put by a thread that read the
+            // clock a little later, is added to rather than reset.
+            final var replacement = bucket == null || bucket.epoch < epoch
+                    ? new Bucket(epoch, new Totals(1, amount))
+                    : new Bucket(bucket.epoch, bucket.totals.plus(1, amount));
+            if (windows.buckets.compareAndSet(index, bucket, replacement))
+                break;
+        }
+        return total(windows, window, epoch);
+    }
+
+    private Totals total(Windows windows, int window, long epoch) {
+        var count = 0L;
+        var amount = 0L;
+        for (int i = window * bucketsPerWindow; i < (window + 1) * bucketsPerWindow; i++) {
+            final var bucket = windows.buckets.get(i);
+            if (bucket != null && epoch - bucket.epoch < bucketsPerWindow) {
+                count += bucket.totals.count;
+                amount += bucket.totals.amount;
+            }
+        }
+        return new Totals(count, amount);
+    }
+
+    private Stripe<K> stripeOf(K key) {
+        final var hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    // Never drops the key being recorded, which would lose this event, even
+    // when it is as idle as those dropped, e.g. all seen at the same time.
+    private void sweep(Stripe<K> stripe, K recording, long now) {
+        if (!stripe.sweeping.compareAndSet(false, true))
+            return;
+        try {
+            stripe.keys.forEach((key, windows) -> {
+                if (now - windows.lastSeen >= longestWindowNanos && !key.equals(recording) && stripe.keys.remove(key, windows))
+                    evicted.increment();
+            });
+
+            final var target = maxKeysPerStripe - Math.max(1, maxKeysPerStripe / 10);
+            final var excess = stripe.keys.size() - target;
+            if (excess <= 0)
+                return;
+            final var idle = stripe.keys.values().stream()
+                    .mapToLong(windows -> now - windows.lastSeen)
+                    .sorted()
+                    .toArray();
+            // Idle for at least this long => dropped.
+            final var idleCutoff = idle[Math.max(0, idle.length - excess)];
+            stripe.keys.forEach((key, windows) -> {
+                if (now - windows.lastSeen >= idleCutoff && !key.equals(recording) && stripe.keys.remove(key, windows))
+                    evicted.increment();
+            });
+        } finally {
+            stripe.sweeping.set(false);
+        }
+    }
+
+    public static class Totals {
+        static final Totals NONE = new Totals(0, 0);
+
+        public final long count;
+        public final long amount;
+
+        public Totals(long count, long amount) {
+            this.count = count;
+            this.amount = amount;
+        }
+
+        Totals plus(long count, long amount) {
+            return new Totals(this.count + count, this.amount + amount);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Totals{count=%d, amount=%d}", count, amount);
+        }
+    }
+
+    private static class Stripe<K> {
+        final ConcurrentHashMap<K, Windows> keys = new ConcurrentHashMap<>();
+        final AtomicBoolean sweeping = new AtomicBoolean();
+    }
+
+    private static class Windows {
+        final AtomicReferenceArray<Bucket> buckets;
+        volatile long lastSeen;
+
+        Windows(int buckets, long now) {
+            this.buckets = new AtomicReferenceArray<>(buckets);
+            this.lastSeen = now;
+        }
+    }
+
+    private static class Bucket {
+        final long epoch;
+        final Totals totals;
+
+        Bucket(long epoch, Totals totals) {
+            this.epoch = epoch;
+            this.totals = totals;
+        }
+    }
+}
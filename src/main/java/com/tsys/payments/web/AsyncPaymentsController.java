@@ -0,0 +1,59 @@
+package com.tsys.payments.web;
+
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.AsyncPaymentsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous variant of /pay.  The payment is only queued, so the
+ * response does not wait on the FraudChecker; the client polls the
+ * Location it is given for the outcome.
+ */
+@Controller
+public class AsyncPaymentsController {
+
+    private static final Logger LOG = Logger.getLogger(AsyncPaymentsController.class.getName());
+
+    private final AsyncPaymentsService asyncPaymentsService;
+
+    @Autowired
+    public AsyncPaymentsController(AsyncPaymentsService asyncPaymentsService) {
+        this.asyncPaymentsService = asyncPaymentsService;
+    }
+
+    @PostMapping(value = "/pay/async", consumes = "application/json", produces = "application/json")
+    public ResponseEntity<TransactionReference> submitPayment(@RequestBody PaymentPayload payload) {
+        LOG.info(() -> String.format("Submitting payment for %s using creditCard %s", payload.order, payload.creditCard));
+        try {
+            final var pending = asyncPaymentsService.submit(payload.order, payload.creditCard);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/payments/" + pending.id))
+                    .body(pending);
+        } catch (RejectedExecutionException e) {
+            LOG.info(() -> String.format("Payment queue is full, turning away order %s", payload.order.id));
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+    }
+
+    @GetMapping(value = "/payments/{id}", produces = "application/json")
+    public ResponseEntity<TransactionReference> paymentStatus(@PathVariable UUID id) {
+        return asyncPaymentsService.status(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
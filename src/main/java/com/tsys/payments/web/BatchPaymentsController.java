@@ -0,0 +1,54 @@
+package com.tsys.payments.web;
+
+import com.tsys.payments.domain.Payment;
+import com.tsys.payments.domain.PaymentResult;
+import com.tsys.payments.service.local.BatchPaymentsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Accepts many payments in one request.  The response holds one
+ * {@link PaymentResult} per payload, in the same order as the payloads.
+ * <p>
+ * The returned CompletableFuture releases the request thread while the
+ * fraud checks run, on both the servlet and the reactive web stack.
+ */
+@Controller
+public class BatchPaymentsController {
+
+    private static final Logger LOG = Logger.getLogger(BatchPaymentsController.class.getName());
+
+    private final BatchPaymentsService batchPaymentsService;
+
+    private final int maxBatchSize;
+
+    @Autowired
+    public BatchPaymentsController(BatchPaymentsService batchPaymentsService,
+                                   @Value("${batch.maxSize}") int maxBatchSize) {
+        this.batchPaymentsService = batchPaymentsService;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @PostMapping(value = "/pay/batch", consumes = "application/json", produces = "application/json")
+    public CompletableFuture<ResponseEntity<List<PaymentResult>>> makePayments(@RequestBody List<PaymentPayload> payloads) {
+        LOG.info(() -> String.format("Making batch of %d payments", payloads.size()));
+        if (payloads.size() > maxBatchSize)
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE));
+
+        final var payments = payloads.stream()
+                .map(payload -> new Payment(payload.order, payload.creditCard))
+                .collect(Collectors.toList());
+        return batchPaymentsService.makePayments(payments)
+                .thenApply(ResponseEntity::ok);
+    }
+}
@@ -1,28 +1,46 @@
 package com.tsys.payments.web;
 
 import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.IdempotencyKeyReusedException;
+import com.tsys.payments.service.local.IdempotentPaymentsService;
+import com.tsys.payments.service.local.LoadShedder;
 import com.tsys.payments.service.local.PaymentsService;
+import com.tsys.payments.utils.Deadline;
+import com.tsys.payments.utils.DeadlineExceededException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import java.time.Duration;
 import java.util.logging.Logger;
 
 @Controller("/")
+@ConditionalOnExpression("#{'${features.web.pipeline:}' != 'reactive'}")
 public class PaymentsController {
 
     private static final Logger LOG = Logger.getLogger(PaymentsController.class.getName());
 
     private final PaymentsService paymentsService;
+    private final IdempotentPaymentsService idempotentPaymentsService;
+    private final LoadShedder loadShedder;
+    private final long requestTimeout;
 
     @Autowired
-    public PaymentsController(PaymentsService paymentsService) {
+    public PaymentsController(PaymentsService paymentsService, IdempotentPaymentsService idempotentPaymentsService, LoadShedder loadShedder,
+                              @Value("${latency_control.timeout.request}") long requestTimeout) {
         this.paymentsService = paymentsService;
+        this.idempotentPaymentsService = idempotentPaymentsService;
+        this.loadShedder = loadShedder;
+        this.requestTimeout = requestTimeout;
     }
 
     @RequestMapping
@@ -36,10 +54,37 @@ public class PaymentsController {
     }
 
     @PostMapping(value = "pay", consumes = "application/json", produces = "application/json")
-    public ResponseEntity<TransactionReference> makePayment(@RequestBody PaymentPayload payload) {
+    public ResponseEntity<TransactionReference> makePayment(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                                            @RequestHeader(value = "X-Request-Timeout", required = false) Long timeout,
+                                                            @RequestBody PaymentPayload payload) {
         LOG.info(() -> String.format("Making payment for %s using creditCard %s", payload.order, payload.creditCard));
-        return paymentsService.makePayment(payload.order, payload.creditCard)
-                .map(ResponseEntity::ok)
-                .orElse(new ResponseEntity<>(HttpStatus.BAD_GATEWAY));
+        final var permit = loadShedder.tryAdmit();
+        if (permit.isEmpty())
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(loadShedder.retryAfter().getSeconds()))
+                    .build();
+
+        // The fraud check, its retries and the save all have to fit in
+        // what is left of it, and are given up once it has passed.
+        final var deadline = Deadline.after(Duration.ofMillis(deadlineFor(timeout)));
+        try (var admitted = permit.get()) {
+            final var transactionReference = deadline.run(() -> idempotencyKey == null
+                    ? paymentsService.makePayment(payload.order, payload.creditCard)
+                    : idempotentPaymentsService.makePayment(idempotencyKey, payload.order, payload.creditCard));
+            return transactionReference
+                    .map(ResponseEntity::ok)
+                    .orElse(new ResponseEntity<>(HttpStatus.BAD_GATEWAY));
+        } catch (DeadlineExceededException e) {
+            LOG.info(() -> String.format("Gave up on payment for order %s: %s", payload.order.id, e.getMessage()));
+            return new ResponseEntity<>(HttpStatus.GATEWAY_TIMEOUT);
+        } catch (IdempotencyKeyReusedException e) {
+            return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+    }
+
+    // A caller may ask for less time than requestTimeout, e.g. what is
+    // left of its own deadline, but not for more.
+    private long deadlineFor(Long timeout) {
+        return timeout == null || timeout <= 0 ? requestTimeout : Math.min(timeout, requestTimeout);
     }
 }
@@ -0,0 +1,50 @@
+package com.tsys.payments.web;
+
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.ReactivePaymentsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import reactor.core.publisher.Mono;
+
+import java.util.logging.Logger;
+
+/**
+ * Takes over /pay when features.web.pipeline = reactive.
+ * <p>
+ * On the servlet stack the returned Mono is handled as an async request, so
+ * the Tomcat worker is handed back to the pool while the fraud check is in
+ * flight.  Start with -Dspring.main.web-application-type=reactive to serve
+ * the same endpoints from Netty instead.
+ */
+@Controller("/")
+@ConditionalOnExpression("#{'${features.web.pipeline:}' == 'reactive'}")
+public class ReactivePaymentsController {
+
+    private static final Logger LOG = Logger.getLogger(ReactivePaymentsController.class.getName());
+
+    private final ReactivePaymentsService paymentsService;
+
+    @Autowired
+    public ReactivePaymentsController(ReactivePaymentsService paymentsService) {
+        this.paymentsService = paymentsService;
+    }
+
+    @GetMapping("ping")
+    public ResponseEntity<String> pong() {
+        return ResponseEntity.ok(String.format("{ 'PONG' : '%s is running fine!' }", ReactivePaymentsController.class.getSimpleName()));
+    }
+
+    @PostMapping(value = "pay", consumes = "application/json", produces = "application/json")
+    public Mono<ResponseEntity<TransactionReference>> makePayment(@RequestBody PaymentPayload payload) {
+        LOG.info(() -> String.format("Making payment for %s using creditCard %s", payload.order, payload.creditCard));
+        return paymentsService.makePayment(payload.order, payload.creditCard)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.BAD_GATEWAY));
+    }
+}
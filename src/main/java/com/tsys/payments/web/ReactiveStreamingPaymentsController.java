@@ -0,0 +1,41 @@
+package com.tsys.payments.web;
+
+import com.tsys.payments.domain.Payment;
+import com.tsys.payments.domain.PaymentResult;
+import com.tsys.payments.service.local.BatchPaymentsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import reactor.core.publisher.Flux;
+
+import java.util.logging.Logger;
+
+/**
+ * Serves /pay/stream on the reactive web stack, where the request body is
+ * decoded line by line into a Flux whose demand is driven by
+ * {@link BatchPaymentsService}.
+ *
+ * @see StreamingPaymentsController
+ */
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveStreamingPaymentsController {
+
+    private static final Logger LOG = Logger.getLogger(ReactiveStreamingPaymentsController.class.getName());
+
+    private final BatchPaymentsService batchPaymentsService;
+
+    @Autowired
+    public ReactiveStreamingPaymentsController(BatchPaymentsService batchPaymentsService) {
+        this.batchPaymentsService = batchPaymentsService;
+    }
+
+    @PostMapping(value = "/pay/stream", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+    public Flux<PaymentResult> makePayments(@RequestBody Flux<PaymentPayload> payloads) {
+        LOG.info(() -> "Making stream of payments");
+        return batchPaymentsService.makePayments(payloads
+                .map(payload -> new Payment(payload.order, payload.creditCard)));
+    }
+}
@@ -0,0 +1,75 @@
+package com.tsys.payments.web;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.tsys.payments.domain.Payment;
+import com.tsys.payments.domain.PaymentResult;
+import com.tsys.payments.service.local.BatchPaymentsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.logging.Logger;
+
+/**
+ * Accepts a newline delimited JSON stream of payments and writes back one
+ * {@link PaymentResult} per line, in the same order, as soon as it is ready.
+ * <p>
+ * Payloads are parsed one at a time straight off the request body, and the
+ * next one is read only when {@link BatchPaymentsService} asks for it.  So
+ * the file is never held in memory as a whole, and a slow FraudChecker or
+ * database slows down reading the upload instead of filling the heap.
+ * <p>
+ * The stream is not cut short by spring.mvc.async.request-timeout, nor by
+ * the 30s Tomcat times async requests out after: Spring MVC writes a Flux
+ * of application/x-ndjson through an emitter that never times out, so an
+ * upload takes as long as its payments do.
+ * <p>
+ * Spring MVC cannot bind a Flux request body, hence this reads the servlet
+ * InputStream.  {@link ReactiveStreamingPaymentsController} serves the same
+ * endpoint on the reactive web stack.
+ */
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class StreamingPaymentsController {
+
+    private static final Logger LOG = Logger.getLogger(StreamingPaymentsController.class.getName());
+
+    private final BatchPaymentsService batchPaymentsService;
+
+    private final ObjectReader paymentPayloadReader;
+
+    @Autowired
+    public StreamingPaymentsController(BatchPaymentsService batchPaymentsService, ObjectMapper objectMapper) {
+        this.batchPaymentsService = batchPaymentsService;
+        this.paymentPayloadReader = objectMapper.readerFor(PaymentPayload.class);
+    }
+
+    @PostMapping(value = "/pay/stream", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+    public Flux<PaymentResult> makePayments(InputStream body) {
+        LOG.info(() -> "Making stream of payments");
+        final Flux<Payment> payments = Flux.<PaymentPayload, MappingIterator<PaymentPayload>>using(
+                () -> paymentPayloadReader.readValues(body),
+                payloads -> Flux.fromIterable(() -> payloads),
+                this::close)
+                .map(payload -> new Payment(payload.order, payload.creditCard))
+                // Reading the body blocks, keep it away from the request thread.
+                .subscribeOn(Schedulers.boundedElastic());
+        return batchPaymentsService.makePayments(payments);
+    }
+
+    private void close(MappingIterator<PaymentPayload> payloads) {
+        try {
+            payloads.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.tsys.payments.web;
+
+import com.tsys.payments.domain.Transaction;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.TransactionsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Lets merchants poll for the status of their payments.
+ * <p>
+ * Every response carries an ETag of the transaction's id and status.  For
+ * a poll whose If-None-Match still matches, Spring answers 304 Not Modified
+ * without a body, and as the transaction usually comes from the cache in
+ * TransactionsService, without a database round trip either.  For an
+ * order, that holds for polls within transactions.cache.orderTtl of the
+ * one that read it.
+ */
+@Controller
+public class TransactionsController {
+
+    private static final Logger LOG = Logger.getLogger(TransactionsController.class.getName());
+
+    private final TransactionsService transactionsService;
+
+    @Autowired
+    public TransactionsController(TransactionsService transactionsService) {
+        this.transactionsService = transactionsService;
+    }
+
+    @GetMapping(value = "/transactions/{id}", produces = "application/json")
+    public ResponseEntity<TransactionReference> findTransaction(@PathVariable UUID id) {
+        LOG.info(() -> String.format("Finding transaction %s", id));
+        return respondWith(transactionsService.findById(id));
+    }
+
+    @GetMapping(value = "/orders/{orderId}/transaction", produces = "application/json")
+    public ResponseEntity<TransactionReference> findTransactionForOrder(@PathVariable String orderId) {
+        LOG.info(() -> String.format("Finding transaction for order %s", orderId));
+        return respondWith(transactionsService.findByOrderId(orderId));
+    }
+
+    private ResponseEntity<TransactionReference> respondWith(Optional<Transaction> transaction) {
+        return transaction
+                .map(t -> ResponseEntity.ok()
+                        .eTag(String.format("\"%s-%s\"", t.id, t.status))
+                        .body(t.reference()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
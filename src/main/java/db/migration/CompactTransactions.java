@@ -0,0 +1,162 @@
+package db.migration;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copies rows of the transactions table into transactions_compact, for
+ * V5 and V6.  Not a migration itself, so Flyway leaves it be.
+ * <p>
+ * Conversions are done here rather than in SQL, so that the migrations
+ * run the same on MySQL and H2.  They are fixed as of V4, and deliberately
+ * do not use the application's own mapping, which may change later.
+ */
+class CompactTransactions {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final Map<String, Integer> STATUS_CODES = Map.of(
+            "accepted", 1,
+            "rejected", 2,
+            "accepted_unverified", 3);
+
+    private final Connection connection;
+
+    CompactTransactions(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Walks the transactions table in id order, copying the rows not yet
+     * in transactions_compact, a batch at a time, each committed on its
+     * own, so that no lock is held for long.
+     *
+     * @return the number of rows copied.
+     */
+    long copyMissingRows() throws SQLException {
+        long copied = 0;
+        byte[] after = null;
+        while (true) {
+            final var rows = readBatch(after);
+            if (rows.isEmpty())
+                return copied;
+            copied += insertMissing(rows);
+            connection.commit();
+            after = rows.get(rows.size() - 1).wideId;
+        }
+    }
+
+    long count(String table) throws SQLException {
+        try (final var statement = connection.createStatement();
+             final var resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    boolean onMySql() throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+    }
+
+    private List<Row> readBatch(byte[] after) throws SQLException {
+        final var sql = "SELECT id, date, order_id, status, amount, currency FROM transactions"
+                + (after == null ? "" : " WHERE id > ?")
+                + " ORDER BY id LIMIT " + BATCH_SIZE;
+        try (final var select = connection.prepareStatement(sql)) {
+            if (after != null)
+                select.setBytes(1, after);
+            try (final var resultSet = select.executeQuery()) {
+                final var rows = new ArrayList<Row>(BATCH_SIZE);
+                while (resultSet.next())
+                    rows.add(new Row(resultSet.getBytes("id"), resultSet.getTimestamp("date"),
+                            resultSet.getString("order_id"), resultSet.getString("status"),
+                            resultSet.getDouble("amount"), resultSet.getString("currency")));
+                return rows;
+            }
+        }
+    }
+
+    private int insertMissing(List<Row> rows) throws SQLException {
+        final var present = presentIds(rows);
+        var inserted = 0;
+        try (final var insert = connection.prepareStatement(
+                "INSERT INTO transactions_compact (id, date, order_id, status, amount, currency) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (final var row : rows) {
+                if (present.contains(ByteBuffer.wrap(row.id())))
+                    continue;
+                insert.setBytes(1, row.id());
+                insert.setTimestamp(2, row.date);
+                insert.setString(3, row.orderId);
+                insert.setByte(4, row.statusCode());
+                insert.setLong(5, row.minorUnits());
+                insert.setString(6, row.currency);
+                insert.addBatch();
+                inserted++;
+            }
+            if (inserted > 0)
+                insert.executeBatch();
+        }
+        return inserted;
+    }
+
+    private Set<ByteBuffer> presentIds(List<Row> rows) throws SQLException {
+        final var placeholders = String.join(", ", Collections.nCopies(rows.size(), "?"));
+        try (final var select = connection.prepareStatement(
+                "SELECT id FROM transactions_compact WHERE id IN (" + placeholders + ")")) {
+            for (int i = 0; i < rows.size(); i++)
+                select.setBytes(i + 1, rows.get(i).id());
+            try (final var resultSet = select.executeQuery()) {
+                final var present = new HashSet<ByteBuffer>();
+                while (resultSet.next())
+                    present.add(ByteBuffer.wrap(resultSet.getBytes(1)));
+                return present;
+            }
+        }
+    }
+
+    private static class Row {
+        final byte[] wideId;
+        final Timestamp date;
+        final String orderId;
+        final String status;
+        final double amount;
+        final String currency;
+
+        Row(byte[] wideId, Timestamp date, String orderId, String status, double amount, String currency) {
+            this.wideId = wideId;
+            this.date = date;
+            this.orderId = orderId;
+            this.status = status;
+            this.amount = amount;
+            this.currency = currency;
+        }
+
+        // binary(255) pads the 16 bytes of the UUID with zeros on MySQL.
+        byte[] id() {
+            return Arrays.copyOf(wideId, 16);
+        }
+
+        byte statusCode() {
+            final var code = status == null ? null : STATUS_CODES.get(status);
+            if (code == null)
+                throw new IllegalStateException(String.format("Transaction with unknown status '%s' for order %s", status, orderId));
+            return code.byteValue();
+        }
+
+        long minorUnits() {
+            if (currency == null)
+                throw new IllegalStateException(String.format("Transaction with no currency for order %s", orderId));
+            final var fractionDigits = Math.max(0, Currency.getInstance(currency).getDefaultFractionDigits());
+            return Math.round(amount * Math.pow(10, fractionDigits));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.util.logging.Logger;
+
+/**
+ * Copies the transactions into transactions_compact, see V4, while
+ * instances on the old row format go on taking payments into transactions.
+ * <p>
+ * The copy is made online, in batches, each committed on its own, see
+ * {@link CompactTransactions}.  Payments are only ever inserted, never
+ * updated, so rows added behind the copy are caught by passes over the
+ * whole table again, each only copying the rows not yet there, until a
+ * pass finds nothing new, or MAX_PASSES is reached.  Rows still added
+ * after that are copied by V6, which swaps the tables.
+ * <p>
+ * To run it with the old instances still up, migrate a database only as
+ * far as this, e.g. with spring.flyway.target=5, or flyway -target=5.
+ */
+public class V5__Backfill_Compact_Transactions extends BaseJavaMigration {
+
+    private static final Logger LOG = Logger.getLogger(V5__Backfill_Compact_Transactions.class.getName());
+    private static final int MAX_PASSES = 5;
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        final var connection = context.getConnection();
+        final var autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            final var compactTransactions = new CompactTransactions(connection);
+            var pass = 0;
+            long copied;
+            do {
+                copied = compactTransactions.copyMissingRows();
+                final var copiedInPass = copied;
+                final var passNo = ++pass;
+                LOG.info(() -> String.format("Pass %d copied %d transactions into transactions_compact", passNo, copiedInPass));
+            } while (copied > 0 && pass < MAX_PASSES);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+/**
+ * Swaps transactions_compact in for the transactions table, once V5 has
+ * copied the rows over.  The old table is kept, as transactions_wide, to be
+ * dropped once the copy has been checked.
+ * <p>
+ * Instances on the old row format must be stopped before this runs, as
+ * they can not write the new one.  On MySQL, both tables are locked for
+ * writes meanwhile, the rows added since V5 copied, the counts of both
+ * tables compared, and only then renamed, so that no payment is left
+ * behind in transactions_wide.  A payment an old instance still tries to
+ * make waits for the lock, and then fails on the new row, rather than
+ * being lost.  If the counts differ, nothing is renamed and this fails.
+ * <p>
+ * To undo, with the application stopped, copy back any payments taken
+ * since, and then:
+ * <pre>
+ * RENAME TABLE transactions TO transactions_compact, transactions_wide TO transactions;
+ * DELETE FROM flyway_schema_history WHERE version = '6';
+ * </pre>
+ * and then V5 and V4, see V4__Create_Compact_Transactions_Table.
+ */
+public class V6__Swap_In_Compact_Transactions extends BaseJavaMigration {
+
+    private static final Logger LOG = Logger.getLogger(V6__Swap_In_Compact_Transactions.class.getName());
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        final var connection = context.getConnection();
+        final var autoCommit = connection.getAutoCommit();
+        final var compactTransactions = new CompactTransactions(connection);
+        final var mySql = compactTransactions.onMySql();
+        connection.setAutoCommit(false);
+        try (final var statement = connection.createStatement()) {
+            if (mySql)
+                statement.execute("LOCK TABLES transactions WRITE, transactions_compact WRITE");
+            try {
+                final var copied = compactTransactions.copyMissingRows();
+                LOG.info(() -> String.format("Copied %d transactions added since the backfill", copied));
+                checkCounts(compactTransactions);
+                rename(connection, mySql);
+            } finally {
+                if (mySql)
+                    statement.execute("UNLOCK TABLES");
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void checkCounts(CompactTransactions compactTransactions) throws SQLException {
+        final var wide = compactTransactions.count("transactions");
+        final var compact = compactTransactions.count("transactions_compact");
+        if (wide != compact)
+            throw new IllegalStateException(String.format(
+                    "transactions has %d rows but transactions_compact %d, not swapping them", wide, compact));
+    }
+
+    // RENAME TABLE swaps both at once on MySQL, also with them locked.
+    private void rename(Connection connection, boolean mySql) throws SQLException {
+        try (final var statement = connection.createStatement()) {
+            if (mySql) {
+                statement.execute("RENAME TABLE transactions TO transactions_wide, transactions_compact TO transactions");
+            } else {
+                statement.execute("ALTER TABLE transactions RENAME TO transactions_wide");
+                statement.execute("ALTER TABLE transactions_compact RENAME TO transactions");
+            }
+        }
+        connection.commit();
+    }
+}
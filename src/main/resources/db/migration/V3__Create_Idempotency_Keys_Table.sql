@@ -0,0 +1,13 @@
+CREATE TABLE `idempotency_keys` (
+  `idempotency_key` varchar(255) NOT NULL,
+  `transaction_id` binary(255) NOT NULL,
+  `transaction_date` datetime DEFAULT NULL,
+  `transaction_status` varchar(255) DEFAULT NULL,
+  PRIMARY KEY (`idempotency_key`)
+);
+
+--------------------------------------------------------------------
+-- UNDO Script
+--------------------------------------------------------------------
+-- DROP TABLE `idempotency_keys`;
+-- DELETE FROM flyway_schema_history WHERE installed_rank=2;
@@ -0,0 +1,27 @@
+-- Same transactions, in a row a fraction of the size:
+--   id       16 bytes of the UUID, instead of padded to 255
+--   amount   whole minor units of the currency, e.g. paise or cents
+--   currency ISO 4217 code
+--   status   1 = accepted, 2 = rejected, 3 = accepted_unverified
+-- and an index for the lookups by order id.
+-- V5 copies the rows over, with instances on the old row still up, and
+-- V6 swaps it in for transactions, once they are stopped.
+CREATE TABLE `transactions_compact` (
+  `id` binary(16) NOT NULL,
+  `date` datetime DEFAULT NULL,
+  `order_id` varchar(255) DEFAULT NULL,
+  `status` tinyint NOT NULL,
+  `amount` bigint NOT NULL,
+  `currency` char(3) NOT NULL,
+  PRIMARY KEY (`id`)
+);
+
+CREATE INDEX `transactions_order_id` ON `transactions_compact` (`order_id`);
+
+--------------------------------------------------------------------
+-- UNDO Script
+--------------------------------------------------------------------
+-- Once V6 has run, undo it first, see V6__Swap_In_Compact_Transactions,
+-- which names the table transactions_compact again.  Then, for V5 and V4:
+-- DROP TABLE `transactions_compact`;
+-- DELETE FROM flyway_schema_history WHERE version IN ('4', '5');
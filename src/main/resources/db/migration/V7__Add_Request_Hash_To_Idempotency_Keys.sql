@@ -0,0 +1,12 @@
+-- The HMAC-SHA256, in hex, under idempotency.requestHash.secret, of the
+-- request that first carried the key, so that the key being reused for a
+-- different payment can be told and refused.  Keyed, as a plain hash of
+-- a request with the card number in it could be reversed.
+-- Keys saved before it have none, and are replayed to any request.
+ALTER TABLE `idempotency_keys` ADD COLUMN `request_hash` char(64) DEFAULT NULL;
+
+--------------------------------------------------------------------
+-- UNDO Script
+--------------------------------------------------------------------
+-- ALTER TABLE `idempotency_keys` DROP COLUMN `request_hash`;
+-- DELETE FROM flyway_schema_history WHERE version = '7';
@@ -0,0 +1,75 @@
+package com.tsys.payments;
+
+import com.tsys.payments.domain.Payment;
+import com.tsys.payments.domain.PaymentResult;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.BatchPaymentsService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+// Streams for longer than async requests are given, here cut down to a
+// second, to see /pay/stream is not timed out like them.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("development")
+@TestPropertySource(properties = {
+        "spring.datasource.url = jdbc:h2:mem:paymentsdb;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS PAYMENTS;",
+        "spring.mvc.async.request-timeout = 1000"
+})
+@Tag("End-To-End-Test")
+public class PaymentsApplicationStreamingSpecs {
+
+    private static final String PAYLOAD = "{ " +
+            "\"order\": { \"id\": \"TEST-ORDER-ID\", \"items\": [] }, " +
+            "\"creditCard\": { \"number\": \"4485-2847-2013-4093\", \"holderName\": \"Jumping Jack\", \"issuingBank\": \"Bank of Test\", \"validUntil\": \"4000-12-30\", \"cvv\": 123 } " +
+            "}";
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private BatchPaymentsService batchPaymentsService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamsForLongerThanAsyncRequestsAreGiven() throws Exception {
+        // Given
+        final var reference = new TransactionReference(UUID.nameUUIDFromBytes("TEST".getBytes()), new Date(), "accepted");
+        given(batchPaymentsService.makePayments(any(Flux.class))).willAnswer(invocation -> {
+            final Flux<Payment> payments = invocation.getArgument(0);
+            return payments
+                    .delayElements(Duration.ofMillis(1000))
+                    .map(payment -> PaymentResult.completed(reference));
+        });
+        final var request = HttpRequest.newBuilder(URI.create(String.format("http://localhost:%d/pay/stream", port)))
+                .header("Content-Type", "application/x-ndjson")
+                .header("Accept", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(PAYLOAD + "\n" + PAYLOAD + "\n" + PAYLOAD + "\n"))
+                .build();
+
+        // When
+        final var response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofLines());
+
+        // Then
+        assertThat(response.statusCode(), is(200));
+        assertThat(response.body().filter(line -> !line.isBlank()).count(), is(3L));
+    }
+}
@@ -0,0 +1,51 @@
+package com.tsys.payments;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("development")
+@TestPropertySource(properties = {
+        "spring.datasource.url = jdbc:h2:mem:paymentsdb;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS PAYMENTS;",
+        "features.execution.threads = virtual"
+})
+@Tag("End-To-End-Test")
+public class PaymentsApplicationVirtualThreadsSpecs {
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @Autowired
+    @Qualifier("fraudCheckExecutor")
+    private ExecutorService fraudCheckExecutor;
+
+    @Test
+    void servesRequestsOnVirtualThreads() {
+        final var tomcat = ((TomcatWebServer) context.getWebServer()).getTomcat();
+        final Executor requestExecutor = tomcat.getConnector().getProtocolHandler().getExecutor();
+        assertThat(runsOnVirtualThread(requestExecutor), is(true));
+    }
+
+    @Test
+    void checksFraudOnVirtualThreads() {
+        assertThat(runsOnVirtualThread(fraudCheckExecutor), is(true));
+    }
+
+    private boolean runsOnVirtualThread(Executor executor) {
+        return CompletableFuture.supplyAsync(() -> Thread.currentThread().isVirtual(), executor).join();
+    }
+}
@@ -0,0 +1,120 @@
+package com.tsys.payments.config;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.*;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("IntegrationTest")
+public class FraudCheckerHttpClientSpecs {
+
+    private static final WireMockServer FRAUD_CHECKER_WEB_SERVICE = new WireMockServer(options().dynamicPort());
+    private final PaymentsConfig paymentsConfig = new PaymentsConfig();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CloseableHttpClient httpClient;
+
+    @BeforeAll
+    public static void startFraudCheckerServer() {
+        FRAUD_CHECKER_WEB_SERVICE.start();
+    }
+
+    @AfterAll
+    public static void stopFraudCheckerServer() {
+        FRAUD_CHECKER_WEB_SERVICE.stop();
+    }
+
+    @BeforeEach
+    public void stubFraudCheckerServer() {
+        FRAUD_CHECKER_WEB_SERVICE.stubFor(post(urlEqualTo("/check"))
+                .willReturn(okJson("{ \"overall\" : \"pass\" }")));
+        httpClient = paymentsConfig.fraudCheckerHttpClient(10, 10, 60000, 30000, meterRegistry);
+    }
+
+    @AfterEach
+    public void resetFraudCheckerServer() throws IOException {
+        httpClient.close();
+        FRAUD_CHECKER_WEB_SERVICE.resetAll();
+    }
+
+    @Test
+    public void keepsTheConnectionAliveForTheNextFraudCheck() {
+        // Given
+        final var restTemplate = paymentsConfig.restTemplate(new RestTemplateBuilder(), httpClient, 1000, 1000);
+
+        // When
+        checkFraud(restTemplate);
+        checkFraud(restTemplate);
+
+        // Then
+        assertThat(meterRegistry.get("payments.fraud_checker.connections.leased").gauge().value(), is(0d));
+        assertThat(meterRegistry.get("payments.fraud_checker.connections.available").gauge().value(), is(1d));
+    }
+
+    @Test
+    public void givesUpOnFraudCheckerOnceReadTimeoutIsOver() {
+        // Given
+        FRAUD_CHECKER_WEB_SERVICE.stubFor(post(urlEqualTo("/check"))
+                .willReturn(okJson("{ \"overall\" : \"pass\" }").withFixedDelay(1000)));
+        final var restTemplate = paymentsConfig.restTemplate(new RestTemplateBuilder(), httpClient, 1000, 100);
+
+        // When-Then
+        assertThrows(ResourceAccessException.class, () -> checkFraud(restTemplate));
+    }
+
+    @Test
+    public void checksFraudOverTheJdkHttpClient() {
+        // Given
+        final var restTemplate = paymentsConfig.http2RestTemplate(new RestTemplateBuilder(), 1000, 1000);
+
+        // When
+        final var response = checkFraud(restTemplate);
+
+        // Then
+        assertThat(response.get("overall"), is("pass"));
+        FRAUD_CHECKER_WEB_SERVICE.verify(postRequestedFor(urlEqualTo("/check"))
+                .withHeader("Content-Type", containing("application/json"))
+                .withRequestBody(equalToJson("{ \"charge\" : 10 }")));
+    }
+
+    @Test
+    public void shoutsOverTheJdkHttpClientWhenFraudCheckerFails() {
+        // Given
+        FRAUD_CHECKER_WEB_SERVICE.stubFor(post(urlEqualTo("/check"))
+                .willReturn(serverError()));
+        final var restTemplate = paymentsConfig.http2RestTemplate(new RestTemplateBuilder(), 1000, 1000);
+
+        // When-Then
+        assertThrows(HttpServerErrorException.class, () -> checkFraud(restTemplate));
+    }
+
+    @Test
+    public void givesUpOverTheJdkHttpClientOnceReadTimeoutIsOver() {
+        // Given
+        FRAUD_CHECKER_WEB_SERVICE.stubFor(post(urlEqualTo("/check"))
+                .willReturn(okJson("{ \"overall\" : \"pass\" }").withFixedDelay(1000)));
+        final var restTemplate = paymentsConfig.http2RestTemplate(new RestTemplateBuilder(), 1000, 100);
+
+        // When-Then
+        assertThrows(ResourceAccessException.class, () -> checkFraud(restTemplate));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> checkFraud(RestTemplate restTemplate) {
+        final var fraudCheckUri = URI.create(FRAUD_CHECKER_WEB_SERVICE.baseUrl() + "/check");
+        return restTemplate.postForObject(fraudCheckUri, Map.of("charge", 10), Map.class);
+    }
+}
@@ -0,0 +1,48 @@
+package com.tsys.payments.config;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("development")
+@TestPropertySource(properties = {
+        "spring.datasource.url = jdbc:h2:mem:paymentsdb;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS PAYMENTS;",
+        "features.payments.warm_up = before_ready",
+        "warm_up.payments = 100",
+        "warm_up.connections = 2",
+        "warm_up.maxDuration = 5000"
+})
+@Tag("End-To-End-Test")
+public class PaymentsApplicationWarmUpSpecs {
+
+    @Autowired
+    private PaymentsWarmUp paymentsWarmUp;
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void reportsReadyOnceWarmedUp() {
+        assertThat(applicationAvailability.getReadinessState(), is(ReadinessState.ACCEPTING_TRAFFIC));
+        assertThat(restTemplate.getForObject("/actuator/health/readiness", String.class), containsString("UP"));
+    }
+
+    @Test
+    void makesPaymentsThroughTheApplicationsObjectMapper() {
+        assertThat(paymentsWarmUp.makePayments(System.nanoTime() + 5_000_000_000L), is(100));
+    }
+}
@@ -0,0 +1,140 @@
+package com.tsys.payments.config;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.utils.UUIDGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("UnitTest")
+class PaymentsWarmUpSpecs {
+
+    // Same ObjectMapper setup as Spring Boot's, so that PaymentPayload can be
+    // created through its constructor parameter names.
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new ParameterNamesModule(JsonCreator.Mode.DEFAULT))
+            .build();
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Test
+    public void makesPaymentsWithoutSavingAnyOfThem() {
+        // Given
+        final var warmUp = new PaymentsWarmUp(objectMapper, transactionRepository, new UUIDGenerator(),
+                () -> "pong", 50, 0, Duration.ofSeconds(10));
+
+        // When
+        final var made = warmUp.makePayments(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+
+        // Then
+        assertThat(made, is(50));
+        verify(transactionRepository, never()).findById(any(UUID.class));
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    public void stopsMakingPaymentsOnceOutOfTime() {
+        // Given
+        final var warmUp = new PaymentsWarmUp(objectMapper, transactionRepository, new UUIDGenerator(),
+                () -> "pong", 50, 0, Duration.ofSeconds(10));
+
+        // When
+        final var made = warmUp.makePayments(System.nanoTime() - 1);
+
+        // Then
+        assertThat(made, is(0));
+    }
+
+    @Test
+    public void pingsTheFraudCheckerFromAsManyThreadsAtOnceAsConnectionsWanted() {
+        // Given
+        final var connections = 4;
+        final var allPinging = new CountDownLatch(connections);
+        final var threads = ConcurrentHashMap.<Thread>newKeySet();
+        final var warmUp = new PaymentsWarmUp(objectMapper, transactionRepository, new UUIDGenerator(), () -> {
+            threads.add(Thread.currentThread());
+            allPinging.countDown();
+            try {
+                allPinging.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "pong";
+        }, 0, connections, Duration.ofSeconds(10));
+
+        // When
+        final var pinged = warmUp.openConnections(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+
+        // Then
+        assertThat(pinged, is(connections));
+        assertThat(threads.size(), is(connections));
+    }
+
+    @Test
+    public void waitsForPingsOnlyForWhatIsLeftOfMaxDuration() {
+        // Given
+        final var pings = new AtomicInteger();
+        final var warmUp = new PaymentsWarmUp(objectMapper, transactionRepository, new UUIDGenerator(), () -> {
+            pings.incrementAndGet();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "pong";
+        }, 0, 2, Duration.ofSeconds(10));
+
+        // When
+        final var startedAt = System.nanoTime();
+        warmUp.openConnections(startedAt + TimeUnit.MILLISECONDS.toNanos(100));
+        final var outOfTime = warmUp.openConnections(System.nanoTime() - 1);
+
+        // Then
+        assertThat(outOfTime, is(0));
+        assertThat(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(5), is(true));
+        assertThat(pings.get(), is(2));
+    }
+
+    @Test
+    public void carriesOnWhenNeitherTheDatabaseNorTheFraudCheckerCanBeReached() {
+        // Given
+        final var pings = new AtomicInteger();
+        given(transactionRepository.findById(any(UUID.class))).willThrow(new IllegalStateException("No database!"));
+        final var warmUp = new PaymentsWarmUp(objectMapper, transactionRepository, new UUIDGenerator(), () -> {
+            if (pings.incrementAndGet() % 2 == 0)
+                throw new IllegalStateException("Connection refused");
+            return "pong";
+        }, 10, 4, Duration.ofSeconds(10));
+
+        // When
+        warmUp.run(new DefaultApplicationArguments());
+
+        // Then
+        verify(transactionRepository, times(1)).findById(any(UUID.class));
+        assertThat(pings.get(), is(4));
+        assertThat(warmUp.openConnections(System.nanoTime() + TimeUnit.SECONDS.toNanos(10)), is(2));
+    }
+}
@@ -0,0 +1,48 @@
+package com.tsys.payments.domain;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@Tag("UnitTest")
+public class CardFingerprintSpecs {
+    private final CreditCard card = CreditCardBuilder.make()
+            .withNumber("4485-2847-2013-4093")
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withFutureExpiryDate()
+            .withCVV(123)
+            .build();
+
+    @Test
+    public void sameCardHasTheSameFingerprint() {
+        final var sameCard = new CreditCard("4485 2847 2013 4093", card.holderName, card.issuingBank, card.validUntil, card.cvv);
+
+        assertThat(CardFingerprint.of(sameCard), is(CardFingerprint.of(card)));
+    }
+
+    @Test
+    public void sameNumberWithDifferentDetailsHasADifferentFingerprint() {
+        final var otherCvv = new CreditCard(card.number, card.holderName, card.issuingBank, card.validUntil, 456);
+
+        assertThat(CardFingerprint.of(otherCvv), is(not(CardFingerprint.of(card))));
+    }
+
+    @Test
+    public void doesNotContainTheCardNumber() {
+        final var fingerprint = CardFingerprint.of(card).value;
+
+        assertThat(fingerprint, not(containsString("4093")));
+        assertThat(fingerprint, not(containsString("44852847")));
+    }
+
+    @Test
+    public void sameNumberWithDifferentDetailsHasTheSameNumberFingerprint() {
+        final var otherCvv = new CreditCard("4485 2847 2013 4093", "Jack Jumping", card.issuingBank, card.validUntil, 456);
+
+        assertThat(CardFingerprint.ofNumber(otherCvv), is(CardFingerprint.ofNumber(card)));
+        assertThat(CardFingerprint.ofNumber(card), is(not(CardFingerprint.of(card))));
+    }
+}
@@ -45,6 +45,19 @@ public class FraudStatusSpecs {
         assertThat(transaction, is(expected));
     }
 
+    @Test
+    public void createsAnAcceptedUnverifiedTransactionForAnUnverifiedOverallStatus() {
+        // Given
+        final FraudStatus unverified = new FraudStatus("unverified");
+
+        // When
+        final var transaction = unverified.makeTransaction(id, date, orderId, inr_100_253).orElseThrow();
+
+        // Then
+        final var expected = new Transaction(id, date, "accepted_unverified", orderId, inr_100_253);
+        assertThat(transaction, is(expected));
+    }
+
     @Test
     public void createsNoTransactionForASuspiciousOverallStatus() {
         // Given
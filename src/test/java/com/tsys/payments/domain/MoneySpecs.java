@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import java.util.Currency;
+import java.util.Map;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -63,4 +64,34 @@ public class MoneySpecs {
     public void multipliesAmountByAFactor() {
         assertThat(inr_100_253.multiply(2d), is(new Money(Currency.getInstance("INR"), 200.506)));
     }
+
+    @Test
+    public void countsInWholeMinorUnitsOfItsCurrency() {
+        assertThat(inr_100_253.minorUnits(), is(10025L));
+        assertThat(usd5.minorUnits(), is(500L));
+        assertThat(new Money(Currency.getInstance("JPY"), 150d).minorUnits(), is(150L));
+    }
+
+    @Test
+    public void isMadeBackFromItsMinorUnitsAsWritten() {
+        assertThat(Money.ofMinorUnits(Currency.getInstance("INR"), 200045L), is(new Money(Currency.getInstance("INR"), 2000.45)));
+        assertThat(Money.ofMinorUnits(Currency.getInstance("USD"), 9999L), is(new Money(Currency.getInstance("USD"), 99.99)));
+        assertThat(Money.ofMinorUnits(Currency.getInstance("JPY"), 150L), is(new Money(Currency.getInstance("JPY"), 150d)));
+    }
+
+    @Test
+    public void parsesLimitsPerCurrency() {
+        assertThat(Money.parseLimits(" INR:100, USD:2.5 ,"), is(Map.of(
+                Currency.getInstance("INR"), new Money(Currency.getInstance("INR"), 100d),
+                Currency.getInstance("USD"), new Money(Currency.getInstance("USD"), 2.5))));
+        assertThat(Money.parseLimits(""), is(Map.of()));
+        assertThat(Money.parseLimits(null), is(Map.of()));
+    }
+
+    @Test
+    public void shoutsForLimitsItCanNotParse() {
+        assertThrows(IllegalArgumentException.class, () -> Money.parseLimits("INR100"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parseLimits("INR:lots"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parseLimits("XYZ:100"));
+    }
 }
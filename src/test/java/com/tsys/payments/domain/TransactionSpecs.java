@@ -31,4 +31,18 @@ class TransactionSpecs {
         assertThat(reference, is(expected));
     }
 
+    @Test
+    public void isNewUntilPersisted() {
+        // Given
+        final var transaction = new Transaction(UUID.nameUUIDFromBytes("TEST-ID".getBytes()), new Date(), "accepted", "TEST-ORDER-ID",
+                new Money(Currency.getInstance("INR"), 100.253));
+        assertThat(transaction.isNew(), is(true));
+
+        // When
+        transaction.markNotNew();
+
+        // Then
+        assertThat(transaction.isNew(), is(false));
+    }
+
 }
\ No newline at end of file
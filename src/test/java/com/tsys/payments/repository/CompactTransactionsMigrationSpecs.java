@@ -0,0 +1,148 @@
+package com.tsys.payments.repository;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Runs the migrations up to the old transactions row, fills it, and then
+// the rest, to see V5 copy the rows into the compact one, and V6 swap it in.
+@Tag("IntegrationTest")
+class CompactTransactionsMigrationSpecs {
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void migrateToTheWideRow() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        flyway("3").migrate();
+    }
+
+    @Test
+    public void copiesEveryRowIntoTheCompactOne() {
+        // Given
+        final var accepted = UUID.randomUUID();
+        insertWide(accepted, "accepted", "ORDER-1", 2000.45, "INR");
+        insertWide(UUID.randomUUID(), "rejected", "ORDER-2", 99.99, "USD");
+        insertWide(UUID.randomUUID(), "accepted_unverified", "ORDER-3", 1500d, "JPY");
+        IntStream.range(0, 2500).forEach(i -> insertWide(UUID.randomUUID(), "accepted", "BULK-" + i, 10.5, "EUR"));
+
+        // When
+        flyway(null).migrate();
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Long.class), is(2503L));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions_wide", Long.class), is(2503L));
+        final var row = jdbcTemplate.queryForMap("SELECT id, status, amount, currency FROM transactions WHERE order_id = 'ORDER-1'");
+        assertThat(ByteBuffer.wrap((byte[]) row.get("ID")), is(ByteBuffer.wrap(bytesOf(accepted))));
+        assertThat(((Number) row.get("STATUS")).intValue(), is(1));
+        assertThat(row.get("AMOUNT"), is(200045L));
+        assertThat(row.get("CURRENCY"), is("INR"));
+        assertThat(jdbcTemplate.queryForObject("SELECT amount FROM transactions WHERE order_id = 'ORDER-2'", Long.class), is(9999L));
+        assertThat(jdbcTemplate.queryForObject("SELECT amount FROM transactions WHERE order_id = 'ORDER-3'", Long.class), is(1500L));
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM transactions WHERE order_id = 'ORDER-3'", Integer.class), is(3));
+    }
+
+    @Test
+    public void takesUpWhereAnEarlierRunStopped() {
+        // Given
+        final var copied = UUID.randomUUID();
+        insertWide(copied, "accepted", "ORDER-1", 10d, "INR");
+        insertWide(UUID.randomUUID(), "accepted", "ORDER-2", 20d, "INR");
+        flyway("4").migrate();
+        jdbcTemplate.update("INSERT INTO transactions_compact (id, date, order_id, status, amount, currency) VALUES (?, ?, ?, ?, ?, ?)",
+                bytesOf(copied), Timestamp.from(Instant.now()), "ORDER-1", 1, 1000L, "INR");
+
+        // When
+        flyway(null).migrate();
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Long.class), is(2L));
+    }
+
+    @Test
+    public void leavesTheOldTableInPlaceUntilTheSwap() {
+        // Given
+        insertWide(UUID.randomUUID(), "accepted", "ORDER-1", 10d, "INR");
+
+        // When
+        flyway("5").migrate();
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions_compact", Long.class), is(1L));
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM transactions", String.class), is("accepted"));
+    }
+
+    @Test
+    public void swapsInPaymentsTakenAfterTheBackfillToo() {
+        // Given
+        insertWide(UUID.randomUUID(), "accepted", "ORDER-1", 10d, "INR");
+        flyway("5").migrate();
+        insertWide(UUID.randomUUID(), "rejected", "ORDER-2", 20d, "INR");
+
+        // When
+        flyway(null).migrate();
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Long.class), is(2L));
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM transactions WHERE order_id = 'ORDER-2'", Integer.class), is(2));
+    }
+
+    @Test
+    public void refusesToSwapWhenTheCountsDiffer() {
+        // Given
+        insertWide(UUID.randomUUID(), "accepted", "ORDER-1", 10d, "INR");
+        flyway("5").migrate();
+        jdbcTemplate.update("INSERT INTO transactions_compact (id, date, order_id, status, amount, currency) VALUES (?, ?, ?, ?, ?, ?)",
+                bytesOf(UUID.randomUUID()), Timestamp.from(Instant.now()), "ORDER-X", 1, 1000L, "INR");
+
+        // Then
+        assertThrows(Exception.class, () -> flyway(null).migrate());
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM transactions", String.class), is("accepted"));
+    }
+
+    @Test
+    public void refusesRowsWithAStatusItHasNoCodeFor() {
+        // Given
+        insertWide(UUID.randomUUID(), "failed", "ORDER-1", 10d, "INR");
+
+        // Then
+        assertThrows(Exception.class, () -> flyway(null).migrate());
+    }
+
+    private Flyway flyway(String target) {
+        final var configuration = Flyway.configure().dataSource(dataSource);
+        if (target != null)
+            configuration.target(target);
+        return configuration.load();
+    }
+
+    // Padded to its column, like MySQL keeps a binary(255).
+    private void insertWide(UUID id, String status, String orderId, double amount, String currency) {
+        jdbcTemplate.update("INSERT INTO transactions (id, date, order_id, status, amount, currency) VALUES (?, ?, ?, ?, ?, ?)",
+                Arrays.copyOf(bytesOf(id), 255), Timestamp.from(Instant.now()), orderId, status, amount, currency);
+    }
+
+    private static byte[] bytesOf(UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -0,0 +1,50 @@
+package com.tsys.payments.repository;
+
+import com.tsys.payments.domain.IdempotencyKey;
+import com.tsys.payments.domain.TransactionReference;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+// See TransactionRepositorySpecs, the idempotency_keys table is also
+// created by the flyway migrations.
+@DataJpaTest
+@Tag("IntegrationTest")
+public class IdempotencyKeyRepositorySpecs {
+
+    private final IdempotencyKey idempotencyKey = new IdempotencyKey("KEY-1", "REQUEST-HASH-1",
+            new TransactionReference(UUID.nameUUIDFromBytes("TXNID-1".getBytes()), Date.from(Instant.now()), "accepted"));
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Test
+    public void findingAnUnknownKeyYieldsNothing() {
+        assertThat(idempotencyKeyRepository.findById("KEY-1"), is(Optional.empty()));
+    }
+
+    @Test
+    public void savesAKeyWithTheResponseToReplay() {
+        // When
+        idempotencyKeyRepository.save(idempotencyKey);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then
+        final var found = idempotencyKeyRepository.findById("KEY-1").get();
+        assertThat(found.reference().id, is(idempotencyKey.transactionId));
+        assertThat(found.reference().status, is("accepted"));
+        assertThat(found.requestHash, is("REQUEST-HASH-1"));
+    }
+}
@@ -2,16 +2,19 @@ package com.tsys.payments.repository;
 
 import com.tsys.payments.domain.Money;
 import com.tsys.payments.domain.Transaction;
+import com.tsys.payments.utils.TimeOrderedUUIDGenerator;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.persistence.EntityManager;
 import javax.sql.DataSource;
 import java.time.Instant;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -79,7 +82,7 @@ public class TransactionRepositorySpecs {
     private TransactionRepository transactionRepository;
     private Date now = Date.from(Instant.now());
     private final Transaction succeeded = new Transaction(successfulTxnId, now, "accepted", successfulOrderId, new Money(Currency.getInstance("INR"), 2000.45));
-    private final Transaction failed = new Transaction(failedTxnId, now, "failed", failedOrderId, new Money(Currency.getInstance("INR"), 99.99));
+    private final Transaction failed = new Transaction(failedTxnId, now, "rejected", failedOrderId, new Money(Currency.getInstance("INR"), 99.99));
 
     @Test
     public void dependenciesAreInjected() {
@@ -227,6 +230,27 @@ public class TransactionRepositorySpecs {
         assertThat(toList(transactionRepository.findAllById(List.of(successfulTxnId, failedTxnId))), hasSize(0));
     }
 
+    @Test
+    public void keepsTheRowCompact() {
+        // Given
+        final var unverified = new Transaction(successfulTxnId, now, "accepted_unverified", successfulOrderId, new Money(Currency.getInstance("USD"), 14.99));
+
+        // When
+        transactionRepository.save(unverified);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then
+        final var row = jdbcTemplate.queryForMap("SELECT id, status, amount, currency FROM transactions");
+        assertThat(((byte[]) row.get("ID")).length, is(16));
+        assertThat(((Number) row.get("STATUS")).intValue(), is(3));
+        assertThat(row.get("AMOUNT"), is(1499L));
+        assertThat(row.get("CURRENCY"), is("USD"));
+        final var read = transactionRepository.findById(successfulTxnId).get();
+        assertThat(read.status, is("accepted_unverified"));
+        assertThat(read.value, is(unverified.value));
+    }
+
     // Tests for Custom JPQL Queries
     @Test
     public void findsTransactionByOrderId() {
@@ -235,6 +259,17 @@ public class TransactionRepositorySpecs {
         assertThat(transactionRepository.findByOrderId(successfulOrderId).get(), is(succeeded));
     }
 
+    @Test
+    public void findsTheLatestOfTheTransactionsOfARetriedOrder() {
+        // Given
+        final var retried = new Transaction(failedTxnId, Date.from(now.toInstant().plusSeconds(5)), "accepted", successfulOrderId,
+                new Money(Currency.getInstance("INR"), 2000.45));
+        transactionRepository.saveAll(List.of(retried, succeeded));
+
+        // Then
+        assertThat(transactionRepository.findFirstByOrderIdOrderByDateDesc(successfulOrderId).get().id, is(failedTxnId));
+    }
+
     @Test
     public void findingTransactionByOrderIdInAnEmptyRepositoryYieldsNothing() {
         assertThat(transactionRepository.findByOrderId(successfulOrderId), is(Optional.empty()));
@@ -252,6 +287,31 @@ public class TransactionRepositorySpecs {
         assertThat(transactionRepository.findByTransactionIdAndOrderId(successfulTxnId, successfulOrderId), is(Optional.empty()));
     }
 
+    @Test
+    public void findsTransactionsMadeInASpanOfTimeByARangeOfTheirIds() {
+        // Given
+        // A milli apart, as the last byte of the time goes from 0x7f to 0x80,
+        // which a signed comparison of the bytes would put the other way round.
+        final var at = Instant.ofEpochMilli(0x018F_0000_007FL);
+        final var earlier = madeAt(at.minusSeconds(60), "EARLIER");
+        final var first = madeAt(at, "FIRST");
+        final var second = madeAt(at.plusMillis(1), "SECOND");
+        final var later = madeAt(at.plusSeconds(60), "LATER");
+        transactionRepository.saveAll(List.of(later, second, earlier, first));
+        entityManager.flush();
+        entityManager.clear();
+
+        // When
+        final var from = TimeOrderedUUIDGenerator.lowestAt(at);
+        final var to = TimeOrderedUUIDGenerator.lowestAt(at.plusSeconds(1));
+        final var all = transactionRepository.findAllByIdRange(from, to, PageRequest.of(0, 10));
+        final var oldest = transactionRepository.findAllByIdRange(from, to, PageRequest.of(0, 1));
+
+        // Then
+        assertThat(all.stream().map(t -> t.orderId).collect(Collectors.toList()), contains("FIRST", "SECOND"));
+        assertThat(oldest.stream().map(t -> t.orderId).collect(Collectors.toList()), contains("FIRST"));
+    }
+
     // Tests for Native SQL Queries
     @Test
     public void findsAllTransactionByOrderIds() {
@@ -265,6 +325,12 @@ public class TransactionRepositorySpecs {
         assertThat(transactionRepository.findAllByOrderIds(List.of(successfulOrderId, failedOrderId)), hasSize(0));
     }
 
+    private Transaction madeAt(Instant instant, String orderId) {
+        final var lowest = TimeOrderedUUIDGenerator.lowestAt(instant);
+        final var id = new UUID(lowest.getMostSignificantBits(), lowest.getLeastSignificantBits() | new Random().nextLong() & 0x3FFFFFFFFFFFFFFFL);
+        return new Transaction(id, now, "accepted", orderId, new Money(Currency.getInstance("INR"), 10d));
+    }
+
     private <T> List<T> toList(Iterable<T> iterable) {
         var list = new ArrayList<T>();
         iterable.forEach(t -> list.add(t));
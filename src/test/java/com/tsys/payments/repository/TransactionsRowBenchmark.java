@@ -0,0 +1,219 @@
+package com.tsys.payments.repository;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the insert and lookup throughput of the transactions row before
+ * V4, wide, and after, compact.  Both tables are made afresh, as in V2 and
+ * V4, filled with the same transactions in JDBC batches of the size
+ * Hibernate is set to, and then read at random by id and by order id.
+ * <p>
+ * Settings are given as key=value pairs:
+ * <ul>
+ *   <li>url, user, password - of the database to run in, an H2 in memory
+ *       by default; to see the difference that matters, point it at a
+ *       MySQL like the production one</li>
+ *   <li>rows - transactions inserted, 100000 by default</li>
+ *   <li>lookups - of each kind, 20000 by default, or as many as are made
+ *       in 10 seconds</li>
+ * </ul>
+ * On MySQL it also shows the data and index size of each table.  To run it:
+ * gradle transactionsRowBenchmark --args='url=jdbc:mysql://localhost:3306/bench user=root password=secret rows=500000'
+ */
+public class TransactionsRowBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+    // Lookups by order id scan the whole wide table, which has no index on it.
+    private static final long LOOKUPS_FOR_AT_MOST_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final String[] STATUSES = {"accepted", "rejected", "accepted_unverified"};
+
+    private final Connection connection;
+    private final int rows;
+    private final int lookups;
+    private final UUID[] ids;
+
+    public TransactionsRowBenchmark(Connection connection, int rows, int lookups) {
+        this.connection = connection;
+        this.rows = rows;
+        this.lookups = lookups;
+        this.ids = new UUID[rows];
+        for (int i = 0; i < rows; i++)
+            ids[i] = UUID.randomUUID();
+    }
+
+    public static void main(String[] args) throws SQLException {
+        final Map<String, String> settings = Arrays.stream(args)
+                .map(arg -> arg.split("=", 2))
+                .collect(Collectors.toMap(pair -> pair[0], pair -> pair.length > 1 ? pair[1] : ""));
+        final var url = settings.getOrDefault("url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        try (final var connection = DriverManager.getConnection(url,
+                settings.getOrDefault("user", "sa"), settings.getOrDefault("password", ""))) {
+            final var benchmark = new TransactionsRowBenchmark(connection,
+                    Integer.parseInt(settings.getOrDefault("rows", "100000")),
+                    Integer.parseInt(settings.getOrDefault("lookups", "20000")));
+            System.out.printf("%d rows and %d lookups of each kind on %s%n",
+                    benchmark.rows, benchmark.lookups, connection.getMetaData().getDatabaseProductName());
+            benchmark.run(new Wide());
+            benchmark.run(new Compact());
+        }
+    }
+
+    public void run(Format format) throws SQLException {
+        try (final var statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + format.table());
+            for (final var ddl : format.ddl())
+                statement.execute(ddl);
+        }
+        connection.setAutoCommit(false);
+        final var insertStartedAt = System.nanoTime();
+        try (final var insert = connection.prepareStatement("INSERT INTO " + format.table()
+                + " (id, date, order_id, status, amount, currency) VALUES (?, ?, ?, ?, ?, ?)")) {
+            final var date = new Timestamp(System.currentTimeMillis());
+            for (int i = 0; i < rows; i++) {
+                insert.setBytes(1, format.id(ids[i]));
+                insert.setTimestamp(2, date);
+                insert.setString(3, "ORDER-" + i);
+                format.setStatusAndValue(insert, STATUSES[i % STATUSES.length], 10 + (i % 100000) / 100d, "INR");
+                insert.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        final var inserted = rows / seconds(insertStartedAt);
+        connection.setAutoCommit(true);
+
+        final var byId = lookups("SELECT * FROM " + format.table() + " WHERE id = ?",
+                (select, i) -> select.setBytes(1, format.id(ids[i])));
+        final var byOrderId = lookups("SELECT * FROM " + format.table() + " WHERE order_id = ?",
+                (select, i) -> select.setString(1, "ORDER-" + i));
+        System.out.printf("%-8s %,10.0f inserts/s %,10.0f lookups by id/s %,10.0f lookups by order id/s%s%n",
+                format.getClass().getSimpleName(), inserted, byId, byOrderId, size(format.table()));
+    }
+
+    private double lookups(String sql, Binder binder) throws SQLException {
+        final var random = ThreadLocalRandom.current();
+        try (final var select = connection.prepareStatement(sql)) {
+            final var startedAt = System.nanoTime();
+            final var stopAt = startedAt + LOOKUPS_FOR_AT_MOST_NANOS;
+            var done = 0;
+            for (; done < lookups && System.nanoTime() < stopAt; done++) {
+                binder.bind(select, random.nextInt(rows));
+                try (final var resultSet = select.executeQuery()) {
+                    if (!resultSet.next())
+                        throw new IllegalStateException(String.format("No row found by %s", sql));
+                }
+            }
+            return done / seconds(startedAt);
+        }
+    }
+
+    private String size(String table) throws SQLException {
+        if (!connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql"))
+            return "";
+        try (final var select = connection.prepareStatement(
+                "SELECT data_length, index_length FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?")) {
+            select.setString(1, table);
+            try (final var resultSet = select.executeQuery()) {
+                resultSet.next();
+                return String.format(" %,d KB data %,d KB index", resultSet.getLong(1) / 1024, resultSet.getLong(2) / 1024);
+            }
+        }
+    }
+
+    private static double seconds(long startedAt) {
+        return (System.nanoTime() - startedAt) / 1e9;
+    }
+
+    private static byte[] bytesOf(UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement select, int i) throws SQLException;
+    }
+
+    public interface Format {
+        String table();
+
+        String[] ddl();
+
+        byte[] id(UUID id);
+
+        void setStatusAndValue(PreparedStatement insert, String status, double amount, String currency) throws SQLException;
+    }
+
+    // As in V2, with the id padded to its column as MySQL does.
+    static class Wide implements Format {
+        @Override
+        public String table() {
+            return "bench_transactions_wide";
+        }
+
+        @Override
+        public String[] ddl() {
+            return new String[]{"CREATE TABLE bench_transactions_wide ("
+                    + "id binary(255) NOT NULL, date datetime DEFAULT NULL, order_id varchar(255) DEFAULT NULL, "
+                    + "status varchar(255) DEFAULT NULL, amount double DEFAULT NULL, currency varchar(255) DEFAULT NULL, "
+                    + "PRIMARY KEY (id))"};
+        }
+
+        @Override
+        public byte[] id(UUID id) {
+            return Arrays.copyOf(bytesOf(id), 255);
+        }
+
+        @Override
+        public void setStatusAndValue(PreparedStatement insert, String status, double amount, String currency) throws SQLException {
+            insert.setString(4, status);
+            insert.setDouble(5, amount);
+            insert.setString(6, currency);
+        }
+    }
+
+    // As in V4.
+    static class Compact implements Format {
+        @Override
+        public String table() {
+            return "bench_transactions_compact";
+        }
+
+        @Override
+        public String[] ddl() {
+            return new String[]{"CREATE TABLE bench_transactions_compact ("
+                    + "id binary(16) NOT NULL, date datetime DEFAULT NULL, order_id varchar(255) DEFAULT NULL, "
+                    + "status tinyint NOT NULL, amount bigint NOT NULL, currency char(3) NOT NULL, "
+                    + "PRIMARY KEY (id))",
+                    "CREATE INDEX bench_transactions_order_id ON bench_transactions_compact (order_id)"};
+        }
+
+        @Override
+        public byte[] id(UUID id) {
+            return bytesOf(id);
+        }
+
+        @Override
+        public void setStatusAndValue(PreparedStatement insert, String status, double amount, String currency) throws SQLException {
+            insert.setByte(4, (byte) (Arrays.asList(STATUSES).indexOf(status) + 1));
+            insert.setLong(5, Math.round(amount * 100));
+            insert.setString(6, currency);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.*;
+import com.tsys.payments.utils.IdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tag("UnitTest")
+class AsyncPaymentsServiceSpecs {
+
+    private final Date now = Date.from(Instant.now());
+    private final UUID uuid = UUID.nameUUIDFromBytes("TEST".getBytes());
+    private final CreditCard creditCard = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Order order = new Order("TEST-ORDER-ID", List.of(
+            new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10)));
+    private final List<Runnable> queued = new ArrayList<>();
+    @Mock
+    private PaymentsService paymentsService;
+    @Mock
+    private TransactionsService transactionsService;
+    @Mock
+    private IdGenerator<UUID> uuidGenerator;
+    private AsyncPaymentsService asyncPaymentsService;
+
+    @BeforeEach
+    public void setup() {
+        // Hold on to the queued payments, so that each spec decides
+        // when they are made.
+        final Executor executor = queued::add;
+        asyncPaymentsService = newAsyncPaymentsService(executor);
+    }
+
+    @Test
+    public void returnsPendingTransactionWithoutWaitingForThePayment() {
+        // Given
+        given(uuidGenerator.generate()).willReturn(uuid);
+
+        // When
+        final var pending = asyncPaymentsService.submit(order, creditCard);
+
+        // Then
+        assertThat(pending, is(new TransactionReference(uuid, now, "pending")));
+        assertThat(asyncPaymentsService.status(uuid), is(Optional.of(pending)));
+        verifyNoInteractions(paymentsService);
+    }
+
+    @Test
+    public void reportsTheTransactionOnceThePaymentIsMade() {
+        // Given
+        final var accepted = new TransactionReference(uuid, now, "accepted");
+        given(uuidGenerator.generate()).willReturn(uuid);
+        given(paymentsService.makePayment(uuid, order, creditCard)).willReturn(Optional.of(accepted));
+        asyncPaymentsService.submit(order, creditCard);
+
+        // When
+        queued.forEach(Runnable::run);
+
+        // Then
+        assertThat(asyncPaymentsService.status(uuid), is(Optional.of(accepted)));
+    }
+
+    @Test
+    public void reportsPaymentsThatCouldNotBeVerified() {
+        // Given
+        given(uuidGenerator.generate()).willReturn(uuid);
+        given(paymentsService.makePayment(uuid, order, creditCard)).willReturn(Optional.empty());
+        asyncPaymentsService.submit(order, creditCard);
+
+        // When
+        queued.forEach(Runnable::run);
+
+        // Then
+        assertThat(asyncPaymentsService.status(uuid), is(Optional.of(new TransactionReference(uuid, now, "unverified"))));
+    }
+
+    @Test
+    public void reportsPaymentsWhoseFraudCheckFailed() {
+        // Given
+        given(uuidGenerator.generate()).willReturn(uuid);
+        given(paymentsService.makePayment(uuid, order, creditCard)).willThrow(new ResourceAccessException("Unreachable!"));
+        asyncPaymentsService.submit(order, creditCard);
+
+        // When
+        queued.forEach(Runnable::run);
+
+        // Then
+        assertThat(asyncPaymentsService.status(uuid), is(Optional.of(new TransactionReference(uuid, now, "failed"))));
+    }
+
+    @Test
+    public void looksUpSavedTransactionsNoLongerInMemory() {
+        // Given
+        final var transaction = new Transaction(uuid, now, "accepted", order.id, order.amount);
+        given(transactionsService.findById(uuid)).willReturn(Optional.of(transaction));
+
+        // When
+        final var status = asyncPaymentsService.status(uuid);
+
+        // Then
+        assertThat(status, is(Optional.of(transaction.reference())));
+    }
+
+    @Test
+    public void refusesPaymentsWhenTheQueueIsFull() {
+        // Given
+        given(uuidGenerator.generate()).willReturn(uuid);
+        asyncPaymentsService = newAsyncPaymentsService(payment -> {
+            throw new RejectedExecutionException("Queue is full");
+        });
+
+        // When / Then
+        assertThrows(RejectedExecutionException.class, () -> asyncPaymentsService.submit(order, creditCard));
+        assertThat(asyncPaymentsService.status(uuid), is(Optional.empty()));
+    }
+
+    private AsyncPaymentsService newAsyncPaymentsService(Executor executor) {
+        return new AsyncPaymentsService(paymentsService, transactionsService, uuidGenerator, executor, 100, 60000) {
+            @Override
+            Date createSubmissionDate() {
+                return now;
+            }
+        };
+    }
+}
@@ -0,0 +1,311 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.*;
+import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.service.remote.FraudCheckerClient;
+import com.tsys.payments.utils.IdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Flux;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tag("UnitTest")
+class BatchPaymentsServiceSpecs {
+
+    private final Date now = Date.from(Instant.now());
+    private final UUID uuid1 = UUID.nameUUIDFromBytes("TEST-1".getBytes());
+    private final UUID uuid2 = UUID.nameUUIDFromBytes("TEST-2".getBytes());
+    private final CreditCard passingCard = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final CreditCard failingCard = CreditCardBuilder.make()
+            .withHolder("Jumping Jill")
+            .withIssuingBank("Bank of Test")
+            .withInvalidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final CreditCard suspiciousCard = CreditCardBuilder.make()
+            .withHolder("Jumping Joe")
+            .withIssuingBank("Bank of Test")
+            .withNumber("4485-2847-2013-0000")
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Order order = new Order("TEST-ORDER-ID", List.of(
+            new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10)));
+    @Mock
+    private FraudCheckerClient fraudCheckerClient;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private IdGenerator<UUID> uuidGenerator;
+    private BatchPaymentsService batchPaymentsService;
+
+    @BeforeEach
+    public void setup() {
+        // Run fraud checks on the calling thread, so that the order of
+        // the generated ids is predictable.
+        batchPaymentsService = new BatchPaymentsService(fraudCheckerClient, transactionRepository, uuidGenerator, Runnable::run, Runnable::run, 4) {
+            @Override
+            Date createTransactionDate() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void returnsOneResultPerPaymentInTheSameOrder() {
+        // Given
+        given(fraudCheckerClient.checkFraud(passingCard, order.amount)).willReturn(new FraudStatus("pass"));
+        given(fraudCheckerClient.checkFraud(suspiciousCard, order.amount)).willReturn(new FraudStatus("suspicious"));
+        given(fraudCheckerClient.checkFraud(failingCard, order.amount)).willReturn(new FraudStatus("fail"));
+        given(uuidGenerator.generate()).willReturn(uuid1, UUID.randomUUID(), uuid2);
+
+        // When
+        final var results = batchPaymentsService.makePayments(List.of(
+                new Payment(order, passingCard),
+                new Payment(order, suspiciousCard),
+                new Payment(order, failingCard))).join();
+
+        // Then
+        assertThat(results, contains(
+                PaymentResult.completed(new TransactionReference(uuid1, now, "accepted")),
+                PaymentResult.failed("Could not verify payment for order TEST-ORDER-ID"),
+                PaymentResult.completed(new TransactionReference(uuid2, now, "rejected"))));
+    }
+
+    @Test
+    public void reportsFraudCheckerErrorsAgainstTheFailingPaymentOnly() {
+        // Given
+        given(fraudCheckerClient.checkFraud(passingCard, order.amount)).willReturn(new FraudStatus("pass"));
+        given(fraudCheckerClient.checkFraud(failingCard, order.amount)).willThrow(new ResourceAccessException("Unreachable!"));
+        given(uuidGenerator.generate()).willReturn(uuid1);
+
+        // When
+        final var results = batchPaymentsService.makePayments(List.of(
+                new Payment(order, failingCard),
+                new Payment(order, passingCard))).join();
+
+        // Then
+        assertThat(results, contains(
+                PaymentResult.failed(BatchPaymentsService.FRAUD_CHECK_FAILED),
+                PaymentResult.completed(new TransactionReference(uuid1, now, "accepted"))));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void savesAcceptedAndRejectedTransactionsInOneSaveAll() {
+        // Given
+        given(fraudCheckerClient.checkFraud(passingCard, order.amount)).willReturn(new FraudStatus("pass"));
+        given(fraudCheckerClient.checkFraud(failingCard, order.amount)).willReturn(new FraudStatus("fail"));
+        given(uuidGenerator.generate()).willReturn(uuid1, uuid2);
+
+        // When
+        batchPaymentsService.makePayments(List.of(
+                new Payment(order, passingCard),
+                new Payment(order, failingCard))).join();
+
+        // Then
+        final ArgumentCaptor<Iterable<Transaction>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(transactionRepository, times(1)).saveAll(saved.capture());
+        assertThat(saved.getValue(), contains(
+                new Transaction(uuid1, now, "accepted", order.id, order.amount),
+                new Transaction(uuid2, now, "rejected", order.id, order.amount)));
+    }
+
+    @Test
+    public void rejectsACardOnceItIsOverItsVelocityLimit() {
+        // Given
+        final var service = new BatchPaymentsService(velocityCheck(), fraudCheckerClient, transactionRepository, uuidGenerator,
+                Runnable::run, Runnable::run, 4) {
+            @Override
+            Date createTransactionDate() {
+                return now;
+            }
+        };
+        final var uuid3 = UUID.nameUUIDFromBytes("TEST-3".getBytes());
+        given(fraudCheckerClient.checkFraud(passingCard, order.amount)).willReturn(new FraudStatus("pass"));
+        given(uuidGenerator.generate()).willReturn(uuid1, uuid2, uuid3);
+
+        // When
+        final var results = service.makePayments(List.of(
+                new Payment(order, passingCard),
+                new Payment(order, passingCard),
+                new Payment(order, passingCard))).join();
+
+        // Then
+        assertThat(results, contains(
+                PaymentResult.completed(new TransactionReference(uuid1, now, "accepted")),
+                PaymentResult.completed(new TransactionReference(uuid2, now, "accepted")),
+                PaymentResult.completed(new TransactionReference(uuid3, now, "rejected"))));
+        verify(fraudCheckerClient, times(2)).checkFraud(passingCard, order.amount);
+    }
+
+    @Test
+    public void countsTheChargesOfBatchesAndStreamsAlike() {
+        // Given
+        final var service = new BatchPaymentsService(velocityCheck(), fraudCheckerClient, transactionRepository, uuidGenerator,
+                Runnable::run, Runnable::run, 4) {
+            @Override
+            Date createTransactionDate() {
+                return now;
+            }
+        };
+        given(fraudCheckerClient.checkFraud(passingCard, order.amount)).willReturn(new FraudStatus("pass"));
+        final var uuid3 = UUID.nameUUIDFromBytes("TEST-3".getBytes());
+        given(uuidGenerator.generate()).willReturn(uuid1, uuid2, uuid3);
+        service.makePayments(List.of(new Payment(order, passingCard))).join();
+
+        // When
+        final var results = service.makePayments(Flux.just(
+                new Payment(order, passingCard),
+                new Payment(order, passingCard)));
+
+        // Then
+        StepVerifier.create(results)
+                .expectNext(PaymentResult.completed(new TransactionReference(uuid2, now, "accepted")))
+                .expectNext(PaymentResult.completed(new TransactionReference(uuid3, now, "rejected")))
+                .verifyComplete();
+        verify(fraudCheckerClient, times(2)).checkFraud(passingCard, order.amount);
+    }
+
+    @Test
+    public void makesNoPaymentsForAnEmptyBatch() {
+        // When
+        final var results = batchPaymentsService.makePayments(List.of()).join();
+
+        // Then
+        assertThat(results.isEmpty(), is(true));
+    }
+
+    @Test
+    public void streamsOneResultPerPaymentInTheSameOrder() {
+        // Given
+        given(fraudCheckerClient.checkFraud(passingCard, order.amount)).willReturn(new FraudStatus("pass"));
+        given(fraudCheckerClient.checkFraud(failingCard, order.amount)).willThrow(new ResourceAccessException("Unreachable!"));
+        given(uuidGenerator.generate()).willReturn(uuid1);
+
+        // When
+        final var results = batchPaymentsService.makePayments(Flux.just(
+                new Payment(order, passingCard),
+                new Payment(order, failingCard)));
+
+        // Then
+        StepVerifier.create(results)
+                .expectNext(PaymentResult.completed(new TransactionReference(uuid1, now, "accepted")))
+                .expectNext(PaymentResult.failed(BatchPaymentsService.FRAUD_CHECK_FAILED))
+                .verifyComplete();
+    }
+
+    @Test
+    public void pullsNoMorePaymentsFromTheStreamThanItCanCheckConcurrently() {
+        // Given
+        given(fraudCheckerClient.checkFraud(passingCard, order.amount)).willReturn(new FraudStatus("pass"));
+        given(uuidGenerator.generate()).willAnswer(invocation -> UUID.randomUUID());
+        final var requested = new ArrayList<Long>();
+        final var payments = Flux.range(1, 10)
+                .map(i -> new Payment(order, passingCard))
+                .doOnRequest(requested::add);
+
+        // When
+        StepVerifier.create(batchPaymentsService.makePayments(payments), 0)
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+
+        // Then
+        assertThat(requested.get(0), is(4L));
+    }
+
+    @Test
+    public void checksNoMoreThanMaxConcurrencyAtOnceOnAVirtualThreadPerCheck() {
+        // Given
+        final var inFlight = new AtomicInteger();
+        final var mostInFlight = new AtomicInteger();
+        given(fraudCheckerClient.checkFraud(passingCard, order.amount)).willAnswer(invocation -> {
+            mostInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return new FraudStatus("pass");
+        });
+        given(uuidGenerator.generate()).willAnswer(invocation -> UUID.randomUUID());
+        final var payments = Collections.nCopies(20, new Payment(order, passingCard));
+
+        // When
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var service = new BatchPaymentsService(fraudCheckerClient, transactionRepository, uuidGenerator, executor, Runnable::run, 4);
+            final var results = service.makePayments(payments).join();
+
+            // Then
+            assertThat(results.size(), is(20));
+        }
+        assertThat(mostInFlight.get(), is(4));
+    }
+
+    @Test
+    public void savesTheBatchOffTheFraudCheckThreads() {
+        // Given
+        given(fraudCheckerClient.checkFraud(passingCard, order.amount)).willReturn(new FraudStatus("pass"));
+        given(uuidGenerator.generate()).willAnswer(invocation -> UUID.randomUUID());
+        final var savedOn = new ArrayList<String>();
+        given(transactionRepository.saveAll(any())).willAnswer(invocation -> {
+            savedOn.add(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+        final var fraudCheckExecutor = Executors.newFixedThreadPool(2, new CustomizableThreadFactory("fraud-check-"));
+        final var batchSaveExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("batch-save-"));
+
+        // When
+        try {
+            final var service = new BatchPaymentsService(fraudCheckerClient, transactionRepository, uuidGenerator,
+                    fraudCheckExecutor, batchSaveExecutor, 4);
+            service.makePayments(List.of(new Payment(order, passingCard), new Payment(order, passingCard))).join();
+            service.makePayments(Flux.just(new Payment(order, passingCard))).blockLast();
+        } finally {
+            fraudCheckExecutor.shutdown();
+            batchSaveExecutor.shutdown();
+        }
+
+        // Then
+        assertThat(savedOn, everyItem(startsWith("batch-save-")));
+        assertThat(savedOn.size(), is(2));
+    }
+
+    // Rejects a card past 2 charges a minute.
+    private VelocityCheck velocityCheck() {
+        return new VelocityCheck(List.of(new VelocityCheck.Limit("1m", Duration.ofMinutes(1), 2, "")),
+                true, 1000, 6, new SimpleMeterRegistry(), System::nanoTime);
+    }
+}
@@ -0,0 +1,264 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.*;
+import com.tsys.payments.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tag("UnitTest")
+class IdempotentPaymentsServiceSpecs {
+
+    private final CreditCard creditCard = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Order order = new Order("TEST-ORDER-ID", List.of(
+            new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10)));
+    private final TransactionReference reference =
+            new TransactionReference(UUID.nameUUIDFromBytes("TEST".getBytes()), Date.from(Instant.now()), "accepted");
+    private String requestHash;
+    @Mock
+    private PaymentsService paymentsService;
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    private IdempotentPaymentsService idempotentPaymentsService;
+
+    @BeforeEach
+    public void setup() {
+        idempotentPaymentsService = new IdempotentPaymentsService(paymentsService, idempotencyKeyRepository, 100, 60000, "SECRET");
+        requestHash = idempotentPaymentsService.requestHashOf(order, creditCard);
+    }
+
+    @Test
+    public void hashesTheRequestAlikeOnEveryInstanceWithTheSameSecret() {
+        // Given
+        final var anotherInstance = new IdempotentPaymentsService(paymentsService, idempotencyKeyRepository, 100, 60000, "SECRET");
+        final var underAnotherSecret = new IdempotentPaymentsService(paymentsService, idempotencyKeyRepository, 100, 60000, "OTHER-SECRET");
+
+        // Then
+        assertThat(anotherInstance.requestHashOf(order, creditCard), is(requestHash));
+        assertThat(underAnotherSecret.requestHashOf(order, creditCard), is(not(requestHash)));
+        assertThat(requestHash.length(), is(64));
+    }
+
+    @Test
+    public void shoutsWithoutARequestHashSecret() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new IdempotentPaymentsService(paymentsService, idempotencyKeyRepository, 100, 60000, " "));
+    }
+
+    @Test
+    public void makesPaymentAndRemembersTheKeyOnFirstRequest() {
+        // Given
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.empty());
+        given(paymentsService.makePayment(eq(order), eq(creditCard), any())).willAnswer(savingAlongside(Optional.of(reference)));
+
+        // When
+        final var transactionReference = idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+
+        // Then
+        assertThat(transactionReference, is(Optional.of(reference)));
+        verify(idempotencyKeyRepository).save(new IdempotencyKey("KEY-1", requestHash, reference));
+    }
+
+    @Test
+    public void replaysTheCachedResponseToARetry() {
+        // Given
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.empty());
+        given(paymentsService.makePayment(eq(order), eq(creditCard), any())).willAnswer(savingAlongside(Optional.of(reference)));
+        idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+
+        // When
+        final var transactionReference = idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+
+        // Then
+        assertThat(transactionReference, is(Optional.of(reference)));
+        verify(paymentsService, times(1)).makePayment(eq(order), eq(creditCard), any());
+        verify(idempotencyKeyRepository, times(1)).findById("KEY-1");
+    }
+
+    @Test
+    public void replaysTheStoredResponseForAKeyNoLongerCached() {
+        // Given
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.of(new IdempotencyKey("KEY-1", requestHash, reference)));
+
+        // When
+        final var transactionReference = idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+
+        // Then
+        assertThat(transactionReference, is(Optional.of(reference)));
+        verifyNoInteractions(paymentsService);
+    }
+
+    @Test
+    public void concurrentDuplicatesWaitForTheFirstRequest() throws Exception {
+        // Given
+        final var firstRequestIsInFlight = new CountDownLatch(1);
+        final var fraudCheckerAnswers = new CountDownLatch(1);
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.empty());
+        given(paymentsService.makePayment(eq(order), eq(creditCard), any())).willAnswer(invocation -> {
+            firstRequestIsInFlight.countDown();
+            fraudCheckerAnswers.await();
+            return savingAlongside(Optional.of(reference)).answer(invocation);
+        });
+        final var first = CompletableFuture.supplyAsync(() -> idempotentPaymentsService.makePayment("KEY-1", order, creditCard));
+        firstRequestIsInFlight.await();
+
+        // When
+        final var duplicate = CompletableFuture.supplyAsync(() -> idempotentPaymentsService.makePayment("KEY-1", order, creditCard));
+        fraudCheckerAnswers.countDown();
+
+        // Then
+        assertThat(duplicate.get(5, TimeUnit.SECONDS), is(Optional.of(reference)));
+        assertThat(first.get(5, TimeUnit.SECONDS), is(Optional.of(reference)));
+        verify(paymentsService, times(1)).makePayment(eq(order), eq(creditCard), any());
+    }
+
+    @Test
+    public void releasesTheKeyWhenPaymentCouldNotBeVerified() {
+        // Given
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.empty());
+        given(paymentsService.makePayment(eq(order), eq(creditCard), any()))
+                .willAnswer(savingAlongside(Optional.empty()))
+                .willAnswer(savingAlongside(Optional.of(reference)));
+
+        // When
+        final var unverified = idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+        final var retried = idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+
+        // Then
+        assertThat(unverified, is(Optional.empty()));
+        assertThat(retried, is(Optional.of(reference)));
+        verify(idempotencyKeyRepository, times(1)).save(any());
+    }
+
+    @Test
+    public void releasesTheKeyWhenPaymentFails() {
+        // Given
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.empty());
+        given(paymentsService.makePayment(eq(order), eq(creditCard), any()))
+                .willThrow(new ResourceAccessException("Unreachable!"))
+                .willAnswer(savingAlongside(Optional.of(reference)));
+
+        // When
+        assertThrows(ResourceAccessException.class, () -> idempotentPaymentsService.makePayment("KEY-1", order, creditCard));
+        final var retried = idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+
+        // Then
+        assertThat(retried, is(Optional.of(reference)));
+    }
+
+    @Test
+    public void refusesAStoredKeyReusedForADifferentPayment() {
+        // Given
+        final var otherOrder = new Order("OTHER-ORDER-ID", List.of(
+                new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10)));
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.of(new IdempotencyKey("KEY-1", requestHash, reference)));
+
+        // Then
+        assertThrows(IdempotencyKeyReusedException.class, () -> idempotentPaymentsService.makePayment("KEY-1", otherOrder, creditCard));
+        verifyNoInteractions(paymentsService);
+    }
+
+    @Test
+    public void refusesACachedKeyReusedForADifferentPayment() {
+        // Given
+        final var otherCard = CreditCardBuilder.make()
+                .withHolder("Jumping Jack")
+                .withIssuingBank("Bank of Test")
+                .withNumber("5555555555554444")
+                .withValidCVV()
+                .withFutureExpiryDate()
+                .build();
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.empty());
+        given(paymentsService.makePayment(eq(order), eq(creditCard), any())).willAnswer(savingAlongside(Optional.of(reference)));
+        idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+
+        // Then
+        assertThrows(IdempotencyKeyReusedException.class, () -> idempotentPaymentsService.makePayment("KEY-1", order, otherCard));
+        verify(paymentsService, times(1)).makePayment(any(Order.class), any(CreditCard.class), any());
+    }
+
+    @Test
+    public void replaysAStoredKeyThatHasNoRequestHashToAnyRequest() {
+        // Given
+        final var savedBeforeHashes = new IdempotencyKey("KEY-1", null, reference);
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.of(savedBeforeHashes));
+
+        // When
+        final var transactionReference = idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+
+        // Then
+        assertThat(transactionReference, is(Optional.of(reference)));
+    }
+
+    @Test
+    public void releasesTheKeyAndAnswersTheDuplicatesOnAnError() throws Exception {
+        // Given
+        final var firstRequestIsInFlight = new CountDownLatch(1);
+        final var duplicateIsWaiting = new CountDownLatch(1);
+        given(idempotencyKeyRepository.findById("KEY-1")).willReturn(Optional.empty());
+        given(paymentsService.makePayment(eq(order), eq(creditCard), any()))
+                .willAnswer(invocation -> {
+                    firstRequestIsInFlight.countDown();
+                    duplicateIsWaiting.await(5, TimeUnit.SECONDS);
+                    throw new AssertionError("Out of its mind!");
+                })
+                .willAnswer(savingAlongside(Optional.of(reference)));
+        final var first = CompletableFuture.supplyAsync(() -> idempotentPaymentsService.makePayment("KEY-1", order, creditCard));
+        firstRequestIsInFlight.await();
+
+        // When
+        final var duplicate = CompletableFuture.supplyAsync(() -> {
+            duplicateIsWaiting.countDown();
+            return idempotentPaymentsService.makePayment("KEY-1", order, creditCard);
+        });
+
+        // Then
+        final var failed = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThat(failed.getCause(), is(instanceOf(AssertionError.class)));
+        try {
+            assertThat(duplicate.get(5, TimeUnit.SECONDS), is(Optional.of(reference)));
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(AssertionError.class)));
+        }
+        assertThat(idempotentPaymentsService.makePayment("KEY-1", order, creditCard), is(Optional.of(reference)));
+    }
+
+    // Answers as PaymentsService does, saving the rows of its caller along
+    // with the transaction, when there is one.
+    @SuppressWarnings("unchecked")
+    private static Answer<Optional<TransactionReference>> savingAlongside(Optional<TransactionReference> transactionReference) {
+        return invocation -> {
+            transactionReference.ifPresent(invocation.<Consumer<TransactionReference>>getArgument(2));
+            return transactionReference;
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package com.tsys.payments.service.local;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@Tag("UnitTest")
+class LoadShedderSpecs {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoadShedder loadShedder = new LoadShedder(4, 1, 500, meterRegistry, now::get);
+
+    @Test
+    public void admitsUpToMaxInFlightPaymentsWhileTheyAreFast() {
+        // Given
+        for (int i = 0; i < 4; i++)
+            assertThat(loadShedder.tryAdmit().isPresent(), is(true));
+
+        // When
+        final var fifth = loadShedder.tryAdmit();
+
+        // Then
+        assertThat(fifth.isPresent(), is(false));
+        assertThat(meterRegistry.counter("payments.load_shedding.admitted").count(), is(4.0));
+        assertThat(meterRegistry.counter("payments.load_shedding.rejected").count(), is(1.0));
+    }
+
+    @Test
+    public void makesRoomAgainOncePaymentsAreMade() {
+        // Given
+        for (int i = 0; i < 3; i++)
+            loadShedder.tryAdmit();
+        final var last = loadShedder.tryAdmit().get();
+
+        // When
+        last.close();
+
+        // Then
+        assertThat(loadShedder.tryAdmit().isPresent(), is(true));
+    }
+
+    @Test
+    public void shrinksTheLimitAsPaymentsSlowDown() {
+        // When
+        makePaymentTaking(1000);
+
+        // Then
+        assertThat(loadShedder.limit(), is(2));
+        assertThat(meterRegistry.get("payments.load_shedding.limit").gauge().value(), is(2.0));
+    }
+
+    @Test
+    public void neverShrinksTheLimitBelowMinInFlight() {
+        // When
+        makePaymentTaking(60000);
+
+        // Then
+        assertThat(loadShedder.limit(), is(1));
+    }
+
+    @Test
+    public void asksToRetryAfterAboutAsLongAsAPaymentTakes() {
+        // Given
+        assertThat(loadShedder.retryAfter(), is(Duration.ofSeconds(1)));
+
+        // When
+        makePaymentTaking(3000);
+
+        // Then
+        assertThat(loadShedder.retryAfter(), is(Duration.ofSeconds(3)));
+    }
+
+    private void makePaymentTaking(long millis) {
+        final var permit = loadShedder.tryAdmit().get();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        permit.close();
+    }
+}
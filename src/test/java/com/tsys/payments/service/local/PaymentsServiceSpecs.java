@@ -3,6 +3,8 @@ package com.tsys.payments.service.local;
 import com.tsys.payments.domain.*;
 import com.tsys.payments.repository.TransactionRepository;
 import com.tsys.payments.service.remote.FraudCheckerClient;
+import com.tsys.payments.utils.Deadline;
+import com.tsys.payments.utils.DeadlineExceededException;
 import com.tsys.payments.utils.IdGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -10,15 +12,21 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,12 +49,14 @@ class PaymentsServiceSpecs {
     @Mock
     private TransactionRepository transactionRepository;
     @Mock
+    private TransactionsService transactionsService;
+    @Mock
     private IdGenerator<UUID> uuidGenerator;
     private PaymentsService paymentsService;
 
     @BeforeEach
     public void setup() {
-        paymentsService = new PaymentsService(fraudCheckerClient, transactionRepository, uuidGenerator) {
+        paymentsService = new PaymentsService(fraudCheckerClient, transactionRepository, transactionsService, uuidGenerator) {
 
             @Override
             Date createTransactionDate() {
@@ -146,4 +156,113 @@ class PaymentsServiceSpecs {
         // Then
         verify(transactionRepository, never()).save(any(Transaction.class));
     }
+
+    @Test
+    public void remembersSavedTransactionForPollingMerchants() {
+        // Given
+        FraudStatus pass = new FraudStatus("pass");
+        given(fraudCheckerClient.checkFraud(validCard, amount)).willReturn(pass);
+        given(uuidGenerator.generate()).willReturn(uuid);
+
+        // When
+        paymentsService.makePayment(new Order("TEST-ORDER-ID", List.of(
+                new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10))
+        ), validCard);
+
+        // Then
+        verify(transactionsService).remember(new Transaction(uuid, now, "accepted", "TEST-ORDER-ID", amount));
+    }
+
+    @Test
+    public void usesTheTransactionIdGivenUpFront() {
+        // Given
+        FraudStatus pass = new FraudStatus("pass");
+        given(fraudCheckerClient.checkFraud(validCard, amount)).willReturn(pass);
+
+        // When
+        final Optional<TransactionReference> transactionReference = paymentsService.makePayment(uuid, new Order("TEST-ORDER-ID", List.of(
+                new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10))
+        ), validCard);
+
+        // Then
+        assertThat(transactionReference, is(Optional.of(new TransactionReference(uuid, now, "accepted"))));
+        verify(uuidGenerator, never()).generate();
+    }
+
+    @Test
+    public void doesNotCallFraudCheckerForPaymentsThePreScreenDecides() {
+        // Given
+        final var preScreenedPaymentsService = new PaymentsService((order, card) -> Optional.of(new FraudStatus("fail")),
+                fraudCheckerClient, transactionRepository, transactionsService, uuidGenerator);
+
+        // When
+        final Optional<TransactionReference> transactionReference = preScreenedPaymentsService.makePayment(uuid, new Order("TEST-ORDER-ID", List.of(
+                new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10))
+        ), validCard);
+
+        // Then
+        assertThat(transactionReference.get().status, is("rejected"));
+        verify(fraudCheckerClient, never()).checkFraud(any(CreditCard.class), any(Money.class));
+        verify(transactionRepository).save(any(Transaction.class));
+    }
+
+    @Test
+    public void savesNothingOnceTheDeadlineHasPassed() {
+        // Given
+        final var deadline = Deadline.after(Duration.ofMillis(50));
+        given(fraudCheckerClient.checkFraud(validCard, amount)).willAnswer(invocation -> {
+            Thread.sleep(100);
+            return new FraudStatus("pass");
+        });
+        final var order = new Order("TEST-ORDER-ID", List.of(
+                new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10)));
+
+        // When
+        assertThrows(DeadlineExceededException.class, () -> deadline.run(() -> paymentsService.makePayment(uuid, order, validCard)));
+
+        // Then
+        verifyNoInteractions(transactionRepository, transactionsService);
+    }
+
+    @Test
+    public void savesRowsOfTheCallerInTheSameTransactionAsThePayment() {
+        // Given
+        final var inTransaction = new AtomicBoolean();
+        final var savedInTransaction = new ArrayList<String>();
+        final TransactionOperations transactionOperations = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                inTransaction.set(true);
+                try {
+                    return action.doInTransaction(null);
+                } finally {
+                    inTransaction.set(false);
+                }
+            }
+        };
+        final var transactionalPaymentsService = new PaymentsService(PaymentPreScreen.NONE, fraudCheckerClient,
+                transactionRepository, transactionsService, uuidGenerator, transactionOperations);
+        given(fraudCheckerClient.checkFraud(validCard, amount)).willAnswer(invocation -> {
+            assertThat(inTransaction.get(), is(false));
+            return new FraudStatus("pass");
+        });
+        given(transactionRepository.save(any(Transaction.class))).willAnswer(invocation -> {
+            if (inTransaction.get())
+                savedInTransaction.add("transaction");
+            return invocation.getArgument(0);
+        });
+        given(uuidGenerator.generate()).willReturn(uuid);
+
+        // When
+        final var transactionReference = transactionalPaymentsService.makePayment(new Order("TEST-ORDER-ID", List.of(
+                new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10))
+        ), validCard, reference -> {
+            if (inTransaction.get())
+                savedInTransaction.add(reference.status);
+        });
+
+        // Then
+        assertThat(transactionReference.get().id, is(uuid));
+        assertThat(savedInTransaction, is(List.of("transaction", "accepted")));
+    }
 }
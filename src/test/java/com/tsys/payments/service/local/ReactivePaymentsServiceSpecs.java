@@ -0,0 +1,126 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.*;
+import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.service.remote.ReactiveFraudCheckerClient;
+import com.tsys.payments.utils.IdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tag("UnitTest")
+class ReactivePaymentsServiceSpecs {
+
+    private final Date now = Date.from(Instant.now());
+    private final UUID uuid = UUID.nameUUIDFromBytes("TEST".getBytes());
+    private final Money amount = new Money(Currency.getInstance("INR"), 1235.45d);
+    private final CreditCard validCard = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Order order = new Order("TEST-ORDER-ID", List.of(
+            new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance("INR"), 123.545), 10)));
+    @Mock
+    private ReactiveFraudCheckerClient fraudCheckerClient;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private IdGenerator<UUID> uuidGenerator;
+    private ReactivePaymentsService paymentsService;
+
+    @BeforeEach
+    public void setup() {
+        paymentsService = new ReactivePaymentsService(fraudCheckerClient, transactionRepository, uuidGenerator, Schedulers.immediate()) {
+            @Override
+            Date createTransactionDate() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void emitsAcceptedTransactionReferenceWhenFraudCheckPasses() {
+        // Given
+        given(fraudCheckerClient.checkFraud(validCard, amount)).willReturn(Mono.just(new FraudStatus("pass")));
+        given(uuidGenerator.generate()).willReturn(uuid);
+
+        // When-Then
+        StepVerifier.create(paymentsService.makePayment(order, validCard))
+                .expectNext(new TransactionReference(uuid, now, "accepted"))
+                .verifyComplete();
+        verify(transactionRepository).save(any(Transaction.class));
+    }
+
+    @Test
+    public void emitsRejectedTransactionReferenceWhenFraudCheckFails() {
+        // Given
+        given(fraudCheckerClient.checkFraud(validCard, amount)).willReturn(Mono.just(new FraudStatus("fail")));
+        given(uuidGenerator.generate()).willReturn(uuid);
+
+        // When-Then
+        StepVerifier.create(paymentsService.makePayment(order, validCard))
+                .expectNext(new TransactionReference(uuid, now, "rejected"))
+                .verifyComplete();
+        verify(transactionRepository).save(any(Transaction.class));
+    }
+
+    @Test
+    public void takesTheVerdictOfThePreScreenWithoutAskingTheFraudChecker() {
+        // Given
+        final var screened = new ReactivePaymentsService((order, creditCard) -> Optional.of(new FraudStatus("fail")),
+                fraudCheckerClient, transactionRepository, uuidGenerator, Schedulers.immediate()) {
+            @Override
+            Date createTransactionDate() {
+                return now;
+            }
+        };
+        given(uuidGenerator.generate()).willReturn(uuid);
+
+        // When-Then
+        StepVerifier.create(screened.makePayment(order, validCard))
+                .expectNext(new TransactionReference(uuid, now, "rejected"))
+                .verifyComplete();
+        verify(fraudCheckerClient, never()).checkFraud(any(), any());
+    }
+
+    @Test
+    public void completesEmptyWithoutSavingWhenFraudCheckIsSuspicious() {
+        // Given
+        given(fraudCheckerClient.checkFraud(validCard, amount)).willReturn(Mono.just(new FraudStatus("suspicious")));
+
+        // When-Then
+        StepVerifier.create(paymentsService.makePayment(order, validCard))
+                .verifyComplete();
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    public void propagatesFraudCheckerErrorsWithoutSaving() {
+        // Given
+        given(fraudCheckerClient.checkFraud(validCard, amount)).willReturn(Mono.error(new IllegalStateException("Unreachable!")));
+
+        // When-Then
+        StepVerifier.create(paymentsService.makePayment(order, validCard))
+                .verifyError(IllegalStateException.class);
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+}
@@ -0,0 +1,184 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Item;
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.domain.Order;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Currency;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("UnitTest")
+class RuleBasedPaymentPreScreenSpecs {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CreditCard validCard = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+
+    @Test
+    public void leavesPaymentsNoRuleDecidesToTheFraudChecker() {
+        // Given
+        final var preScreen = preScreen("5123", "INR,USD", "INR:100000", "INR:100");
+
+        // When
+        final var fraudStatus = preScreen.screen(order("INR", 1000), validCard);
+
+        // Then
+        assertThat(fraudStatus, is(Optional.empty()));
+    }
+
+    @Test
+    public void rejectsExpiredCards() {
+        // Given
+        final var preScreen = preScreen("", "", "", "");
+        final var expiredCard = CreditCardBuilder.make()
+                .withHolder("Jumping Jack")
+                .withIssuingBank("Bank of Test")
+                .withValidNumber()
+                .withValidCVV()
+                .withPastExpiryDate()
+                .build();
+
+        // When
+        final var fraudStatus = preScreen.screen(order("INR", 1000), expiredCard);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("fail"));
+        assertThat(meterRegistry.counter("payments.pre_screen.decided", "rule", "expired", "verdict", "fail").count(), is(1.0));
+    }
+
+    @Test
+    public void rejectsCurrenciesNotAllowed() {
+        // Given
+        final var preScreen = preScreen("", "INR,USD", "", "");
+
+        // When
+        final var fraudStatus = preScreen.screen(order("JPY", 1000), validCard);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("fail"));
+    }
+
+    @Test
+    public void rejectsCardsWithinBlockedBinRanges() {
+        // Given
+        final var preScreen = preScreen("400000-400099, 4485-4485", "", "", "");
+
+        // When
+        final var fraudStatus = preScreen.screen(order("INR", 1000), validCard);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("fail"));
+        assertThat(meterRegistry.counter("payments.pre_screen.decided", "rule", "blocked_bin", "verdict", "fail").count(), is(1.0));
+    }
+
+    @Test
+    public void findsTheBlockedBinRangeAmongMany() {
+        // Given
+        final var preScreen = preScreen("3, 4485284, 4485285-4485299, 5000-5999", "", "", "");
+        final var cardJustOutside = CreditCardBuilder.make()
+                .withHolder("Jumping Jack")
+                .withIssuingBank("Bank of Test")
+                .withNumber("4485 3000 0000 0000")
+                .withValidCVV()
+                .withFutureExpiryDate()
+                .build();
+
+        // When
+        final var blocked = preScreen.screen(order("INR", 1000), validCard);
+        final var notBlocked = preScreen.screen(order("INR", 1000), cardJustOutside);
+
+        // Then
+        assertThat(blocked.get().overall, is("fail"));
+        assertThat(notBlocked, is(Optional.empty()));
+    }
+
+    @Test
+    public void rejectsAmountsAboveTheLimitForTheirCurrency() {
+        // Given
+        final var preScreen = preScreen("", "", "INR:100000,USD:2000", "");
+
+        // When
+        final var aboveLimit = preScreen.screen(order("USD", 2500), validCard);
+        final var noLimit = preScreen.screen(order("EUR", 2500), validCard);
+
+        // Then
+        assertThat(aboveLimit.get().overall, is("fail"));
+        assertThat(noLimit, is(Optional.empty()));
+    }
+
+    @Test
+    public void passesSmallAmountsOnlyWhenNoRuleRejectsThem() {
+        // Given
+        final var preScreen = preScreen("4485", "", "", "INR:100");
+
+        // When
+        final var fraudStatus = preScreen.screen(order("INR", 10), validCard);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("fail"));
+    }
+
+    @Test
+    public void passesSmallAmounts() {
+        // Given
+        final var preScreen = preScreen("", "", "", "INR:100");
+
+        // When
+        final var fraudStatus = preScreen.screen(order("INR", 10), validCard);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("pass"));
+        assertThat(fraudStatus.get().makeTransaction(null, null, "TEST-ORDER-ID", null).get().status, is("accepted"));
+    }
+
+    @Test
+    public void measuresTheShareOfPaymentsDecidedLocally() {
+        // Given
+        final var preScreen = preScreen("", "", "", "INR:100");
+
+        // When
+        preScreen.screen(order("INR", 10), validCard);
+        preScreen.screen(order("INR", 1000), validCard);
+        preScreen.screen(order("INR", 1000), validCard);
+        preScreen.screen(order("INR", 1000), validCard);
+
+        // Then
+        assertThat(meterRegistry.counter("payments.pre_screen.screened").count(), is(4.0));
+        assertThat(meterRegistry.get("payments.pre_screen.skip_rate").gauge().value(), is(closeTo(0.25, 0.001)));
+    }
+
+    @Test
+    public void refusesRulesItCannotCompile() {
+        assertThrows(IllegalArgumentException.class, () -> preScreen("44x5", "", "", ""));
+        assertThrows(IllegalArgumentException.class, () -> preScreen("4499-4400", "", "", ""));
+        assertThrows(IllegalArgumentException.class, () -> preScreen("", "XYZ", "", ""));
+        assertThrows(IllegalArgumentException.class, () -> preScreen("", "", "INR=100", ""));
+    }
+
+    private RuleBasedPaymentPreScreen preScreen(String blockedBins, String allowedCurrencies, String rejectAbove, String passBelow) {
+        return new RuleBasedPaymentPreScreen(true, blockedBins, allowedCurrencies, rejectAbove, passBelow,
+                meterRegistry, System::currentTimeMillis);
+    }
+
+    private Order order(String currency, double amount) {
+        return new Order("TEST-ORDER-ID", List.of(
+                new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance(currency), amount), 1)));
+    }
+}
@@ -0,0 +1,162 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.domain.Transaction;
+import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.utils.TimeOrderedUUIDGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tag("UnitTest")
+class TransactionsServiceSpecs {
+
+    private final UUID uuid = UUID.nameUUIDFromBytes("TEST".getBytes());
+    private final Transaction transaction = new Transaction(uuid, Date.from(Instant.now()), "accepted", "TEST-ORDER-ID",
+            new Money(Currency.getInstance("INR"), 1235.45d));
+    @Mock
+    private TransactionRepository transactionRepository;
+    private final AtomicLong now = new AtomicLong();
+    private TransactionsService transactionsService;
+
+    @BeforeEach
+    public void setup() {
+        transactionsService = new TransactionsService(transactionRepository, 100, 60000, 2000, now::get);
+    }
+
+    @Test
+    public void findsRememberedTransactionsWithoutReadingTheRepository() {
+        // Given
+        transactionsService.remember(transaction);
+
+        // When
+        final var byId = transactionsService.findById(uuid);
+
+        // Then
+        assertThat(byId, is(Optional.of(transaction)));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    public void readsTheLatestTransactionOfAnOrderFromTheRepository() {
+        // Given
+        final var retried = new Transaction(UUID.randomUUID(), Date.from(Instant.now()), "accepted", "TEST-ORDER-ID",
+                new Money(Currency.getInstance("INR"), 1235.45d));
+        given(transactionRepository.findById(uuid)).willReturn(Optional.of(transaction));
+        transactionsService.findById(uuid);
+        given(transactionRepository.findFirstByOrderIdOrderByDateDesc("TEST-ORDER-ID")).willReturn(Optional.of(retried));
+
+        // When
+        final var byOrderId = transactionsService.findByOrderId("TEST-ORDER-ID");
+
+        // Then
+        assertThat(byOrderId, is(Optional.of(retried)));
+        assertThat(transactionsService.findById(retried.id), is(Optional.of(retried)));
+        verify(transactionRepository, times(1)).findFirstByOrderIdOrderByDateDesc("TEST-ORDER-ID");
+    }
+
+    @Test
+    public void answersPollsForAnOrderFromMemoryUntilOrderTtlIsUp() {
+        // Given
+        final var retried = new Transaction(UUID.randomUUID(), Date.from(Instant.now()), "accepted", "TEST-ORDER-ID",
+                new Money(Currency.getInstance("INR"), 1235.45d));
+        given(transactionRepository.findFirstByOrderIdOrderByDateDesc("TEST-ORDER-ID")).willReturn(Optional.of(transaction), Optional.of(retried));
+        transactionsService.findByOrderId("TEST-ORDER-ID");
+
+        // When
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1999));
+        final var withinOrderTtl = transactionsService.findByOrderId("TEST-ORDER-ID");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        final var afterOrderTtl = transactionsService.findByOrderId("TEST-ORDER-ID");
+
+        // Then
+        assertThat(withinOrderTtl, is(Optional.of(transaction)));
+        assertThat(afterOrderTtl, is(Optional.of(retried)));
+        verify(transactionRepository, times(2)).findFirstByOrderIdOrderByDateDesc("TEST-ORDER-ID");
+    }
+
+    @Test
+    public void answersTheTransactionJustSavedAsTheLatestOfItsOrder() {
+        // Given
+        given(transactionRepository.findFirstByOrderIdOrderByDateDesc("TEST-ORDER-ID")).willReturn(Optional.of(
+                new Transaction(UUID.randomUUID(), Date.from(Instant.now()), "rejected", "TEST-ORDER-ID",
+                        new Money(Currency.getInstance("INR"), 1235.45d))));
+        transactionsService.findByOrderId("TEST-ORDER-ID");
+
+        // When
+        transactionsService.remember(transaction);
+
+        // Then
+        assertThat(transactionsService.findByOrderId("TEST-ORDER-ID"), is(Optional.of(transaction)));
+        verify(transactionRepository, times(1)).findFirstByOrderIdOrderByDateDesc("TEST-ORDER-ID");
+    }
+
+    @Test
+    public void readsThroughToTheRepositoryOnlyOnce() {
+        // Given
+        given(transactionRepository.findById(uuid)).willReturn(Optional.of(transaction));
+
+        // When
+        transactionsService.findById(uuid);
+        final var found = transactionsService.findById(uuid);
+
+        // Then
+        assertThat(found, is(Optional.of(transaction)));
+        verify(transactionRepository, times(1)).findById(uuid);
+    }
+
+    @Test
+    public void doesNotCacheTransactionsNotFound() {
+        // Given
+        given(transactionRepository.findFirstByOrderIdOrderByDateDesc("TEST-ORDER-ID")).willReturn(Optional.empty(), Optional.of(transaction));
+
+        // When
+        final var beforePayment = transactionsService.findByOrderId("TEST-ORDER-ID");
+        final var afterPayment = transactionsService.findByOrderId("TEST-ORDER-ID");
+
+        // Then
+        assertThat(beforePayment, is(Optional.empty()));
+        assertThat(afterPayment, is(Optional.of(transaction)));
+    }
+
+    @Test
+    public void findsTransactionsMadeInASpanOfTimeLeavingOutRandomIds() {
+        // Given
+        final var from = Instant.parse("2024-06-01T10:00:00Z");
+        final var to = from.plusSeconds(60);
+        final var timeOrdered = new Transaction(TimeOrderedUUIDGenerator.lowestAt(from.plusSeconds(1)), Date.from(from), "accepted", "TIME-ORDERED",
+                new Money(Currency.getInstance("INR"), 10d));
+        final var random = new Transaction(UUID.randomUUID(), Date.from(from), "accepted", "RANDOM",
+                new Money(Currency.getInstance("INR"), 10d));
+        given(transactionRepository.findAllByIdRange(TimeOrderedUUIDGenerator.lowestAt(from),
+                TimeOrderedUUIDGenerator.lowestAt(to), PageRequest.of(0, 50))).willReturn(List.of(random, timeOrdered));
+
+        // When
+        final var made = transactionsService.findMadeBetween(from, to, 50);
+
+        // Then
+        assertThat(made, is(List.of(timeOrdered)));
+    }
+}
@@ -0,0 +1,183 @@
+package com.tsys.payments.service.local;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Item;
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.domain.Order;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Currency;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@Tag("UnitTest")
+class VelocityCheckSpecs {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toNanos(1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<VelocityCheck.Limit> limits = List.of(
+            new VelocityCheck.Limit("1m", Duration.ofMinutes(1), 2, ""),
+            new VelocityCheck.Limit("1h", Duration.ofHours(1), 0, "INR:1000"));
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+
+    @Test
+    public void leavesPaymentsWithinTheLimitsToTheFraudChecker() {
+        // Given
+        final var velocityCheck = velocityCheck(true);
+
+        // When
+        final var first = velocityCheck.screen(order("INR", 100), card);
+        final var second = velocityCheck.screen(order("INR", 100), card);
+
+        // Then
+        assertThat(first, is(Optional.empty()));
+        assertThat(second, is(Optional.empty()));
+    }
+
+    @Test
+    public void rejectsTooManyChargesOnACardWithinAWindow() {
+        // Given
+        final var velocityCheck = velocityCheck(true);
+        velocityCheck.screen(order("INR", 100), card);
+        velocityCheck.screen(order("INR", 100), card);
+
+        // When
+        final var fraudStatus = velocityCheck.screen(order("INR", 100), card);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("fail"));
+        assertThat(meterRegistry.counter("payments.velocity.exceeded", "window", "1m", "action", "reject").count(), is(1.0));
+    }
+
+    @Test
+    public void countsTheCardWhateverElseComesWithItsNumber() {
+        // Given
+        final var velocityCheck = velocityCheck(true);
+        velocityCheck.screen(order("INR", 100), card);
+        velocityCheck.screen(order("INR", 100), new CreditCard("4485 2847 2013 4093", "Someone Else", "Bank of Test", card.validUntil, 999));
+
+        // When
+        final var fraudStatus = velocityCheck.screen(order("INR", 100), card);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("fail"));
+    }
+
+    @Test
+    public void countsTheChargesOnACardWhateverTheirCurrency() {
+        // Given
+        final var velocityCheck = velocityCheck(true);
+        velocityCheck.screen(order("INR", 100), card);
+        velocityCheck.screen(order("USD", 1), card);
+
+        // When
+        final var fraudStatus = velocityCheck.screen(order("EUR", 1), card);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("fail"));
+        assertThat(meterRegistry.counter("payments.velocity.exceeded", "window", "1m", "action", "reject").count(), is(1.0));
+    }
+
+    @Test
+    public void sumsTheMoneyChargedOnACardPerCurrency() {
+        // Given
+        final var velocityCheck = velocityCheck(true);
+        velocityCheck.screen(order("USD", 600), card);
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+
+        // When
+        final var fraudStatus = velocityCheck.screen(order("INR", 500), card);
+
+        // Then
+        assertThat(fraudStatus, is(Optional.empty()));
+        assertThat(velocityCheck.velocity(card, Currency.getInstance("INR")).get("1h").count, is(2L));
+        assertThat(velocityCheck.velocity(card, Currency.getInstance("INR")).get("1h").amount, is(50000L));
+    }
+
+    @Test
+    public void rejectsTooMuchMoneyChargedOnACardWithinAWindow() {
+        // Given
+        final var velocityCheck = velocityCheck(true);
+        velocityCheck.screen(order("INR", 600), card);
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+
+        // When
+        final var fraudStatus = velocityCheck.screen(order("INR", 500), card);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("fail"));
+        assertThat(meterRegistry.counter("payments.velocity.exceeded", "window", "1h", "action", "reject").count(), is(1.0));
+    }
+
+    @Test
+    public void flagsPaymentsOverTheLimitsAsSuspiciousWhenNotRejecting() {
+        // Given
+        final var velocityCheck = velocityCheck(false);
+        velocityCheck.screen(order("INR", 100), card);
+        velocityCheck.screen(order("INR", 100), card);
+
+        // When
+        final var fraudStatus = velocityCheck.screen(order("INR", 100), card);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("suspicious"));
+        assertThat(fraudStatus.get().makeTransaction(null, null, "TEST-ORDER-ID", null), is(Optional.empty()));
+    }
+
+    @Test
+    public void tellsHowManyChargesWereMadeOnACard() {
+        // Given
+        final var velocityCheck = velocityCheck(true);
+        velocityCheck.screen(order("INR", 100.5), card);
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        velocityCheck.screen(order("INR", 200), card);
+
+        // When
+        final var velocity = velocityCheck.velocity(card, Currency.getInstance("INR"));
+
+        // Then
+        assertThat(velocity.get("1m").count, is(1L));
+        assertThat(velocity.get("1h").count, is(2L));
+        assertThat(velocity.get("1h").amount, is(30050L));
+    }
+
+    @Test
+    public void asksPreScreensInTurnUntilOneDecides() {
+        // Given
+        final var velocityCheck = velocityCheck(true);
+        final var preScreen = PaymentPreScreen.firstOf(List.of(velocityCheck,
+                (order, creditCard) -> Optional.of(new FraudStatus("pass"))));
+
+        // When
+        final var fraudStatus = preScreen.screen(order("INR", 100), card);
+
+        // Then
+        assertThat(fraudStatus.get().overall, is("pass"));
+        assertThat(velocityCheck.velocity(card, Currency.getInstance("INR")).get("1m").count, is(1L));
+    }
+
+    private VelocityCheck velocityCheck(boolean reject) {
+        return new VelocityCheck(limits, reject, 1000, 6, meterRegistry, now::get);
+    }
+
+    private Order order(String currency, double amount) {
+        return new Order("TEST-ORDER-ID", List.of(
+                new Item(1L, "Dant Kanti Toothpaste", new Money(Currency.getInstance(currency), amount), 1)));
+    }
+}
@@ -0,0 +1,122 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("UnitTest")
+class CachingFraudCheckerClientSpecs {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Money inr10 = new Money(Currency.getInstance("INR"), 10d);
+    private final Money inr40 = new Money(Currency.getInstance("INR"), 40d);
+    @Mock
+    private FraudCheckerClient fraudCheckerClient;
+    private CachingFraudCheckerClient cachingFraudCheckerClient;
+
+    @BeforeEach
+    public void setup() {
+        cachingFraudCheckerClient = new CachingFraudCheckerClient(fraudCheckerClient, 100, Duration.ofSeconds(60), 50, meterRegistry, now::get);
+    }
+
+    @Test
+    public void answersARepeatChargeInTheSameBandFromTheCache() {
+        // Given
+        given(fraudCheckerClient.checkFraud(card, inr10)).willReturn(new FraudStatus("pass"));
+        cachingFraudCheckerClient.checkFraud(card, inr10);
+
+        // When
+        final var fraudStatus = cachingFraudCheckerClient.checkFraud(card, inr40);
+
+        // Then
+        assertThat(fraudStatus.overall, is("pass"));
+        verify(fraudCheckerClient, times(1)).checkFraud(card, inr10);
+        assertThat(meterRegistry.counter("payments.fraud_checker.cache.hits").count(), is(1.0));
+        assertThat(meterRegistry.counter("payments.fraud_checker.cache.misses").count(), is(1.0));
+        assertThat(meterRegistry.get("payments.fraud_checker.cache.hit_ratio").gauge().value(), is(0.5));
+    }
+
+    @Test
+    public void checksAChargeInAnotherBandOrCurrencyAgain() {
+        // Given
+        final var inr60 = new Money(Currency.getInstance("INR"), 60d);
+        final var usd10 = new Money(Currency.getInstance("USD"), 10d);
+        given(fraudCheckerClient.checkFraud(card, inr10)).willReturn(new FraudStatus("pass"));
+        given(fraudCheckerClient.checkFraud(card, inr60)).willReturn(new FraudStatus("pass"));
+        given(fraudCheckerClient.checkFraud(card, usd10)).willReturn(new FraudStatus("pass"));
+        cachingFraudCheckerClient.checkFraud(card, inr10);
+
+        // When
+        cachingFraudCheckerClient.checkFraud(card, inr60);
+        cachingFraudCheckerClient.checkFraud(card, usd10);
+
+        // Then
+        verify(fraudCheckerClient).checkFraud(card, inr60);
+        verify(fraudCheckerClient).checkFraud(card, usd10);
+    }
+
+    @Test
+    public void neverCachesVerdictsOtherThanPass() {
+        // Given
+        given(fraudCheckerClient.checkFraud(card, inr10)).willReturn(new FraudStatus("suspicious"));
+        cachingFraudCheckerClient.checkFraud(card, inr10);
+
+        // When
+        final var fraudStatus = cachingFraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("suspicious"));
+        verify(fraudCheckerClient, times(2)).checkFraud(card, inr10);
+    }
+
+    @Test
+    public void checksAgainOnceThePassVerdictHasExpired() {
+        // Given
+        given(fraudCheckerClient.checkFraud(card, inr10)).willReturn(new FraudStatus("pass"));
+        cachingFraudCheckerClient.checkFraud(card, inr10);
+
+        // When
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        cachingFraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        verify(fraudCheckerClient, times(2)).checkFraud(card, inr10);
+    }
+
+    @Test
+    public void leavesFallbackToTheDecoratedClient() {
+        // Given
+        given(fraudCheckerClient.checkFraudFallback(card, inr10)).willReturn(new FraudStatus("unverified"));
+
+        // When-Then
+        assertThat(cachingFraudCheckerClient.checkFraudFallback(card, inr10).overall, is("unverified"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Currency;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("UnitTest")
+class CoalescingFraudCheckerClientSpecs {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Money inr10 = new Money(Currency.getInstance("INR"), 10d);
+    private final CountDownLatch answer = new CountDownLatch(1);
+    @Mock
+    private FraudCheckerClient fraudCheckerClient;
+
+    @Test
+    public void sharesOneFraudCheckerCallBetweenIdenticalChecksInFlight() throws Exception {
+        // Given
+        final var coalescingFraudCheckerClient = new CoalescingFraudCheckerClient(fraudCheckerClient, meterRegistry);
+        given(fraudCheckerClient.checkFraud(card, inr10)).willAnswer(invocation -> {
+            answer.await();
+            return new FraudStatus("pass");
+        });
+        final var first = CompletableFuture.supplyAsync(() -> coalescingFraudCheckerClient.checkFraud(card, inr10));
+        awaitInFlight();
+
+        // When
+        final var second = CompletableFuture.supplyAsync(() -> coalescingFraudCheckerClient.checkFraud(card, inr10));
+        awaitCoalesced();
+        answer.countDown();
+
+        // Then
+        assertThat(first.get().overall, is("pass"));
+        assertThat(second.get().overall, is("pass"));
+        verify(fraudCheckerClient, times(1)).checkFraud(card, inr10);
+        assertThat(meterRegistry.get("payments.fraud_checker.coalescing.ratio").gauge().value(), is(0.5));
+    }
+
+    @Test
+    public void takesEachJoinedCheckUnverifiedOnItsOwn() throws Exception {
+        // Given
+        final var coalescingFraudCheckerClient = new CoalescingFraudCheckerClient(fraudCheckerClient, meterRegistry);
+        given(fraudCheckerClient.checkFraud(card, inr10)).willAnswer(invocation -> {
+            answer.await();
+            return new FraudStatus(FraudCheckFallbackPolicy.UNVERIFIED);
+        });
+        given(fraudCheckerClient.checkFraudFallback(card, inr10)).willReturn(FraudStatus.EMPTY);
+        final var first = CompletableFuture.supplyAsync(() -> coalescingFraudCheckerClient.checkFraud(card, inr10));
+        awaitInFlight();
+
+        // When
+        final var second = CompletableFuture.supplyAsync(() -> coalescingFraudCheckerClient.checkFraud(card, inr10));
+        awaitCoalesced();
+        answer.countDown();
+
+        // Then
+        assertThat(first.get().overall, is(FraudCheckFallbackPolicy.UNVERIFIED));
+        assertThat(second.get(), is(FraudStatus.EMPTY));
+        verify(fraudCheckerClient, times(1)).checkFraud(card, inr10);
+        verify(fraudCheckerClient, times(1)).checkFraudFallback(card, inr10);
+    }
+
+    @Test
+    public void sharesTheFailureToo() throws Exception {
+        // Given
+        final var coalescingFraudCheckerClient = new CoalescingFraudCheckerClient(fraudCheckerClient, meterRegistry);
+        given(fraudCheckerClient.checkFraud(card, inr10)).willAnswer(invocation -> {
+            answer.await();
+            throw new ResourceAccessException("Unreachable!");
+        });
+        final var first = CompletableFuture.supplyAsync(() -> coalescingFraudCheckerClient.checkFraud(card, inr10));
+        awaitInFlight();
+
+        // When
+        final var second = CompletableFuture.supplyAsync(() -> coalescingFraudCheckerClient.checkFraud(card, inr10));
+        awaitCoalesced();
+        answer.countDown();
+
+        // Then
+        final var failure = assertThrows(CompletionException.class, second::join);
+        assertThat(failure.getCause(), instanceOf(ResourceAccessException.class));
+        assertThrows(CompletionException.class, first::join);
+    }
+
+    @Test
+    public void sharesAnErrorAndForgetsTheCheckInFlight() throws Exception {
+        // Given
+        final var coalescingFraudCheckerClient = new CoalescingFraudCheckerClient(fraudCheckerClient, meterRegistry);
+        given(fraudCheckerClient.checkFraud(card, inr10)).willAnswer(invocation -> {
+            answer.await();
+            throw new AssertionError("Broken stub");
+        });
+        final var first = CompletableFuture.supplyAsync(() -> coalescingFraudCheckerClient.checkFraud(card, inr10));
+        awaitInFlight();
+
+        // When
+        final var second = CompletableFuture.supplyAsync(() -> coalescingFraudCheckerClient.checkFraud(card, inr10));
+        awaitCoalesced();
+        answer.countDown();
+
+        // Then
+        final var failure = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertThat(failure.getCause(), instanceOf(AssertionError.class));
+        assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThat(meterRegistry.get("payments.fraud_checker.coalescing.in_flight").gauge().value(), is(0.0));
+    }
+
+    @Test
+    public void callsTheFraudCheckerAgainOnceTheCheckInFlightIsAnswered() {
+        // Given
+        final var coalescingFraudCheckerClient = new CoalescingFraudCheckerClient(fraudCheckerClient, meterRegistry);
+        given(fraudCheckerClient.checkFraud(card, inr10)).willReturn(new FraudStatus("pass"));
+
+        // When
+        coalescingFraudCheckerClient.checkFraud(card, inr10);
+        coalescingFraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        verify(fraudCheckerClient, times(2)).checkFraud(card, inr10);
+        assertThat(meterRegistry.get("payments.fraud_checker.coalescing.in_flight").gauge().value(), is(0.0));
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        while (meterRegistry.get("payments.fraud_checker.coalescing.in_flight").gauge().value() < 1)
+            Thread.sleep(5);
+    }
+
+    private void awaitCoalesced() throws InterruptedException {
+        while (meterRegistry.counter("payments.fraud_checker.coalescing.coalesced").count() < 1)
+            Thread.sleep(5);
+    }
+}
@@ -0,0 +1,186 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Currency;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("UnitTest")
+class ConcurrencyLimitingFraudCheckerClientSpecs {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Money inr10 = new Money(Currency.getInstance("INR"), 10d);
+    private final CountDownLatch answer = new CountDownLatch(1);
+    @Mock
+    private FraudCheckerClient fraudCheckerClient;
+
+    @AfterEach
+    public void answerFraudChecksInFlight() {
+        answer.countDown();
+    }
+
+    @Test
+    public void rejectsFastOnceTheLimitIsReachedAndNoQueueingIsAllowed() throws Exception {
+        // Given
+        final var limitingClient = limitingClient(2, 2, 0, Duration.ZERO);
+        givenFraudCheckerAnswersWhenReleased();
+        CompletableFuture.runAsync(() -> limitingClient.checkFraud(card, inr10));
+        CompletableFuture.runAsync(() -> limitingClient.checkFraud(card, inr10));
+        awaitInFlight(2);
+
+        // When
+        final var fraudStatus = limitingClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus, is(sameInstance(FraudStatus.EMPTY)));
+        verify(fraudCheckerClient, times(2)).checkFraud(card, inr10);
+        verify(fraudCheckerClient, never()).checkFraudFallback(card, inr10);
+        assertThat(meterRegistry.counter("payments.fraud_checker.concurrency.rejected").count(), is(1.0));
+    }
+
+    @Test
+    public void queuesBrieflyForRoomToCheckFraud() throws Exception {
+        // Given
+        final var limitingClient = limitingClient(1, 1, 1, Duration.ofSeconds(5));
+        givenFraudCheckerAnswersWhenReleased();
+        final var first = CompletableFuture.supplyAsync(() -> limitingClient.checkFraud(card, inr10));
+        awaitInFlight(1);
+
+        // When
+        final var second = CompletableFuture.supplyAsync(() -> limitingClient.checkFraud(card, inr10));
+        while (meterRegistry.get("payments.fraud_checker.concurrency.queued").gauge().value() < 1)
+            Thread.sleep(5);
+        answer.countDown();
+
+        // Then
+        assertThat(first.get().overall, is("pass"));
+        assertThat(second.get().overall, is("pass"));
+        verify(fraudCheckerClient, never()).checkFraudFallback(card, inr10);
+    }
+
+    @Test
+    public void cutsTheLimitWhenTheFraudCheckerSlowsDown() {
+        // Given
+        final var limitingClient = limitingClient(10, 20, 0, Duration.ZERO);
+        givenFraudCheckerTakes(10, 100);
+
+        // When
+        limitingClient.checkFraud(card, inr10);
+        limitingClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(limitingClient.limit(), is(closeTo(9.0, 0.001)));
+        assertThat(meterRegistry.get("payments.fraud_checker.concurrency.limit").gauge().value(), is(closeTo(9.0, 0.001)));
+    }
+
+    @Test
+    public void cutsTheLimitWhenTheFraudCheckFails() {
+        // Given
+        final var limitingClient = limitingClient(10, 20, 0, Duration.ZERO);
+        given(fraudCheckerClient.checkFraud(card, inr10)).willThrow(new ResourceAccessException("Unreachable!"));
+
+        // When
+        assertThrows(ResourceAccessException.class, () -> limitingClient.checkFraud(card, inr10));
+
+        // Then
+        assertThat(limitingClient.limit(), is(closeTo(9.0, 0.001)));
+    }
+
+    @Test
+    public void cutsTheLimitOnlyOnceForFailuresWithinARoundTrip() {
+        // Given
+        final var limitingClient = limitingClient(10, 20, 0, Duration.ZERO);
+        final var calls = new AtomicLong();
+        given(fraudCheckerClient.checkFraud(card, inr10)).willAnswer(invocation -> {
+            if (calls.getAndIncrement() == 0)
+                now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            throw new ResourceAccessException("Unreachable!");
+        });
+
+        // When
+        for (int i = 0; i < 5; i++)
+            assertThrows(ResourceAccessException.class, () -> limitingClient.checkFraud(card, inr10));
+
+        // Then
+        assertThat(limitingClient.limit(), is(closeTo(9.0, 0.001)));
+
+        // When
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThrows(ResourceAccessException.class, () -> limitingClient.checkFraud(card, inr10));
+
+        // Then
+        assertThat(limitingClient.limit(), is(closeTo(8.1, 0.001)));
+    }
+
+    @Test
+    public void raisesTheLimitWhileFraudChecksAreTimelyAndTheLimitIsInUse() {
+        // Given
+        final var limitingClient = limitingClient(2, 20, 0, Duration.ZERO);
+        givenFraudCheckerTakes(10, 10);
+
+        // When
+        limitingClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(limitingClient.limit(), is(closeTo(2.5, 0.001)));
+    }
+
+    private ConcurrencyLimitingFraudCheckerClient limitingClient(int initialLimit, int maxLimit, int maxQueueSize, Duration maxQueueTime) {
+        return new ConcurrencyLimitingFraudCheckerClient(fraudCheckerClient, initialLimit, 1, maxLimit, 2.0, 0.9,
+                maxQueueSize, maxQueueTime, meterRegistry, now::get);
+    }
+
+    private void givenFraudCheckerAnswersWhenReleased() {
+        given(fraudCheckerClient.checkFraud(card, inr10)).willAnswer(invocation -> {
+            answer.await();
+            return new FraudStatus("pass");
+        });
+    }
+
+    private void givenFraudCheckerTakes(long firstMillis, long thenMillis) {
+        final var calls = new AtomicLong();
+        given(fraudCheckerClient.checkFraud(card, inr10)).willAnswer(invocation -> {
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(calls.getAndIncrement() == 0 ? firstMillis : thenMillis));
+            return new FraudStatus("pass");
+        });
+    }
+
+    private void awaitInFlight(int fraudChecks) throws InterruptedException {
+        while (meterRegistry.get("payments.fraud_checker.concurrency.in_flight").gauge().value() < fraudChecks)
+            Thread.sleep(5);
+    }
+}
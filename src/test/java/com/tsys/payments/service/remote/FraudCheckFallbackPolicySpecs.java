@@ -0,0 +1,145 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Currency;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("UnitTest")
+class FraudCheckFallbackPolicySpecs {
+
+    private static final Currency INR = Currency.getInstance("INR");
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toNanos(1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // INR 2500 or USD 40 taken unverified a minute, counted in 6 buckets of 10s.
+    private final FraudCheckFallbackPolicy fallbackPolicy = new FraudCheckFallbackPolicy("test.fallback",
+            "INR:1000,USD:15", "INR:2500,USD:40", Duration.ofMinutes(1), 6, meterRegistry, now::get);
+
+    @Test
+    public void takesPaymentsBelowTheLimitOfTheirCurrencyUnverified() {
+        // When
+        final var inr = fallbackPolicy.decide(card, new Money(INR, 999d));
+        final var usd = fallbackPolicy.decide(card, new Money(USD, 14.99));
+
+        // Then
+        assertThat(inr.overall, is("unverified"));
+        assertThat(usd.overall, is("unverified"));
+        assertThat(fallbackPolicy.exposure(INR), is(99900L));
+        assertThat(fallbackPolicy.exposure(USD), is(1499L));
+        assertThat(meterRegistry.counter("test.fallback.decisions", "outcome", "taken").count(), is(2.0));
+    }
+
+    @Test
+    public void takesNothingAtOrAboveTheLimitNorInCurrenciesWithoutOne() {
+        // When
+        final var usd = fallbackPolicy.decide(card, new Money(USD, 15d));
+        final var eur = fallbackPolicy.decide(card, new Money(Currency.getInstance("EUR"), 1d));
+
+        // Then
+        assertThat(usd, is(sameInstance(FraudStatus.EMPTY)));
+        assertThat(eur, is(sameInstance(FraudStatus.EMPTY)));
+        assertThat(fallbackPolicy.exposure(USD), is(0L));
+        assertThat(meterRegistry.counter("test.fallback.decisions", "outcome", "over_amount").count(), is(2.0));
+    }
+
+    @Test
+    public void stopsTakingPaymentsOnceTheirSumWouldGoOverTheExposure() {
+        // Given
+        fallbackPolicy.decide(card, new Money(INR, 900d));
+        fallbackPolicy.decide(card, new Money(INR, 900d));
+
+        // When
+        final var overExposure = fallbackPolicy.decide(card, new Money(INR, 900d));
+        final var withinExposure = fallbackPolicy.decide(card, new Money(INR, 700d));
+
+        // Then
+        assertThat(overExposure, is(sameInstance(FraudStatus.EMPTY)));
+        assertThat(withinExposure.overall, is("unverified"));
+        assertThat(fallbackPolicy.exposure(INR), is(250000L));
+        assertThat(meterRegistry.get("test.fallback.exposure").tag("currency", "INR").gauge().value(), is(250000.0));
+        assertThat(meterRegistry.counter("test.fallback.decisions", "outcome", "over_exposure").count(), is(1.0));
+    }
+
+    @Test
+    public void forgetsWhatWasTakenOnceItSlidesOutOfTheWindow() {
+        // Given
+        fallbackPolicy.decide(card, new Money(INR, 900d));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        fallbackPolicy.decide(card, new Money(INR, 900d));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        // When
+        final var exposure = fallbackPolicy.exposure(INR);
+        final var fraudStatus = fallbackPolicy.decide(card, new Money(INR, 900d));
+
+        // Then
+        assertThat(exposure, is(90000L));
+        assertThat(fraudStatus.overall, is("unverified"));
+
+        // When
+        now.addAndGet(TimeUnit.MINUTES.toNanos(5));
+
+        // Then
+        assertThat(fallbackPolicy.exposure(INR), is(0L));
+    }
+
+    @Test
+    public void doesNotOvershootTheExposureUnderConcurrentFallbacks() throws InterruptedException {
+        // Given
+        final var threads = 8;
+        final var executor = Executors.newFixedThreadPool(threads);
+        final var start = new CountDownLatch(1);
+        final var taken = new AtomicInteger();
+
+        // When
+        for (int i = 0; i < threads; i++)
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 100; j++)
+                    if (fallbackPolicy.decide(card, new Money(INR, 10d)).overall.equals("unverified"))
+                        taken.incrementAndGet();
+            });
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(taken.get(), is(250));
+        assertThat(fallbackPolicy.exposure(INR), is(250000L));
+    }
+
+    @Test
+    public void shoutsForANonPositiveWindow() {
+        assertThrows(IllegalArgumentException.class, () -> new FraudCheckFallbackPolicy("test.fallback",
+                "INR:1000", "INR:2500", Duration.ZERO, 6, meterRegistry));
+    }
+}
@@ -0,0 +1,118 @@
+package com.tsys.payments.service.remote;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for the FraudChecker's /check, /check/batch and /ping,
+ * for tests and benchmarks.
+ * <p>
+ * Cards whose number ends in 0000 are suspicious, all others pass.  Every
+ * request is answered after the given delay, however many checks it has,
+ * and the number of /check requests, and of checks in each /check/batch
+ * request, is recorded.
+ * <p>
+ * To run it on its own, e.g. for a load test against the application:
+ * java ... FraudCheckerBatchStub port delayMillis
+ */
+public class FraudCheckerBatchStub {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger checks = new AtomicInteger();
+    private final long delayMillis;
+    private final HttpServer server;
+    private volatile int failWithStatus;
+
+    public FraudCheckerBatchStub(int port, long delayMillis) throws IOException {
+        this.delayMillis = delayMillis;
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 1000);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/check/batch", this::checkBatch);
+        server.createContext("/check", this::check);
+        server.createContext("/ping", this::ping);
+    }
+
+    public static void main(String[] args) throws IOException {
+        final var stub = new FraudCheckerBatchStub(Integer.parseInt(args[0]), Long.parseLong(args[1]));
+        stub.start();
+        System.out.printf("FraudChecker stub listening on %s%n", stub.baseUrl());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public List<Integer> batchSizes() {
+        return batchSizes;
+    }
+
+    public int checks() {
+        return checks.get();
+    }
+
+    public void failWithStatus(int status) {
+        failWithStatus = status;
+    }
+
+    private void check(HttpExchange exchange) throws IOException {
+        checks.incrementAndGet();
+        final var payload = objectMapper.readTree(exchange.getRequestBody());
+        respond(exchange, objectMapper.writeValueAsBytes(fraudStatusOf(payload)));
+    }
+
+    private void checkBatch(HttpExchange exchange) throws IOException {
+        final var payloads = objectMapper.readTree(exchange.getRequestBody());
+        batchSizes.add(payloads.size());
+        final var fraudStatuses = new ArrayList<JsonNode>(payloads.size());
+        payloads.forEach(payload -> fraudStatuses.add(fraudStatusOf(payload)));
+        respond(exchange, objectMapper.writeValueAsBytes(fraudStatuses));
+    }
+
+    private void ping(HttpExchange exchange) throws IOException {
+        respond(exchange, "pong".getBytes());
+    }
+
+    private JsonNode fraudStatusOf(JsonNode payload) {
+        final var number = payload.path("creditCard").path("number").asText();
+        final var overall = number.endsWith("0000") ? "suspicious" : "pass";
+        return objectMapper.createObjectNode()
+                .put("cvvStatus", "pass")
+                .put("avStatus", overall.equals("pass") ? "pass" : "incorrect address")
+                .put("overall", overall);
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        try (exchange) {
+            TimeUnit.MILLISECONDS.sleep(delayMillis);
+            if (failWithStatus != 0) {
+                exchange.sendResponseHeaders(failWithStatus, -1);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.utils.SlidingWindowCircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Currency;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("UnitTest")
+class FraudCheckerClientWithCircuitBreakerPatternSpecs {
+
+    private final URI fraudCheckUri = URI.create("http://localhost:9001/check");
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Money inr10 = new Money(Currency.getInstance("INR"), 10d);
+    private final SlidingWindowCircuitBreaker circuitBreaker = new SlidingWindowCircuitBreaker("test.breaker",
+            Duration.ofSeconds(10), 2, 50, 100, Duration.ofSeconds(10), Duration.ofSeconds(30), 1,
+            new SimpleMeterRegistry());
+    private final FraudCheckFallbackPolicy fallbackPolicy = new FraudCheckFallbackPolicy("test.fallback",
+            "INR:1000", "INR:100000", Duration.ofMinutes(1), 6, new SimpleMeterRegistry());
+    @Mock
+    private RestTemplate restTemplate;
+    private FraudCheckerClientWithCircuitBreakerPattern fraudCheckerClient;
+
+    @BeforeEach
+    public void setup() {
+        fraudCheckerClient = new FraudCheckerClientWithCircuitBreakerPattern("http://localhost", 9001, restTemplate, circuitBreaker, fallbackPolicy);
+    }
+
+    @Test
+    public void fallsBackWhenTheFraudCheckerCannotBeReached() {
+        // Given
+        given(restTemplate.postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class)))
+                .willThrow(new ResourceAccessException("Unreachable!"));
+
+        // When
+        final var fraudStatus = fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("unverified"));
+    }
+
+    @Test
+    public void takesNothingUnverifiedOverTheFallbackLimit() {
+        // Given
+        given(restTemplate.postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class)))
+                .willThrow(new ResourceAccessException("Unreachable!"));
+
+        // When
+        final var fraudStatus = fraudCheckerClient.checkFraud(card, new Money(Currency.getInstance("INR"), 5000d));
+
+        // Then
+        assertThat(fraudStatus, is(FraudStatus.EMPTY));
+    }
+
+    @Test
+    public void stopsCallingTheFraudCheckerOnceTheCircuitOpens() {
+        // Given
+        given(restTemplate.postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class)))
+                .willThrow(new ResourceAccessException("Unreachable!"));
+        fraudCheckerClient.checkFraud(card, inr10);
+        fraudCheckerClient.checkFraud(card, inr10);
+
+        // When
+        final var fraudStatus = fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("unverified"));
+        assertThat(circuitBreaker.state(), is(SlidingWindowCircuitBreaker.State.OPEN));
+        verify(restTemplate, times(2)).postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class));
+    }
+
+    @Test
+    public void doesNotHoldBadRequestsAgainstTheFraudChecker() {
+        // Given
+        given(restTemplate.postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class)))
+                .willThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+        // When
+        assertThrows(HttpClientErrorException.class, () -> fraudCheckerClient.checkFraud(card, inr10));
+        assertThrows(HttpClientErrorException.class, () -> fraudCheckerClient.checkFraud(card, inr10));
+
+        // Then
+        assertThat(circuitBreaker.state(), is(SlidingWindowCircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void holdsAnythingElseThrownAgainstTheFraudChecker() {
+        // Given
+        given(restTemplate.postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class)))
+                .willThrow(new IllegalStateException("Garbled!"));
+
+        // When
+        assertThrows(IllegalStateException.class, () -> fraudCheckerClient.checkFraud(card, inr10));
+        assertThrows(IllegalStateException.class, () -> fraudCheckerClient.checkFraud(card, inr10));
+
+        // Then
+        assertThat(circuitBreaker.state(), is(SlidingWindowCircuitBreaker.State.OPEN));
+    }
+}
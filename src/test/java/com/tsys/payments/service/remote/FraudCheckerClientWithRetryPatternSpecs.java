@@ -0,0 +1,123 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.utils.Deadline;
+import com.tsys.payments.utils.RetryBudget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Currency;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("UnitTest")
+class FraudCheckerClientWithRetryPatternSpecs {
+
+    private final URI fraudCheckUri = URI.create("http://localhost:9001/check");
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Money inr10 = new Money(Currency.getInstance("INR"), 10d);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FraudCheckFallbackPolicy fallbackPolicy = new FraudCheckFallbackPolicy("test.fallback",
+            "INR:1000", "INR:100000", Duration.ofMinutes(1), 6, meterRegistry);
+    private final ResourceAccessException timedOut = new ResourceAccessException("Timed out!", new SocketTimeoutException("Read timed out"));
+    @Mock
+    private RestTemplate restTemplate;
+
+    @Test
+    public void retriesAFraudCheckThatTimedOut() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClient(retryBudget(1), 0);
+        given(restTemplate.postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class)))
+                .willThrow(timedOut)
+                .willReturn(new FraudStatus("pass"));
+
+        // When
+        final var fraudStatus = fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("pass"));
+        verify(restTemplate, times(2)).postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class));
+    }
+
+    @Test
+    public void fallsBackWithoutRetryingOnceTheRetryBudgetIsSpent() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClient(retryBudget(1), 0);
+        given(restTemplate.postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class)))
+                .willThrow(timedOut);
+
+        // When
+        final var first = fraudCheckerClient.checkFraud(card, inr10);
+        final var second = fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(first.overall, is("unverified"));
+        assertThat(second.overall, is("unverified"));
+        verify(restTemplate, times(3)).postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class));
+        assertThat(meterRegistry.counter("test.retry_budget.exhausted").count(), is(1.0));
+    }
+
+    @Test
+    public void doesNotRetryWhatDidNotTimeOut() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClient(retryBudget(1), 0);
+        given(restTemplate.postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class)))
+                .willThrow(new ResourceAccessException("Connection refused"));
+
+        // When
+        final var fraudStatus = fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("unverified"));
+        verify(restTemplate, times(1)).postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class));
+    }
+
+    @Test
+    public void doesNotBackOffPastTheRequestDeadline() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClient(retryBudget(1), 500);
+        given(restTemplate.postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class)))
+                .willThrow(timedOut);
+
+        // When
+        final var fraudStatus = Deadline.after(Duration.ofMillis(300)).run(() -> fraudCheckerClient.checkFraud(card, inr10));
+
+        // Then
+        assertThat(fraudStatus.overall, is("unverified"));
+        verify(restTemplate, times(1)).postForObject(eq(fraudCheckUri), any(), eq(FraudStatus.class));
+        assertThat(meterRegistry.counter("test.retry_budget.retries").count(), is(0.0));
+    }
+
+    private RetryBudget retryBudget(int maxTokens) {
+        return new RetryBudget("test.retry_budget", 0.1, 0, maxTokens, meterRegistry);
+    }
+
+    private FraudCheckerClientWithRetryPattern fraudCheckerClient(RetryBudget retryBudget, long backOffDelay) {
+        return new FraudCheckerClientWithRetryPattern("http://localhost", 9001, restTemplate, retryBudget, fallbackPolicy, 2, backOffDelay, backOffDelay);
+    }
+}
@@ -0,0 +1,159 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Currency;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+@Tag("IntegrationTest")
+class FraudCheckerLoadBalancerSpecs {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Money inr10 = new Money(Currency.getInstance("INR"), 10d);
+    private final RestTemplate pingRestTemplate = new RestTemplate();
+    private FraudCheckerBatchStub fraudChecker1;
+    private FraudCheckerBatchStub fraudChecker2;
+
+    @BeforeEach
+    public void startFraudCheckers() throws IOException {
+        fraudChecker1 = new FraudCheckerBatchStub(0, 0);
+        fraudChecker2 = new FraudCheckerBatchStub(0, 0);
+        fraudChecker1.start();
+        fraudChecker2.start();
+    }
+
+    @AfterEach
+    public void stopFraudCheckers() {
+        fraudChecker1.stop();
+        fraudChecker2.stop();
+    }
+
+    @Test
+    public void spreadsFraudChecksOverEveryEndpoint() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClientOver(loadBalancer(false));
+
+        // When
+        for (int i = 0; i < 40; i++)
+            fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudChecker1.checks(), is(greaterThan(0)));
+        assertThat(fraudChecker2.checks(), is(greaterThan(0)));
+        assertThat(fraudChecker1.checks() + fraudChecker2.checks(), is(40));
+    }
+
+    @Test
+    public void spreadsFraudChecksWithTwoRandomChoices() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClientOver(loadBalancer(true));
+
+        // When
+        for (int i = 0; i < 40; i++)
+            fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudChecker1.checks(), is(greaterThan(0)));
+        assertThat(fraudChecker2.checks(), is(greaterThan(0)));
+    }
+
+    @Test
+    public void ejectsAnEndpointThatKeepsFailing() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClientOver(loadBalancer(false));
+        fraudChecker2.failWithStatus(500);
+
+        // When
+        var failures = 0;
+        for (int i = 0; i < 40; i++) {
+            try {
+                fraudCheckerClient.checkFraud(card, inr10);
+            } catch (HttpServerErrorException e) {
+                failures++;
+            }
+        }
+
+        // Then
+        assertThat(failures, is(2));
+        assertThat(fraudChecker1.checks(), is(38));
+        assertThat(meterRegistry.counter("payments.fraud_checker.endpoints.ejections", "endpoint", fraudChecker2.baseUrl()).count(), is(1.0));
+    }
+
+    @Test
+    public void takesAnEndpointOutOfRotationWhileItsPingFails() {
+        // Given
+        final var loadBalancer = loadBalancer(false);
+        final var fraudCheckerClient = fraudCheckerClientOver(loadBalancer);
+        fraudChecker2.failWithStatus(503);
+
+        // When
+        loadBalancer.pingAll();
+        fraudChecker2.failWithStatus(0);
+        for (int i = 0; i < 10; i++)
+            fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudChecker2.checks(), is(0));
+        assertThat(meterRegistry.get("payments.fraud_checker.endpoints.available").tag("endpoint", fraudChecker2.baseUrl()).gauge().value(), is(0.0));
+
+        // When
+        loadBalancer.pingAll();
+
+        // Then
+        assertThat(meterRegistry.get("payments.fraud_checker.endpoints.available").tag("endpoint", fraudChecker2.baseUrl()).gauge().value(), is(1.0));
+    }
+
+    @Test
+    public void spreadsOverAllEndpointsRatherThanNone() {
+        // Given
+        final var loadBalancer = loadBalancer(false);
+        final var fraudCheckerClient = fraudCheckerClientOver(loadBalancer);
+        fraudChecker1.failWithStatus(503);
+        fraudChecker2.failWithStatus(503);
+        loadBalancer.pingAll();
+        fraudChecker1.failWithStatus(0);
+        fraudChecker2.failWithStatus(0);
+
+        // When
+        final var fraudStatus = fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("pass"));
+    }
+
+    private FraudCheckerLoadBalancer loadBalancer(boolean powerOfTwoChoices) {
+        return new FraudCheckerLoadBalancer(URI.create("http://fraud-checker:9001"),
+                List.of(URI.create(fraudChecker1.baseUrl()), URI.create(fraudChecker2.baseUrl())),
+                endpoint -> new DefaultFraudCheckerClient("http://" + endpoint.getHost(), endpoint.getPort(), pingRestTemplate)::ping,
+                powerOfTwoChoices, 2, Duration.ofSeconds(5), Duration.ofSeconds(30), meterRegistry);
+    }
+
+    private DefaultFraudCheckerClient fraudCheckerClientOver(FraudCheckerLoadBalancer loadBalancer) {
+        final var restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add(loadBalancer);
+        return new DefaultFraudCheckerClient("http://fraud-checker", 9001, restTemplate);
+    }
+}
@@ -0,0 +1,326 @@
+package com.tsys.payments.service.remote;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * A stand-in for the FraudChecker, serving /check, /check/batch and /ping,
+ * to load test the application against, and benchmark retries, circuit
+ * breaking and connection pooling, without the real one.
+ * <p>
+ * How it answers is set by a {@link Profile}, given as key=value pairs:
+ * <ul>
+ *   <li>latency - fixed:ms, lognormal:medianMs:sigma, or
+ *       bimodal:fastMs:slowMs:slowShare</li>
+ *   <li>errorRate, errorStatus - share of requests answered with that
+ *       status, 503 by default</li>
+ *   <li>timeoutRate, timeout - share of requests held for that many
+ *       millis, 60000 by default, before a 504, i.e. never answered as far
+ *       as a caller with a shorter read timeout is concerned</li>
+ *   <li>failRatio, suspiciousRatio - share of checks found "fail" or
+ *       "suspicious", the rest "pass"</li>
+ * </ul>
+ * The profile can be replaced while running, e.g. to brown out in the
+ * middle of a benchmark, with a PUT of the pairs, one per line, to
+ * /simulator/profile, and is shown by a GET.
+ * <p>
+ * It runs on Netty, and waits out latencies on timers rather than on
+ * threads, however long they are held.  On one core shared with the load
+ * client, it answered about 7,900 back-to-back checks per second over 64
+ * keep-alive connections.  To run it on its own:
+ * gradle fraudCheckerSimulator --args='port=9001 latency=lognormal:40:0.5 errorRate=0.01'
+ */
+public class FraudCheckerSimulator {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Map<String, byte[]> VERDICTS = Map.of(
+            "pass", verdict("pass", "pass"),
+            "fail", verdict("fail", "incorrect address"),
+            "suspicious", verdict("suspicious", "incorrect address"));
+
+    private final int port;
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private volatile Profile profile;
+    private DisposableServer server;
+
+    public FraudCheckerSimulator(int port, Profile profile) {
+        this.port = port;
+        this.profile = profile;
+    }
+
+    public static void main(String[] args) {
+        // Netty logs every request at DEBUG, which would cap the throughput.
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        final var settings = Profile.settingsOf(String.join("\n", args));
+        final var port = Integer.parseInt(settings.getOrDefault("port", "9001"));
+        final var simulator = new FraudCheckerSimulator(port, Profile.of(settings));
+        simulator.start();
+        System.out.printf("FraudChecker simulator listening on %s with %s%n", simulator.baseUrl(), simulator.profile());
+
+        final var reporter = Executors.newSingleThreadScheduledExecutor();
+        final var last = new long[3];
+        reporter.scheduleAtFixedRate(() -> {
+            final long checks = simulator.checks(), errors = simulator.errors(), timeouts = simulator.timeouts();
+            System.out.printf("%d checks/s, %d errors/s, %d timeouts/s%n",
+                    (checks - last[0]) / 10, (errors - last[1]) / 10, (timeouts - last[2]) / 10);
+            last[0] = checks;
+            last[1] = errors;
+            last[2] = timeouts;
+        }, 10, 10, TimeUnit.SECONDS);
+        simulator.server.onDispose().block();
+    }
+
+    public void start() {
+        server = HttpServer.create()
+                .host("localhost")
+                .port(port)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .route(routes -> routes
+                        .post("/check/batch", this::checkBatch)
+                        .post("/check", this::check)
+                        .get("/ping", (request, response) -> response.sendString(Mono.just("pong")))
+                        .get("/simulator/profile", (request, response) -> response.sendString(Mono.just(profile.toString())))
+                        .put("/simulator/profile", this::replaceProfile))
+                .bindNow();
+    }
+
+    public void stop() {
+        server.disposeNow();
+    }
+
+    public int port() {
+        return server.port();
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + port();
+    }
+
+    public Profile profile() {
+        return profile;
+    }
+
+    public void profile(Profile profile) {
+        this.profile = profile;
+    }
+
+    public long checks() {
+        return checks.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    private Publisher<Void> check(HttpServerRequest request, HttpServerResponse response) {
+        checks.increment();
+        // The body is not looked at, but read, so the connection is reused.
+        return request.receive().then(Mono.defer(() -> respond(response, () -> VERDICTS.get(profile.verdict()))));
+    }
+
+    private Publisher<Void> checkBatch(HttpServerRequest request, HttpServerResponse response) {
+        return request.receive().aggregate().asByteArray().flatMap(body -> {
+            final int size;
+            try {
+                size = OBJECT_MAPPER.readTree(body).size();
+            } catch (IOException e) {
+                return response.status(HttpResponseStatus.BAD_REQUEST).send().then();
+            }
+            checks.add(size);
+            return respond(response, () -> {
+                final var current = profile;
+                final var verdicts = new String[size];
+                for (int i = 0; i < size; i++)
+                    verdicts[i] = new String(VERDICTS.get(current.verdict()), StandardCharsets.UTF_8);
+                return ("[" + String.join(",", verdicts) + "]").getBytes(StandardCharsets.UTF_8);
+            });
+        });
+    }
+
+    private Publisher<Void> replaceProfile(HttpServerRequest request, HttpServerResponse response) {
+        return request.receive().aggregate().asString().defaultIfEmpty("").flatMap(settings -> {
+            try {
+                profile = Profile.of(Profile.settingsOf(settings));
+            } catch (IllegalArgumentException e) {
+                return response.status(HttpResponseStatus.BAD_REQUEST).sendString(Mono.just(e.getMessage())).then();
+            }
+            return response.sendString(Mono.just(profile.toString())).then();
+        });
+    }
+
+    private Mono<Void> respond(HttpServerResponse response, Supplier<byte[]> body) {
+        final var current = profile;
+        final var random = ThreadLocalRandom.current();
+        final var roll = random.nextDouble();
+        if (roll < current.timeoutRate) {
+            timeouts.increment();
+            return Mono.delay(current.timeout).then(Mono.defer(() -> response.status(HttpResponseStatus.GATEWAY_TIMEOUT).send().then()));
+        }
+        final var answer = roll < current.timeoutRate + current.errorRate
+                ? Mono.defer(() -> {
+                    errors.increment();
+                    return response.status(current.errorStatus).send().then();
+                })
+                : Mono.defer(() -> response
+                        .header("Content-Type", "application/json")
+                        .sendByteArray(Mono.just(body.get()))
+                        .then());
+        final var latencyNanos = current.latency.sampleNanos(random);
+        return latencyNanos <= 0 ? answer : Mono.delay(Duration.ofNanos(latencyNanos)).then(answer);
+    }
+
+    private static byte[] verdict(String overall, String avStatus) {
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(OBJECT_MAPPER.createObjectNode()
+                    .put("cvvStatus", "pass")
+                    .put("avStatus", avStatus)
+                    .put("overall", overall));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * How the simulator answers, see {@link FraudCheckerSimulator} for the
+     * settings.  Left out, a setting is 0, and latency fixed:0.
+     */
+    public static class Profile {
+        final Latency latency;
+        final double errorRate;
+        final int errorStatus;
+        final double timeoutRate;
+        final Duration timeout;
+        final double failRatio;
+        final double suspiciousRatio;
+        private final Map<String, String> settings;
+
+        private Profile(Map<String, String> settings) {
+            this.settings = settings;
+            this.latency = Latency.parse(settings.getOrDefault("latency", "fixed:0"));
+            this.errorRate = share(settings, "errorRate");
+            this.errorStatus = Integer.parseInt(settings.getOrDefault("errorStatus", "503"));
+            this.timeoutRate = share(settings, "timeoutRate");
+            this.timeout = Duration.ofMillis(Long.parseLong(settings.getOrDefault("timeout", "60000")));
+            this.failRatio = share(settings, "failRatio");
+            this.suspiciousRatio = share(settings, "suspiciousRatio");
+            if (errorRate + timeoutRate > 1 || failRatio + suspiciousRatio > 1)
+                throw new IllegalArgumentException(String.format("errorRate and timeoutRate, and failRatio and suspiciousRatio, can not add up to more than 1, were in %s", settings));
+        }
+
+        // e.g. Profile.of("latency=bimodal:20:800:0.05", "errorRate=0.01")
+        public static Profile of(String... settings) {
+            return of(settingsOf(String.join("\n", settings)));
+        }
+
+        static Profile of(Map<String, String> settings) {
+            return new Profile(settings);
+        }
+
+        static Map<String, String> settingsOf(String settings) {
+            return Arrays.stream(settings.split("[\\s&]+"))
+                    .filter(setting -> !setting.isBlank())
+                    .map(setting -> {
+                        final var keyValue = setting.split("=", 2);
+                        if (keyValue.length != 2)
+                            throw new IllegalArgumentException(String.format("Setting should be key=value, was %s", setting));
+                        return keyValue;
+                    })
+                    .collect(Collectors.toMap(keyValue -> keyValue[0].trim(), keyValue -> keyValue[1].trim(),
+                            (first, second) -> second, LinkedHashMap::new));
+        }
+
+        String verdict() {
+            final var roll = ThreadLocalRandom.current().nextDouble();
+            return roll < failRatio ? "fail" : roll < failRatio + suspiciousRatio ? "suspicious" : "pass";
+        }
+
+        private static double share(Map<String, String> settings, String key) {
+            final var share = Double.parseDouble(settings.getOrDefault(key, "0"));
+            if (share < 0 || share > 1)
+                throw new IllegalArgumentException(String.format("%s should be between 0 and 1, was %s", key, share));
+            return share;
+        }
+
+        @Override
+        public String toString() {
+            return settings.entrySet().stream()
+                    .map(setting -> setting.getKey() + "=" + setting.getValue())
+                    .collect(Collectors.joining("\n"));
+        }
+    }
+
+    /**
+     * Time taken to answer, drawn afresh for each request.
+     */
+    public interface Latency {
+        long sampleNanos(ThreadLocalRandom random);
+
+        static Latency parse(String latency) {
+            final var parts = latency.split(":");
+            try {
+                switch (parts[0]) {
+                    case "fixed":
+                        return fixed(millis(parts[1]));
+                    case "lognormal":
+                        return lognormal(millis(parts[1]), Double.parseDouble(parts[2]));
+                    case "bimodal":
+                        return bimodal(millis(parts[1]), millis(parts[2]), Double.parseDouble(parts[3]));
+                    default:
+                        break;
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                // Reported below, like an unknown distribution.
+            }
+            throw new IllegalArgumentException(String.format("latency should be fixed:ms, lognormal:medianMs:sigma or bimodal:fastMs:slowMs:slowShare, was %s", latency));
+        }
+
+        static Latency fixed(long nanos) {
+            return random -> nanos;
+        }
+
+        // Skewed like most service latencies: most near the median, with a
+        // long tail that grows with sigma.
+        static Latency lognormal(long medianNanos, double sigma) {
+            return random -> Math.round(medianNanos * Math.exp(sigma * random.nextGaussian()));
+        }
+
+        // Mostly fast, with a share slow, as with a cache miss, a GC pause
+        // or one bad instance behind a load balancer.
+        static Latency bimodal(long fastNanos, long slowNanos, double slowShare) {
+            return random -> random.nextDouble() < slowShare ? slowNanos : fastNanos;
+        }
+
+        private static long millis(String millis) {
+            return Math.round(Double.parseDouble(millis) * TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("IntegrationTest")
+class FraudCheckerSimulatorSpecs {
+
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Money inr10 = new Money(Currency.getInstance("INR"), 10d);
+    private final RestTemplate restTemplate = new RestTemplateBuilder()
+            .setReadTimeout(Duration.ofMillis(500))
+            .build();
+    private FraudCheckerSimulator simulator;
+
+    @AfterEach
+    public void stopSimulator() {
+        if (simulator != null)
+            simulator.stop();
+    }
+
+    @Test
+    public void answersChecksAndPings() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClientFor(FraudCheckerSimulator.Profile.of());
+
+        // When
+        final var fraudStatus = fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("pass"));
+        assertThat(fraudCheckerClient.ping(), is("pong"));
+        assertThat(simulator.checks(), is(1L));
+    }
+
+    @Test
+    public void findsChecksFailedOrSuspiciousInTheirRatios() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClientFor(FraudCheckerSimulator.Profile.of("failRatio=0.5", "suspiciousRatio=0.5"));
+
+        // When
+        final var verdicts = LongStream.range(0, 200)
+                .mapToObj(i -> fraudCheckerClient.checkFraud(card, inr10).overall)
+                .toArray(String[]::new);
+
+        // Then
+        assertThat(Arrays.stream(verdicts).filter("fail"::equals).count(), is(allOf(greaterThan(50L), lessThan(150L))));
+        assertThat(Arrays.stream(verdicts).filter("pass"::equals).count(), is(0L));
+    }
+
+    @Test
+    public void answersWithErrorsAndTimeoutsAsProfiled() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClientFor(FraudCheckerSimulator.Profile.of("errorRate=1", "errorStatus=502"));
+
+        // When
+        final var e = assertThrows(HttpServerErrorException.class, () -> fraudCheckerClient.checkFraud(card, inr10));
+
+        // Then
+        assertThat(e.getRawStatusCode(), is(502));
+
+        // When
+        simulator.profile(FraudCheckerSimulator.Profile.of("timeoutRate=1", "timeout=2000"));
+
+        // Then
+        assertThrows(ResourceAccessException.class, () -> fraudCheckerClient.checkFraud(card, inr10));
+        assertThat(simulator.timeouts(), is(1L));
+    }
+
+    @Test
+    public void takesItsProfileFromAPutWhileRunning() {
+        // Given
+        final var fraudCheckerClient = fraudCheckerClientFor(FraudCheckerSimulator.Profile.of());
+
+        // When
+        restTemplate.exchange(simulator.baseUrl() + "/simulator/profile", HttpMethod.PUT,
+                new HttpEntity<>("latency=fixed:100\nfailRatio=1"), String.class);
+        final var startedAt = System.nanoTime();
+        final var fraudStatus = fraudCheckerClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("fail"));
+        assertThat(System.nanoTime() - startedAt, is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100))));
+        assertThat(restTemplate.getForObject(simulator.baseUrl() + "/simulator/profile", String.class), is("latency=fixed:100\nfailRatio=1"));
+    }
+
+    @Test
+    public void drawsLatenciesFromTheProfiledDistribution() {
+        // Given
+        final var lognormal = FraudCheckerSimulator.Latency.parse("lognormal:40:0.5");
+        final var bimodal = FraudCheckerSimulator.Latency.parse("bimodal:20:800:0.1");
+        final var random = ThreadLocalRandom.current();
+
+        // When
+        final var lognormalMillis = LongStream.range(0, 10_000)
+                .map(i -> TimeUnit.NANOSECONDS.toMillis(lognormal.sampleNanos(random)))
+                .sorted()
+                .toArray();
+        final var slow = LongStream.range(0, 10_000)
+                .filter(i -> bimodal.sampleNanos(random) == TimeUnit.MILLISECONDS.toNanos(800))
+                .count();
+
+        // Then
+        assertThat(lognormalMillis[5_000], is(allOf(greaterThan(35L), lessThan(45L))));
+        assertThat(lognormalMillis[9_900], is(greaterThan(100L)));
+        assertThat(slow, is(allOf(greaterThan(800L), lessThan(1200L))));
+        assertThrows(IllegalArgumentException.class, () -> FraudCheckerSimulator.Latency.parse("gaussian:40"));
+    }
+
+    private DefaultFraudCheckerClient fraudCheckerClientFor(FraudCheckerSimulator.Profile profile) {
+        simulator = new FraudCheckerSimulator(0, profile);
+        simulator.start();
+        return new DefaultFraudCheckerClient("http://localhost", simulator.port(), restTemplate);
+    }
+}
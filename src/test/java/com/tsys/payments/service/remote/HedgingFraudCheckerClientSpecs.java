@@ -0,0 +1,131 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Currency;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("UnitTest")
+class HedgingFraudCheckerClientSpecs {
+
+    private static final int WINDOW = 10;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CreditCard card = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Money inr10 = new Money(Currency.getInstance("INR"), 10d);
+    private final AtomicBoolean nextIsSlow = new AtomicBoolean();
+    private final CountDownLatch slowAnswer = new CountDownLatch(1);
+    @Mock
+    private FraudCheckerClient fraudCheckerClient;
+
+    @AfterEach
+    public void answerSlowFraudCheck() {
+        slowAnswer.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void hedgesASlowFraudCheckAndTakesTheFirstAnswer() {
+        // Given
+        final var hedgingClient = hedgingClient(1.0);
+        givenFraudCheckerAnswersFastExceptWhenToldToBeSlow();
+        warmUp(hedgingClient);
+
+        // When
+        nextIsSlow.set(true);
+        final var fraudStatus = hedgingClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("pass"));
+        verify(fraudCheckerClient, times(WINDOW + 2)).checkFraud(card, inr10);
+        assertThat(meterRegistry.counter("payments.fraud_checker.hedging.hedges").count(), is(1.0));
+        assertThat(meterRegistry.counter("payments.fraud_checker.hedging.wins").count(), is(1.0));
+        assertThat(meterRegistry.get("payments.fraud_checker.hedging.win_rate").gauge().value(), is(1.0));
+    }
+
+    @Test
+    public void sendsNoHedgesUntilItKnowsHowLongFraudChecksTake() {
+        // Given
+        final var hedgingClient = hedgingClient(1.0);
+        given(fraudCheckerClient.checkFraud(card, inr10)).willAnswer(invocation -> {
+            Thread.sleep(100);
+            return new FraudStatus("pass");
+        });
+
+        // When
+        hedgingClient.checkFraud(card, inr10);
+
+        // Then
+        verify(fraudCheckerClient, times(1)).checkFraud(card, inr10);
+        assertThat(meterRegistry.counter("payments.fraud_checker.hedging.hedges").count(), is(0.0));
+    }
+
+    @Test
+    public void waitsForTheFirstAnswerOnceTheBudgetIsSpent() {
+        // Given
+        final var hedgingClient = hedgingClient(0.0);
+        givenFraudCheckerAnswersFastExceptWhenToldToBeSlow();
+        warmUp(hedgingClient);
+
+        // When
+        nextIsSlow.set(true);
+        executor.submit(() -> {
+            Thread.sleep(200);
+            slowAnswer.countDown();
+            return null;
+        });
+        final var fraudStatus = hedgingClient.checkFraud(card, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("fail"));
+        verify(fraudCheckerClient, times(WINDOW + 1)).checkFraud(card, inr10);
+        assertThat(meterRegistry.counter("payments.fraud_checker.hedging.budget_exhausted").count(), is(1.0));
+    }
+
+    private HedgingFraudCheckerClient hedgingClient(double budget) {
+        return new HedgingFraudCheckerClient(fraudCheckerClient, executor, 90, 50, WINDOW, budget, meterRegistry);
+    }
+
+    // The slow answer is fail, so that it can be told apart from the
+    // hedge's pass.
+    private void givenFraudCheckerAnswersFastExceptWhenToldToBeSlow() {
+        given(fraudCheckerClient.checkFraud(card, inr10)).willAnswer(invocation -> {
+            if (nextIsSlow.getAndSet(false)) {
+                slowAnswer.await();
+                return new FraudStatus("fail");
+            }
+            return new FraudStatus("pass");
+        });
+    }
+
+    private void warmUp(HedgingFraudCheckerClient hedgingClient) {
+        for (int i = 0; i < WINDOW; i++)
+            hedgingClient.checkFraud(card, inr10);
+    }
+}
@@ -0,0 +1,163 @@
+package com.tsys.payments.service.remote;
+
+import com.tsys.payments.domain.CreditCard;
+import com.tsys.payments.domain.CreditCardBuilder;
+import com.tsys.payments.domain.FraudStatus;
+import com.tsys.payments.domain.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@Tag("IntegrationTest")
+class MicroBatchingFraudCheckerClientSpecs {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CreditCard passingCard = CreditCardBuilder.make()
+            .withHolder("Jumping Jack")
+            .withIssuingBank("Bank of Test")
+            .withValidNumber()
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final CreditCard suspiciousCard = CreditCardBuilder.make()
+            .withHolder("Jumping Joe")
+            .withIssuingBank("Bank of Test")
+            .withNumber("4485-2847-2013-0000")
+            .withValidCVV()
+            .withFutureExpiryDate()
+            .build();
+    private final Money inr10 = new Money(Currency.getInstance("INR"), 10d);
+    private FraudCheckerBatchStub fraudChecker;
+
+    @BeforeEach
+    public void startFraudChecker() throws IOException {
+        fraudChecker = new FraudCheckerBatchStub(0, 10);
+        fraudChecker.start();
+    }
+
+    @AfterEach
+    public void stopFraudChecker() {
+        fraudChecker.stop();
+    }
+
+    @Test
+    public void sendsConcurrentFraudChecksAsOneBatchAndHandsBackEachStatus() {
+        // Given
+        final var client = microBatchingClient(4, Duration.ofSeconds(5));
+
+        // When
+        final var fraudStatuses = checkConcurrently(client, List.of(passingCard, suspiciousCard, passingCard, suspiciousCard));
+
+        // Then
+        assertThat(fraudChecker.batchSizes(), contains(4));
+        assertThat(fraudStatuses.get(0).overall, is("pass"));
+        assertThat(fraudStatuses.get(1).overall, is("suspicious"));
+        assertThat(fraudStatuses.get(2).overall, is("pass"));
+        assertThat(fraudStatuses.get(3).overall, is("suspicious"));
+        assertThat(meterRegistry.get("payments.fraud_checker.batch.size").summary().max(), is(4.0));
+    }
+
+    @Test
+    public void sendsAPartBatchOnceTheWindowIsOver() {
+        // Given
+        final var client = microBatchingClient(50, Duration.ofMillis(20));
+
+        // When
+        final var fraudStatus = client.checkFraud(suspiciousCard, inr10);
+
+        // Then
+        assertThat(fraudStatus.overall, is("suspicious"));
+        assertThat(fraudChecker.batchSizes(), contains(1));
+    }
+
+    @Test
+    public void opensANewBatchOnceOneIsFull() {
+        // Given
+        final var client = microBatchingClient(2, Duration.ofMillis(200));
+
+        // When
+        checkConcurrently(client, List.of(passingCard, passingCard, passingCard, passingCard, passingCard));
+
+        // Then
+        assertThat(fraudChecker.batchSizes(), containsInAnyOrder(2, 2, 1));
+        assertThat(meterRegistry.counter("payments.fraud_checker.batch.requests").count(), is(3.0));
+    }
+
+    @Test
+    public void makesEachFraudCheckOfAFailedBatchOnItsOwnThroughTheRemoteClient() {
+        // Given
+        fraudChecker.failWithStatus(500);
+        final var remote = mock(FraudCheckerClient.class);
+        given(remote.checkFraud(passingCard, inr10)).willReturn(new FraudStatus("unverified"));
+        given(remote.checkFraud(suspiciousCard, inr10)).willThrow(new IllegalStateException("Breaker open"));
+        final var client = microBatchingClient(remote, 2, Duration.ofSeconds(5));
+
+        // When
+        final var first = CompletableFuture.supplyAsync(() -> client.checkFraud(passingCard, inr10));
+        final var second = CompletableFuture.supplyAsync(() -> client.checkFraud(suspiciousCard, inr10));
+
+        // Then
+        assertThat(first.join().overall, is("unverified"));
+        assertThat(assertThrows(CompletionException.class, second::join).getCause(), instanceOf(IllegalStateException.class));
+        assertThat(fraudChecker.batchSizes(), contains(2));
+    }
+
+    @Test
+    public void completesEveryFraudCheckOfABatchThatFailsWithAnError() {
+        // Given
+        final var restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            throw new AssertionError("Broken interceptor");
+        });
+        final var client = new MicroBatchingFraudCheckerClient(mock(FraudCheckerClient.class), restTemplate,
+                URI.create(fraudChecker.baseUrl() + "/check/batch"), 2, Duration.ofSeconds(5), meterRegistry);
+
+        // When
+        final var first = CompletableFuture.supplyAsync(() -> client.checkFraud(passingCard, inr10));
+        final var second = CompletableFuture.supplyAsync(() -> client.checkFraud(suspiciousCard, inr10));
+
+        // Then
+        assertThat(assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause(), instanceOf(AssertionError.class));
+        assertThat(assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS)).getCause(), instanceOf(AssertionError.class));
+    }
+
+    private MicroBatchingFraudCheckerClient microBatchingClient(int maxBatchSize, Duration window) {
+        return microBatchingClient(mock(FraudCheckerClient.class), maxBatchSize, window);
+    }
+
+    private MicroBatchingFraudCheckerClient microBatchingClient(FraudCheckerClient remote, int maxBatchSize, Duration window) {
+        return new MicroBatchingFraudCheckerClient(remote, new RestTemplate(),
+                URI.create(fraudChecker.baseUrl() + "/check/batch"), maxBatchSize, window, meterRegistry);
+    }
+
+    private List<FraudStatus> checkConcurrently(FraudCheckerClient client, List<CreditCard> creditCards) {
+        final var fraudStatuses = new ArrayList<CompletableFuture<FraudStatus>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var creditCard : creditCards)
+                fraudStatuses.add(CompletableFuture.supplyAsync(() -> client.checkFraud(creditCard, inr10), executor));
+        }
+        return fraudStatuses.stream().map(CompletableFuture::join).toList();
+    }
+}
@@ -0,0 +1,90 @@
+package com.tsys.payments.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("UnitTest")
+class DeadlineSpecs {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toNanos(1));
+    private final Deadline deadline = Deadline.after(Duration.ofSeconds(2), now::get);
+
+    @Test
+    public void tellsWhatIsLeftUntilItPasses() {
+        // When
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+
+        // Then
+        assertThat(deadline.remaining(), is(Duration.ofMillis(500)));
+        assertThat(deadline.hasExpired(), is(false));
+
+        // When
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        // Then
+        assertThat(deadline.remaining(), is(Duration.ZERO));
+        assertThat(deadline.hasExpired(), is(true));
+    }
+
+    @Test
+    public void cutsTimeoutsDownToWhatIsLeftWhileBound() {
+        // Given
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        // When
+        final var timeouts = deadline.run(() -> new Duration[]{
+                Deadline.timeoutFor("test", Duration.ofSeconds(3)),
+                Deadline.timeoutFor("test", Duration.ofMillis(300))});
+
+        // Then
+        assertThat(timeouts[0], is(Duration.ofSeconds(1)));
+        assertThat(timeouts[1], is(Duration.ofMillis(300)));
+        assertThat(Deadline.timeoutFor("test", Duration.ofSeconds(3)), is(Duration.ofSeconds(3)));
+    }
+
+    @Test
+    public void givesUpStagesOnceItHasPassed() {
+        // Given
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        // When
+        final var e = assertThrows(DeadlineExceededException.class,
+                () -> deadline.run(() -> Deadline.timeoutFor("fraud check", Duration.ofSeconds(3))));
+
+        // Then
+        assertThat(e.getMessage(), is("Deadline passed before fraud check"));
+    }
+
+    @Test
+    public void isBoundToTheThreadOnlyWhileRunning() {
+        // Given
+        final var outer = Deadline.after(Duration.ofSeconds(10), now::get);
+
+        // When
+        final var bound = outer.run(() -> deadline.run(Deadline::current));
+
+        // Then
+        assertThat(bound, is(Optional.of(deadline)));
+        assertThat(outer.run(Deadline::current), is(Optional.of(outer)));
+        assertThat(Deadline.current(), is(Optional.empty()));
+    }
+
+    @Test
+    public void isCarriedOverToWorkOnAnotherThread() {
+        // When
+        final var carried = deadline.run(() -> CompletableFuture.supplyAsync(Deadline.carried(Deadline::current)));
+
+        // Then
+        assertThat(carried.join(), is(Optional.of(deadline)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.tsys.payments.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@Tag("UnitTest")
+public class ExpiringCacheSpecs {
+
+    private final AtomicLong now = new AtomicLong();
+    private final ExpiringCache<String, String> cache = new ExpiringCache<>(2, Duration.ofNanos(10), now::get);
+
+    @Test
+    public void returnsWhatWasPut() {
+        // When
+        cache.put("a", "A");
+
+        // Then
+        assertThat(cache.get("a"), is(Optional.of("A")));
+        assertThat(cache.get("b"), is(Optional.empty()));
+    }
+
+    @Test
+    public void forgetsEntriesOnceTheirTimeToLiveIsOver() {
+        // Given
+        cache.put("a", "A");
+
+        // When
+        now.addAndGet(10);
+
+        // Then
+        assertThat(cache.get("a"), is(Optional.empty()));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void evictsTheOldestEntryWhenFull() {
+        // Given
+        cache.put("a", "A");
+        cache.put("b", "B");
+
+        // When
+        cache.put("c", "C");
+
+        // Then
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("a"), is(Optional.empty()));
+        assertThat(cache.get("b"), is(Optional.of("B")));
+        assertThat(cache.get("c"), is(Optional.of("C")));
+    }
+
+    @Test
+    public void putIfAbsentReturnsTheLiveValueAlreadyCached() {
+        // Given
+        cache.put("a", "A");
+
+        // When
+        final var existing = cache.putIfAbsent("a", "Z");
+
+        // Then
+        assertThat(existing, is(Optional.of("A")));
+        assertThat(cache.get("a"), is(Optional.of("A")));
+    }
+
+    @Test
+    public void putIfAbsentReplacesAnExpiredValue() {
+        // Given
+        cache.put("a", "A");
+        now.addAndGet(10);
+
+        // When
+        final var existing = cache.putIfAbsent("a", "Z");
+
+        // Then
+        assertThat(existing, is(Optional.empty()));
+        assertThat(cache.get("a"), is(Optional.of("Z")));
+    }
+
+    @Test
+    public void removesOnlyWhileTheKeyStillMapsToTheGivenValue() {
+        // Given
+        cache.put("a", "A");
+
+        // When
+        cache.remove("a", "Z");
+
+        // Then
+        assertThat(cache.get("a"), is(Optional.of("A")));
+
+        // When
+        cache.remove("a", "A");
+
+        // Then
+        assertThat(cache.get("a"), is(Optional.empty()));
+    }
+}
@@ -0,0 +1,98 @@
+package com.tsys.payments.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@Tag("UnitTest")
+class RetryBudgetSpecs {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toNanos(1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // A retry for every 5 successes, one a second whatever, 3 saved up.
+    private final RetryBudget retryBudget = new RetryBudget("test.retry_budget", 0.2, 1, 3, meterRegistry, now::get);
+
+    @Test
+    public void startsWithMaxTokensSavedUp() {
+        // When
+        final var retries = retries(5);
+
+        // Then
+        assertThat(retries, is(3));
+        assertThat(meterRegistry.counter("test.retry_budget.retries").count(), is(3.0));
+        assertThat(meterRegistry.counter("test.retry_budget.exhausted").count(), is(2.0));
+    }
+
+    @Test
+    public void earnsARetryForEverySoManySuccesses() {
+        // Given
+        retries(3);
+
+        // When
+        for (int i = 0; i < 10; i++)
+            retryBudget.succeeded();
+
+        // Then
+        assertThat(retryBudget.tokens(), is(2.0));
+        assertThat(retries(3), is(2));
+    }
+
+    @Test
+    public void earnsTheMinimumRateWhileNothingSucceeds() {
+        // Given
+        retries(3);
+
+        // When
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+
+        // Then
+        assertThat(retries(3), is(1));
+
+        // When
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+
+        // Then
+        assertThat(retries(3), is(1));
+    }
+
+    @Test
+    public void savesNoMoreThanMaxTokens() {
+        // Given
+        retries(3);
+
+        // When
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        for (int i = 0; i < 100; i++)
+            retryBudget.succeeded();
+
+        // Then
+        assertThat(retryBudget.tokens(), is(3.0));
+        assertThat(meterRegistry.get("test.retry_budget.tokens").gauge().value(), is(3.0));
+    }
+
+    @Test
+    public void doesNotCountTimeSpentFull() {
+        // Given
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        // When
+        final var retries = retries(5);
+
+        // Then
+        assertThat(retries, is(3));
+    }
+
+    private int retries(int attempts) {
+        var retries = 0;
+        for (int i = 0; i < attempts; i++)
+            if (retryBudget.tryRetry())
+                retries++;
+        return retries;
+    }
+}
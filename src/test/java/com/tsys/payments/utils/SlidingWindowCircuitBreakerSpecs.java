@@ -0,0 +1,158 @@
+package com.tsys.payments.utils;
+
+import com.tsys.payments.utils.SlidingWindowCircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@Tag("UnitTest")
+class SlidingWindowCircuitBreakerSpecs {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // 10s window, 4 calls at least, opens at 50% failed or 80% slow (1s
+    // or more), stays open for 30s and then lets 2 probes through.
+    private final SlidingWindowCircuitBreaker circuitBreaker = new SlidingWindowCircuitBreaker("test.breaker",
+            Duration.ofSeconds(10), 4, 50, 80, Duration.ofSeconds(1), Duration.ofSeconds(30), 2,
+            meterRegistry, now::get);
+
+    @Test
+    public void staysClosedUntilTheWindowHasEnoughCalls() {
+        // When
+        fail(3);
+
+        // Then
+        assertThat(circuitBreaker.state(), is(State.CLOSED));
+    }
+
+    @Test
+    public void opensOnceTheFailureRateIsReached() {
+        // Given
+        succeed(2);
+
+        // When
+        fail(2);
+
+        // Then
+        assertThat(circuitBreaker.state(), is(State.OPEN));
+        assertThat(circuitBreaker.tryCall().isPresent(), is(false));
+        assertThat(meterRegistry.counter("test.breaker.transitions", "from", "CLOSED", "to", "OPEN").count(), is(1.0));
+        assertThat(meterRegistry.counter("test.breaker.rejected").count(), is(1.0));
+    }
+
+    @Test
+    public void opensOnceTheSlowCallRateIsReached() {
+        // When
+        for (int i = 0; i < 4; i++) {
+            final var call = circuitBreaker.tryCall().get();
+            now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            call.succeeded();
+        }
+
+        // Then
+        assertThat(circuitBreaker.state(), is(State.OPEN));
+    }
+
+    @Test
+    public void forgetsCallsThatSlidOutOfTheWindow() {
+        // Given
+        fail(3);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+
+        // When
+        succeed(3);
+        fail(1);
+
+        // Then
+        assertThat(circuitBreaker.state(), is(State.CLOSED));
+    }
+
+    @Test
+    public void letsProbesThroughOnceOpenForResetTimeoutAndClosesIfTheyPass() {
+        // Given
+        fail(4);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        // When
+        final var first = circuitBreaker.tryCall();
+        final var second = circuitBreaker.tryCall();
+        final var third = circuitBreaker.tryCall();
+
+        // Then
+        assertThat(circuitBreaker.state(), is(State.HALF_OPEN));
+        assertThat(first.isPresent() && second.isPresent(), is(true));
+        assertThat(third.isPresent(), is(false));
+
+        // When
+        first.get().succeeded();
+        second.get().succeeded();
+
+        // Then
+        assertThat(circuitBreaker.state(), is(State.CLOSED));
+        assertThat(meterRegistry.get("test.breaker.state").gauge().value(), is(0.0));
+    }
+
+    @Test
+    public void opensAgainIfTheProbesFail() {
+        // Given
+        fail(4);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        // When
+        fail(2);
+
+        // Then
+        assertThat(circuitBreaker.state(), is(State.OPEN));
+        assertThat(meterRegistry.counter("test.breaker.transitions", "from", "HALF_OPEN", "to", "OPEN").count(), is(1.0));
+    }
+
+    @Test
+    public void closesWithAnEmptyWindow() {
+        // Given
+        fail(4);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        succeed(2);
+
+        // When
+        fail(3);
+
+        // Then
+        assertThat(circuitBreaker.state(), is(State.CLOSED));
+    }
+
+    @Test
+    public void letsAnotherProbeThroughForOneIgnored() {
+        // Given
+        fail(4);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        final var first = circuitBreaker.tryCall().get();
+        final var second = circuitBreaker.tryCall().get();
+        circuitBreaker.tryCall();
+
+        // When
+        first.ignored();
+        second.succeeded();
+        final var third = circuitBreaker.tryCall();
+        third.get().succeeded();
+
+        // Then
+        assertThat(circuitBreaker.state(), is(State.CLOSED));
+    }
+
+    private void succeed(int calls) {
+        for (int i = 0; i < calls; i++)
+            circuitBreaker.tryCall().get().succeeded();
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++)
+            circuitBreaker.tryCall().get().failed();
+    }
+}
@@ -0,0 +1,149 @@
+package com.tsys.payments.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("UnitTest")
+class TimeOrderedUUIDGeneratorSpecs {
+
+    private final Instant madeAt = Instant.parse("2024-06-01T10:15:30.123Z");
+    private final AtomicLong now = new AtomicLong(madeAt.toEpochMilli());
+    private final TimeOrderedUUIDGenerator generator = new TimeOrderedUUIDGenerator(now::get);
+
+    @Test
+    public void makesVersion7IdsThatTellWhenTheyWereMade() {
+        // When
+        final var id = generator.generate();
+
+        // Then
+        assertThat(id.version(), is(7));
+        assertThat(id.variant(), is(2));
+        assertThat(TimeOrderedUUIDGenerator.timestampOf(id), is(madeAt));
+    }
+
+    @Test
+    public void makesIdsThatSortBytewiseInTheOrderTheyWereMade() {
+        // Given
+        final var ids = new ArrayList<UUID>();
+
+        // When
+        for (int i = 0; i < 10000; i++) {
+            ids.add(generator.generate());
+            if (i % 100 == 0)
+                now.incrementAndGet();
+        }
+
+        // Then
+        for (int i = 1; i < ids.size(); i++)
+            assertThat(compareBytes(ids.get(i - 1), ids.get(i)), is(lessThan(0)));
+    }
+
+    @Test
+    public void keepsIdsIncreasingWhenTheClockIsSetBack() {
+        // Given
+        final var before = generator.generate();
+        now.addAndGet(-TimeUnit.MINUTES.toMillis(1));
+
+        // When
+        final var after = generator.generate();
+
+        // Then
+        assertThat(compareBytes(before, after), is(lessThan(0)));
+        assertThat(TimeOrderedUUIDGenerator.timestampOf(after), is(madeAt));
+    }
+
+    @Test
+    public void borrowsTheNextMilliOnceOutOfCountsInThisOne() {
+        // When
+        UUID last = null;
+        for (int i = 0; i < 4097; i++)
+            last = generator.generate();
+
+        // Then
+        assertThat(TimeOrderedUUIDGenerator.timestampOf(last), is(madeAt.plusMillis(1)));
+    }
+
+    @Test
+    public void makesNoIdTwiceAcrossThreads() throws InterruptedException {
+        // Given
+        final var threads = 8;
+        final var executor = Executors.newFixedThreadPool(threads);
+        final var start = new CountDownLatch(1);
+        final var perThread = new ConcurrentHashMap<Integer, List<UUID>>();
+
+        // When
+        for (int t = 0; t < threads; t++) {
+            final var thread = t;
+            executor.execute(() -> {
+                final var ids = new ArrayList<UUID>();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++)
+                    ids.add(generator.generate());
+                perThread.put(thread, ids);
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // Then
+        final var all = ConcurrentHashMap.<ByteBuffer>newKeySet();
+        perThread.values().forEach(ids -> {
+            for (int i = 0; i < ids.size(); i++) {
+                all.add(ByteBuffer.wrap(Arrays.copyOf(bytesOf(ids.get(i)), 8)));
+                if (i > 0)
+                    assertThat(compareBytes(ids.get(i - 1), ids.get(i)), is(lessThan(0)));
+            }
+        });
+        assertThat(all.size(), is(threads * 1000));
+    }
+
+    @Test
+    public void startsRangesBelowEveryIdMadeFromThatTime() {
+        // Given
+        final var id = generator.generate();
+
+        // Then
+        assertThat(compareBytes(TimeOrderedUUIDGenerator.lowestAt(madeAt), id), is(lessThan(0)));
+        assertThat(compareBytes(TimeOrderedUUIDGenerator.lowestAt(madeAt.plusMillis(1)), id), is(greaterThan(0)));
+    }
+
+    @Test
+    public void shoutsForTheTimestampOfARandomId() {
+        assertThrows(IllegalArgumentException.class, () -> TimeOrderedUUIDGenerator.timestampOf(UUID.randomUUID()));
+    }
+
+    // As binary(16) columns compare them, unlike UUID.compareTo, which is signed.
+    private static int compareBytes(UUID left, UUID right) {
+        return Arrays.compareUnsigned(bytesOf(left), bytesOf(right));
+    }
+
+    private static byte[] bytesOf(UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+}
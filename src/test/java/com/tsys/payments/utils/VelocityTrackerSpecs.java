@@ -0,0 +1,130 @@
+package com.tsys.payments.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+@Tag("UnitTest")
+class VelocityTrackerSpecs {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toNanos(1));
+    // A minute and an hour, in slices of 10s and 10m.
+    private final VelocityTracker<String> tracker = new VelocityTracker<>(
+            List.of(Duration.ofMinutes(1), Duration.ofHours(1)), 6, 1600, now::get);
+
+    @Test
+    public void countsAndSumsPerKeyOverEveryWindow() {
+        // Given
+        tracker.record("card-1", 100);
+        tracker.record("card-2", 1000);
+
+        // When
+        final var totals = tracker.record("card-1", 250);
+
+        // Then
+        assertThat(totals[0].count, is(2L));
+        assertThat(totals[0].amount, is(350L));
+        assertThat(totals[1].count, is(2L));
+        assertThat(totals[1].amount, is(350L));
+    }
+
+    @Test
+    public void forgetsEventsThatSlidOutOfAWindow() {
+        // Given
+        tracker.record("card-1", 100);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(70));
+
+        // When
+        final var totals = tracker.record("card-1", 250);
+
+        // Then
+        assertThat(totals[0].count, is(1L));
+        assertThat(totals[0].amount, is(250L));
+        assertThat(totals[1].count, is(2L));
+    }
+
+    @Test
+    public void readsTotalsWithoutRecording() {
+        // Given
+        tracker.record("card-1", 100);
+
+        // When
+        final var totals = tracker.totals("card-1");
+        final var unknown = tracker.totals("card-3");
+
+        // Then
+        assertThat(totals[0].count, is(1L));
+        assertThat(tracker.totals("card-1")[0].count, is(1L));
+        assertThat(unknown[1].count, is(0L));
+    }
+
+    @Test
+    public void countsEveryEventRecordedAtOnce() {
+        // When
+        CompletableFuture.allOf(IntStream.range(0, 8)
+                .mapToObj(thread -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 1000; i++)
+                        tracker.record("card-1", 1);
+                }))
+                .toArray(CompletableFuture[]::new)).join();
+
+        // Then
+        assertThat(tracker.totals("card-1")[1].count, is(8000L));
+        assertThat(tracker.totals("card-1")[1].amount, is(8000L));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlySeenKeysToStayWithinMaxKeys() {
+        // When
+        for (int i = 0; i < 5000; i++) {
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+            tracker.record("card-" + i, 1);
+        }
+
+        // Then
+        assertThat(tracker.size(), is(lessThanOrEqualTo(1600)));
+        assertThat(tracker.evicted(), is(5000L - tracker.size()));
+        assertThat(tracker.totals("card-4999")[0].count, is(1L));
+    }
+
+    @Test
+    public void evictsKeysIdleForLongerThanTheLongestWindowFirst() {
+        // Given
+        for (int i = 0; i < 1600; i++)
+            tracker.record("card-" + i, 1);
+        now.addAndGet(TimeUnit.MINUTES.toNanos(61));
+
+        // When
+        for (int i = 0; i < 100; i++)
+            tracker.record("fresh-card-" + i, 1);
+
+        // Then
+        assertThat(tracker.totals("fresh-card-0")[0].count, is(1L));
+        assertThat(tracker.size(), is(lessThanOrEqualTo(1600)));
+    }
+
+    @Test
+    public void neverEvictsTheKeyBeingRecorded() {
+        // Given
+        final var smallestTracker = new VelocityTracker<String>(List.of(Duration.ofMinutes(1)), 6, 16, now::get);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            final var totals = smallestTracker.record("card-" + i, 1);
+
+            // Then
+            assertThat(totals[0].count, is(1L));
+            assertThat(smallestTracker.totals("card-" + i)[0].count, is(1L));
+        }
+    }
+}
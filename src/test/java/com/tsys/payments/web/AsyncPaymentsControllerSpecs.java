@@ -0,0 +1,113 @@
+package com.tsys.payments.web;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.AsyncPaymentsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tags({
+        @Tag("Standalone"),
+        @Tag("UnitTest")
+})
+public class AsyncPaymentsControllerSpecs {
+
+    private static final String PAYLOAD = "{\n" +
+            "  \"order\": { \"id\": \"TEST-ORDER-ID\", \"items\": [] },\n" +
+            "  \"creditCard\": { \"number\": \"4485-2847-2013-4093\", \"holderName\": \"Jumping Jack\", \"issuingBank\": \"Bank of Test\", \"validUntil\": \"4000-12-30\", \"cvv\": 123 }\n" +
+            "}";
+
+    private final UUID uuid = UUID.nameUUIDFromBytes("TEST".getBytes());
+
+    @Mock
+    private AsyncPaymentsService asyncPaymentsService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void buildMockMvc() {
+        // Same ObjectMapper setup as Spring Boot's, so that PaymentPayload can be
+        // created through its constructor parameter names.
+        final var objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule(JsonCreator.Mode.DEFAULT))
+                .build();
+        mockMvc = MockMvcBuilders.standaloneSetup(new AsyncPaymentsController(asyncPaymentsService))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    @Test
+    public void acceptsPaymentAndPointsToItsStatus() throws Exception {
+        // Given
+        given(asyncPaymentsService.submit(any(), any())).willReturn(new TransactionReference(uuid, new Date(), "pending"));
+
+        // When
+        mockMvc.perform(MockMvcRequestBuilders.post("/pay/async")
+                .contentType("application/json")
+                .content(PAYLOAD))
+                // Then
+                .andExpect(MockMvcResultMatchers.status().isAccepted())
+                .andExpect(MockMvcResultMatchers.header().string("Location", "/payments/" + uuid))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(uuid.toString()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.status").value("pending"));
+    }
+
+    @Test
+    public void asksToRetryLaterWhenTheQueueIsFull() throws Exception {
+        // Given
+        given(asyncPaymentsService.submit(any(), any())).willThrow(new RejectedExecutionException("Queue is full"));
+
+        // When
+        mockMvc.perform(MockMvcRequestBuilders.post("/pay/async")
+                .contentType("application/json")
+                .content(PAYLOAD))
+                // Then
+                .andExpect(MockMvcResultMatchers.status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "1"));
+    }
+
+    @Test
+    public void respondsWithTheStatusOfAPayment() throws Exception {
+        // Given
+        given(asyncPaymentsService.status(uuid)).willReturn(Optional.of(new TransactionReference(uuid, new Date(), "accepted")));
+
+        // When
+        mockMvc.perform(MockMvcRequestBuilders.get("/payments/" + uuid))
+                // Then
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.status").value("accepted"));
+    }
+
+    @Test
+    public void respondsNotFoundForUnknownPayments() throws Exception {
+        // Given
+        given(asyncPaymentsService.status(uuid)).willReturn(Optional.empty());
+
+        // When
+        mockMvc.perform(MockMvcRequestBuilders.get("/payments/" + uuid))
+                // Then
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+}
@@ -0,0 +1,98 @@
+package com.tsys.payments.web;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.tsys.payments.domain.PaymentResult;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.BatchPaymentsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tags({
+        @Tag("Standalone"),
+        @Tag("UnitTest")
+})
+public class BatchPaymentsControllerSpecs {
+
+    private static final String PAYLOAD = "{\n" +
+            "  \"order\": { \"id\": \"TEST-ORDER-ID\", \"items\": [] },\n" +
+            "  \"creditCard\": { \"number\": \"4485-2847-2013-4093\", \"holderName\": \"Jumping Jack\", \"issuingBank\": \"Bank of Test\", \"validUntil\": \"4000-12-30\", \"cvv\": 123 }\n" +
+            "}";
+
+    @Mock
+    private BatchPaymentsService batchPaymentsService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void buildMockMvc() {
+        // Same ObjectMapper setup as Spring Boot's, so that PaymentPayload can be
+        // created through its constructor parameter names.
+        final var objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule(JsonCreator.Mode.DEFAULT))
+                .build();
+        mockMvc = MockMvcBuilders.standaloneSetup(new BatchPaymentsController(batchPaymentsService, 2))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    @Test
+    public void respondsWithOneResultPerPayment() throws Exception {
+        // Given
+        final var reference = new TransactionReference(UUID.nameUUIDFromBytes("TEST".getBytes()), new Date(), "accepted");
+        given(batchPaymentsService.makePayments(anyList())).willReturn(CompletableFuture.completedFuture(List.of(
+                PaymentResult.completed(reference),
+                PaymentResult.failed("Unreachable!"))));
+
+        // When
+        final var asyncResult = mockMvc.perform(MockMvcRequestBuilders.post("/pay/batch")
+                .contentType("application/json")
+                .content("[" + PAYLOAD + "," + PAYLOAD + "]"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(asyncResult))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].transaction.id").value(reference.id.toString()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].transaction.status").value("accepted"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].transaction").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].error").value("Unreachable!"));
+    }
+
+    @Test
+    public void rejectsBatchesLargerThanTheConfiguredMaximum() throws Exception {
+        // When
+        final var asyncResult = mockMvc.perform(MockMvcRequestBuilders.post("/pay/batch")
+                .contentType("application/json")
+                .content("[" + PAYLOAD + "," + PAYLOAD + "," + PAYLOAD + "]"))
+                .andReturn();
+
+        // Then
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(asyncResult))
+                .andExpect(MockMvcResultMatchers.status().isPayloadTooLarge());
+        verifyNoInteractions(batchPaymentsService);
+    }
+}
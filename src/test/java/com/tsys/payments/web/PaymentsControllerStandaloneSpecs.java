@@ -1,11 +1,21 @@
 package com.tsys.payments.web;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.IdempotencyKeyReusedException;
+import com.tsys.payments.service.local.IdempotentPaymentsService;
+import com.tsys.payments.service.local.LoadShedder;
 import com.tsys.payments.service.local.PaymentsService;
+import com.tsys.payments.utils.Deadline;
+import com.tsys.payments.utils.DeadlineExceededException;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.ResultMatcher;
@@ -14,6 +24,23 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
 @ExtendWith(MockitoExtension.class)
 
 @Tags({
@@ -22,19 +49,35 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 })
 public class PaymentsControllerStandaloneSpecs {
 
+    private static final String PAYLOAD = "{\n" +
+            "  \"order\": { \"id\": \"TEST-ORDER-ID\", \"items\": [] },\n" +
+            "  \"creditCard\": { \"number\": \"4485-2847-2013-4093\", \"holderName\": \"Jumping Jack\", \"issuingBank\": \"Bank of Test\", \"validUntil\": \"4000-12-30\", \"cvv\": 123 }\n" +
+            "}";
+
     @Mock
     private PaymentsService paymentsService;
 
-    @InjectMocks
-    private PaymentsController paymentsController;
+    @Mock
+    private IdempotentPaymentsService idempotentPaymentsService;
+
+    @Mock
+    private LoadShedder loadShedder;
 
+    private PaymentsController paymentsController;
 
     private MockMvc mockMvc;
 
     @BeforeEach
     public void buildMockMvc() {
-        // MockMvc standalone approach
+        paymentsController = new PaymentsController(paymentsService, idempotentPaymentsService, loadShedder, 5000);
+        // MockMvc standalone approach, with the same ObjectMapper setup as
+        // Spring Boot's, so that PaymentPayload can be created through its
+        // constructor parameter names.
+        final var objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule(JsonCreator.Mode.DEFAULT))
+                .build();
         mockMvc = MockMvcBuilders.standaloneSetup(paymentsController)
+                .setMessageConverters(new StringHttpMessageConverter(), new MappingJackson2HttpMessageConverter(objectMapper))
                 .build();
     }
 
@@ -58,6 +101,110 @@ public class PaymentsControllerStandaloneSpecs {
                 MockMvcResultMatchers.status().isOk());
     }
 
+    @Test
+    public void makesPaymentOnceForRequestsWithAnIdempotencyKey() throws Exception {
+        // Given
+        final var reference = new TransactionReference(UUID.nameUUIDFromBytes("TEST".getBytes()), new Date(), "accepted");
+        given(loadShedder.tryAdmit()).willReturn(Optional.of(mock(LoadShedder.Permit.class)));
+        given(idempotentPaymentsService.makePayment(eq("KEY-1"), any(), any())).willReturn(Optional.of(reference));
+        final var request = givenRequestFor("/pay", true)
+                .header("Idempotency-Key", "KEY-1")
+                .contentType("application/json")
+                .content(PAYLOAD);
+        // When
+        final ResultActions resultActions = whenTheRequestIsMade(request);
+        // Then
+        thenExpect(resultActions,
+                MockMvcResultMatchers.status().isOk(),
+                MockMvcResultMatchers.jsonPath("$.id").value(reference.id.toString()));
+        verifyNoInteractions(paymentsService);
+    }
+
+    @Test
+    public void refusesAnIdempotencyKeyReusedForADifferentPayment() throws Exception {
+        // Given
+        given(loadShedder.tryAdmit()).willReturn(Optional.of(mock(LoadShedder.Permit.class)));
+        given(idempotentPaymentsService.makePayment(eq("KEY-1"), any(), any())).willThrow(new IdempotencyKeyReusedException("KEY-1"));
+        final var request = givenRequestFor("/pay", true)
+                .header("Idempotency-Key", "KEY-1")
+                .contentType("application/json")
+                .content(PAYLOAD);
+        // When
+        final ResultActions resultActions = whenTheRequestIsMade(request);
+        // Then
+        thenExpect(resultActions, MockMvcResultMatchers.status().isUnprocessableEntity());
+        verifyNoInteractions(paymentsService);
+    }
+
+    @Test
+    public void shedsPaymentsWhenThereIsNoRoomForThem() throws Exception {
+        // Given
+        given(loadShedder.tryAdmit()).willReturn(Optional.empty());
+        given(loadShedder.retryAfter()).willReturn(Duration.ofSeconds(3));
+        final var request = givenRequestFor("/pay", true)
+                .contentType("application/json")
+                .content(PAYLOAD);
+        // When
+        final ResultActions resultActions = whenTheRequestIsMade(request);
+        // Then
+        thenExpect(resultActions,
+                MockMvcResultMatchers.status().isServiceUnavailable(),
+                MockMvcResultMatchers.header().string("Retry-After", "3"));
+        verifyNoInteractions(paymentsService);
+    }
+
+    @Test
+    public void releasesItsRoomOnceThePaymentIsMade() throws Exception {
+        // Given
+        final var permit = mock(LoadShedder.Permit.class);
+        given(loadShedder.tryAdmit()).willReturn(Optional.of(permit));
+        given(paymentsService.makePayment(any(), any())).willReturn(Optional.empty());
+        final var request = givenRequestFor("/pay", true)
+                .contentType("application/json")
+                .content(PAYLOAD);
+        // When
+        final ResultActions resultActions = whenTheRequestIsMade(request);
+        // Then
+        thenExpect(resultActions,
+                MockMvcResultMatchers.status().isBadGateway());
+        verify(permit).close();
+    }
+
+    @Test
+    public void givesUpOnPaymentsOnceTheirDeadlineHasPassed() throws Exception {
+        // Given
+        given(loadShedder.tryAdmit()).willReturn(Optional.of(mock(LoadShedder.Permit.class)));
+        given(paymentsService.makePayment(any(), any())).willThrow(new DeadlineExceededException("saving transaction"));
+        final var request = givenRequestFor("/pay", true)
+                .contentType("application/json")
+                .content(PAYLOAD);
+        // When
+        final ResultActions resultActions = whenTheRequestIsMade(request);
+        // Then
+        thenExpect(resultActions,
+                MockMvcResultMatchers.status().isGatewayTimeout());
+    }
+
+    @Test
+    public void makesPaymentsWithinTheTimeTheCallerAsksFor() throws Exception {
+        // Given
+        final var remaining = new AtomicReference<Duration>();
+        given(loadShedder.tryAdmit()).willReturn(Optional.of(mock(LoadShedder.Permit.class)));
+        given(paymentsService.makePayment(any(), any())).willAnswer(invocation -> {
+            remaining.set(Deadline.current().get().remaining());
+            return Optional.empty();
+        });
+        final var request = givenRequestFor("/pay", true)
+                .header("X-Request-Timeout", "800")
+                .contentType("application/json")
+                .content(PAYLOAD);
+        // When
+        whenTheRequestIsMade(request);
+        // Then
+        assertThat(remaining.get(), is(lessThanOrEqualTo(Duration.ofMillis(800))));
+        assertThat(remaining.get(), is(greaterThan(Duration.ZERO)));
+    }
+
     private MockHttpServletRequestBuilder givenRequestFor(String url, boolean isPostRequest) {
         final MockHttpServletRequestBuilder builder =
                 isPostRequest ? MockMvcRequestBuilders.post(url)
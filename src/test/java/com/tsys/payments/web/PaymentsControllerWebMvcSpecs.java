@@ -1,5 +1,7 @@
 package com.tsys.payments.web;
 
+import com.tsys.payments.service.local.IdempotentPaymentsService;
+import com.tsys.payments.service.local.LoadShedder;
 import com.tsys.payments.service.local.PaymentsService;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -7,6 +9,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
@@ -36,12 +39,20 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 //
 // NOTE: No Web-Server is deployed
 @WebMvcTest(PaymentsController.class)
+// The properties files are loaded by PaymentsConfig, which is not.
+@TestPropertySource(properties = "latency_control.timeout.request=5000")
 @Tag("UnitTest")
 public class PaymentsControllerWebMvcSpecs {
 
     @MockBean
     private PaymentsService paymentsService;
 
+    @MockBean
+    private IdempotentPaymentsService idempotentPaymentsService;
+
+    @MockBean
+    private LoadShedder loadShedder;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -0,0 +1,97 @@
+package com.tsys.payments.web;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.ReactivePaymentsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tags({
+        @Tag("Standalone"),
+        @Tag("UnitTest")
+})
+public class ReactivePaymentsControllerSpecs {
+
+    private static final String PAYLOAD = "{\n" +
+            "  \"order\": { \"id\": \"TEST-ORDER-ID\", \"items\": [] },\n" +
+            "  \"creditCard\": { \"number\": \"4485-2847-2013-4093\", \"holderName\": \"Jumping Jack\", \"issuingBank\": \"Bank of Test\", \"validUntil\": \"4000-12-30\", \"cvv\": 123 }\n" +
+            "}";
+
+    @Mock
+    private ReactivePaymentsService paymentsService;
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    public void buildWebTestClient() {
+        // Same ObjectMapper setup as Spring Boot's, so that PaymentPayload can be
+        // created through its constructor parameter names.
+        final var objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule(JsonCreator.Mode.DEFAULT))
+                .build();
+        webTestClient = WebTestClient.bindToController(new ReactivePaymentsController(paymentsService))
+                .httpMessageCodecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                })
+                .build();
+    }
+
+    @Test
+    public void health() {
+        webTestClient.get().uri("/ping")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("{ 'PONG' : 'ReactivePaymentsController is running fine!' }");
+    }
+
+    @Test
+    public void respondsWithTransactionReferenceForACompletedPayment() {
+        // Given
+        final var reference = new TransactionReference(UUID.nameUUIDFromBytes("TEST".getBytes()), new Date(), "accepted");
+        given(paymentsService.makePayment(any(), any())).willReturn(Mono.just(reference));
+
+        // When-Then
+        webTestClient.post().uri("/pay")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(PAYLOAD)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(reference.id.toString())
+                .jsonPath("$.status").isEqualTo("accepted");
+    }
+
+    @Test
+    public void respondsWithBadGatewayWhenNoTransactionIsMade() {
+        // Given
+        given(paymentsService.makePayment(any(), any())).willReturn(Mono.empty());
+
+        // When-Then
+        webTestClient.post().uri("/pay")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(PAYLOAD)
+                .exchange()
+                .expectStatus().isEqualTo(502);
+    }
+}
@@ -0,0 +1,90 @@
+package com.tsys.payments.web;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.tsys.payments.domain.Payment;
+import com.tsys.payments.domain.PaymentResult;
+import com.tsys.payments.domain.TransactionReference;
+import com.tsys.payments.service.local.BatchPaymentsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tags({
+        @Tag("Standalone"),
+        @Tag("UnitTest")
+})
+public class StreamingPaymentsControllerSpecs {
+
+    private static final String PAYLOAD = "{ " +
+            "\"order\": { \"id\": \"TEST-ORDER-ID\", \"items\": [] }, " +
+            "\"creditCard\": { \"number\": \"4485-2847-2013-4093\", \"holderName\": \"Jumping Jack\", \"issuingBank\": \"Bank of Test\", \"validUntil\": \"4000-12-30\", \"cvv\": 123 } " +
+            "}";
+
+    @Mock
+    private BatchPaymentsService batchPaymentsService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void buildMockMvc() {
+        // Same ObjectMapper setup as Spring Boot's, so that PaymentPayload can be
+        // created through its constructor parameter names.
+        final var objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule(JsonCreator.Mode.DEFAULT))
+                .build();
+        mockMvc = MockMvcBuilders.standaloneSetup(new StreamingPaymentsController(batchPaymentsService, objectMapper))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void writesOneResultPerLineForEachPaymentLineRead() throws Exception {
+        // Given
+        final var reference = new TransactionReference(UUID.nameUUIDFromBytes("TEST".getBytes()), new Date(), "accepted");
+        given(batchPaymentsService.makePayments(any(Flux.class))).willAnswer(invocation -> {
+            final Flux<Payment> payments = invocation.getArgument(0);
+            return payments.map(payment -> payment.creditCard.cvv == 123
+                    ? PaymentResult.completed(reference)
+                    : PaymentResult.failed("Unreachable!"));
+        });
+
+        // When
+        final var result = mockMvc.perform(MockMvcRequestBuilders.post("/pay/stream")
+                .contentType("application/x-ndjson")
+                .accept("application/x-ndjson")
+                .content(PAYLOAD + "\n" + PAYLOAD.replace("123", "456") + "\n"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        // Then
+        final String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines.length, is(2));
+        assertThat(lines[0], startsWith("{\"transaction\":{\"id\":\"" + reference.id));
+        assertThat(lines[1], startsWith("{\"transaction\":null,\"error\":\"Unreachable!\""));
+    }
+}
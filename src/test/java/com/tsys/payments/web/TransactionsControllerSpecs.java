@@ -0,0 +1,109 @@
+package com.tsys.payments.web;
+
+import com.tsys.payments.domain.Money;
+import com.tsys.payments.domain.Transaction;
+import com.tsys.payments.repository.TransactionRepository;
+import com.tsys.payments.service.local.TransactionsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Instant;
+import java.util.Currency;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+
+@Tags({
+        @Tag("Standalone"),
+        @Tag("UnitTest")
+})
+public class TransactionsControllerSpecs {
+
+    private final UUID uuid = UUID.nameUUIDFromBytes("TEST".getBytes());
+    private final Transaction transaction = new Transaction(uuid, Date.from(Instant.now()), "accepted", "TEST-ORDER-ID",
+            new Money(Currency.getInstance("INR"), 1235.45d));
+    private final String eTag = String.format("\"%s-accepted\"", uuid);
+
+    @Mock
+    private TransactionsService transactionsService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void buildMockMvc() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new TransactionsController(transactionsService))
+                .build();
+    }
+
+    @Test
+    public void respondsWithTheTransactionAndItsETag() throws Exception {
+        // Given
+        given(transactionsService.findById(uuid)).willReturn(Optional.of(transaction));
+
+        // When
+        mockMvc.perform(MockMvcRequestBuilders.get("/transactions/" + uuid))
+                // Then
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", eTag))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(uuid.toString()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.status").value("accepted"));
+    }
+
+    @Test
+    public void respondsNotModifiedWhenTheETagStillMatches() throws Exception {
+        // Given
+        given(transactionsService.findByOrderId("TEST-ORDER-ID")).willReturn(Optional.of(transaction));
+
+        // When
+        mockMvc.perform(MockMvcRequestBuilders.get("/orders/TEST-ORDER-ID/transaction")
+                .header("If-None-Match", eTag))
+                // Then
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+    }
+
+    @Test
+    public void answersRepeatedConditionalPollsForAnOrderWithOneQuery() throws Exception {
+        // Given
+        final var transactionRepository = mock(TransactionRepository.class);
+        given(transactionRepository.findFirstByOrderIdOrderByDateDesc("TEST-ORDER-ID")).willReturn(Optional.of(transaction));
+        final var mockMvc = MockMvcBuilders.standaloneSetup(new TransactionsController(
+                        new TransactionsService(transactionRepository, 100, 60000, 2000)))
+                .build();
+
+        // When
+        for (int poll = 0; poll < 2; poll++)
+            mockMvc.perform(MockMvcRequestBuilders.get("/orders/TEST-ORDER-ID/transaction")
+                    .header("If-None-Match", eTag))
+                    // Then
+                    .andExpect(MockMvcResultMatchers.status().isNotModified());
+        verify(transactionRepository, times(1)).findFirstByOrderIdOrderByDateDesc("TEST-ORDER-ID");
+    }
+
+    @Test
+    public void respondsNotFoundForUnknownTransactions() throws Exception {
+        // Given
+        given(transactionsService.findById(uuid)).willReturn(Optional.empty());
+
+        // When
+        mockMvc.perform(MockMvcRequestBuilders.get("/transactions/" + uuid))
+                // Then
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+}